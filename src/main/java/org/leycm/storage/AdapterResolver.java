@@ -0,0 +1,107 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the adapters of a storage once per class and remembers the result, including the
+ * absence of an adapter.
+ * <p>
+ * A setter is looked up for the class of the stored value first, then for its superclasses and
+ * finally for its interfaces, breadth first, so values of a subclass are stored by the adapter of
+ * their parent type. Getters are only resolved for the exact requested type, since an adapter of a
+ * supertype cannot produce an instance of the requested subtype.
+ * <p>
+ * Results are held in a {@link ClassValue}, which is safe for concurrent use and does not keep the
+ * resolved classes from being unloaded. A resolver is immutable: when adapters are added the storage
+ * replaces it with a fresh one.
+ */
+final class AdapterResolver {
+    private static final Resolved NONE = new Resolved(null, null);
+
+    private final Map<Class<?>, StorageAdapter.Setter<?>> setters;
+    private final Map<Class<?>, StorageAdapter.Getter<?>> getters;
+
+    private final ClassValue<Resolved> resolved = new ClassValue<>() {
+        @Override
+        protected Resolved computeValue(@NotNull Class<?> type) {
+            StorageAdapter.Setter<?> setter = findSetter(type);
+            StorageAdapter.Getter<?> getter = getters.get(type);
+            return setter == null && getter == null ? NONE : new Resolved(setter, getter);
+        }
+    };
+
+    /**
+     * Creates a resolver over the registered adapters of a storage.
+     *
+     * @param setters The setters by their registered type
+     * @param getters The getters by their registered type
+     */
+    AdapterResolver(@NotNull Map<Class<?>, StorageAdapter.Setter<?>> setters,
+                    @NotNull Map<Class<?>, StorageAdapter.Getter<?>> getters) {
+        this.setters = setters;
+        this.getters = getters;
+    }
+
+    /**
+     * Creates a resolver for a storage without any adapters.
+     *
+     * @return The empty resolver
+     */
+    static @NotNull AdapterResolver empty() {
+        return new AdapterResolver(Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * Returns the setter that handles values of the given class.
+     *
+     * @param type The class of the value to store
+     * @return The setter of the closest registered supertype, or null if there is none
+     */
+    @Nullable StorageAdapter.Setter<?> setter(@NotNull Class<?> type) {
+        return resolved.get(type).setter();
+    }
+
+    /**
+     * Returns the getter registered for the given type.
+     *
+     * @param type The requested type
+     * @return The getter, or null if there is none
+     */
+    @Nullable StorageAdapter.Getter<?> getter(@NotNull Class<?> type) {
+        return resolved.get(type).getter();
+    }
+
+    private @Nullable StorageAdapter.Setter<?> findSetter(@NotNull Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            StorageAdapter.Setter<?> setter = setters.get(current);
+            if (setter != null) return setter;
+        }
+
+        Set<Class<?>> seen = new HashSet<>();
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            Collections.addAll(queue, current.getInterfaces());
+        }
+
+        while (!queue.isEmpty()) {
+            Class<?> current = queue.poll();
+            if (!seen.add(current)) continue;
+
+            StorageAdapter.Setter<?> setter = setters.get(current);
+            if (setter != null) return setter;
+            Collections.addAll(queue, current.getInterfaces());
+        }
+        return null;
+    }
+
+    private record Resolved(@Nullable StorageAdapter.Setter<?> setter, @Nullable StorageAdapter.Getter<?> getter) {
+    }
+}
@@ -0,0 +1,351 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Encoder and decoder for the compact binary storage format used by {@link StorageBase.Type#BINARY}.
+ * <p>
+ * A file starts with the magic bytes {@code TFB} and a version byte, followed by the root map.
+ * Every value is a one byte tag followed by its payload; all multi-byte numbers are big endian:
+ * <ul>
+ *   <li>scalars: {@code null}, booleans, int, long, float, double, big integer and big decimal</li>
+ *   <li>strings: a 4 byte length and the UTF-8 bytes</li>
+ *   <li>lists: a 4 byte body length, a 4 byte element count and the elements</li>
+ *   <li>maps: a 4 byte body length, a 4 byte entry count, one 4 byte offset per entry (relative to
+ *       the first entry) and the entries, each being a string key followed by its value</li>
+ * </ul>
+ * The body length of a container counts all bytes after the length field itself. Values of any
+ * other type, such as dates or byte arrays, cannot be encoded and are rejected.
+ * Like the text formats, integral numbers are decoded as {@link Long} and floating point numbers as {@link Double}.
+ * Map entries are sorted by the unsigned byte order of their UTF-8 keys. Together with the offset
+ * table and the body lengths this allows readers to find a key by binary search and to skip any
+ * value without decoding it.
+ */
+final class BinaryFormat {
+    static final byte[] MAGIC = {'T', 'F', 'B'};
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = MAGIC.length + 1;
+
+    static final byte NULL = 0;
+    static final byte FALSE = 1;
+    static final byte TRUE = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte FLOAT = 5;
+    static final byte DOUBLE = 6;
+    static final byte STRING = 7;
+    static final byte LIST = 8;
+    static final byte MAP = 9;
+    static final byte BIG_INTEGER = 10;
+    static final byte BIG_DECIMAL = 11;
+
+    private BinaryFormat() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Encodes a storage tree including the file header.
+     *
+     * @param root The root map of the tree
+     * @return The encoded bytes
+     * @throws IllegalArgumentException if the tree contains a value the format cannot represent
+     */
+    static byte @NotNull [] encode(@NotNull Map<?, ?> root) {
+        Output out = new Output(4096);
+        out.write(MAGIC);
+        out.write(VERSION);
+        writeValue(out, root);
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a single tagged value without a file header.
+     *
+     * @param value The value to encode
+     * @return The encoded bytes, readable with {@link #readValue(ByteBuffer, Supplier)}
+     * @throws IllegalArgumentException if the value contains a value the format cannot represent
+     */
+    static byte @NotNull [] encodeValue(@Nullable Object value) {
+        Output out = new Output(64);
+        writeValue(out, value);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a storage tree including the file header.
+     *
+     * @param buffer The buffer positioned at the header
+     * @param nodes  The factory for the maps of the tree
+     * @return The root map of the tree
+     * @throws IOException if the data is not in the binary storage format
+     */
+    static @NotNull Map<String, Object> decode(@NotNull ByteBuffer buffer,
+                                               @NotNull Supplier<Map<String, Object>> nodes) throws IOException {
+        if (!buffer.hasRemaining()) return nodes.get();
+        checkHeader(buffer);
+
+        if (buffer.get() != MAP) throw new IOException("Storage root must be a map");
+        try {
+            return readMap(buffer, nodes);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated binary storage data", e);
+        }
+    }
+
+    /**
+     * Validates the magic bytes and version at the current position and skips past them.
+     *
+     * @param buffer The buffer positioned at the header
+     * @throws IOException if the header is missing or of an unsupported version
+     */
+    static void checkHeader(@NotNull ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE) throw new IOException("Not a binary storage file");
+        for (byte magic : MAGIC) {
+            if (buffer.get() != magic) throw new IOException("Not a binary storage file");
+        }
+        byte version = buffer.get();
+        if (version != VERSION) throw new IOException("Unsupported binary storage version " + version);
+    }
+
+    /**
+     * Decodes the value whose tag is at the current position of the buffer.
+     *
+     * @param buffer The buffer positioned at a tag
+     * @param nodes  The factory for the maps of the tree
+     * @return The decoded value
+     * @throws IOException if the tag is unknown or the data is truncated or corrupt
+     */
+    static @Nullable Object readValue(@NotNull ByteBuffer buffer,
+                                      @NotNull Supplier<Map<String, Object>> nodes) throws IOException {
+        try {
+            return readTagged(buffer, nodes);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated binary storage data", e);
+        }
+    }
+
+    private static @Nullable Object readTagged(@NotNull ByteBuffer buffer,
+                                               @NotNull Supplier<Map<String, Object>> nodes) throws IOException {
+        byte tag = buffer.get();
+        return switch (tag) {
+            case NULL -> null;
+            case FALSE -> false;
+            case TRUE -> true;
+            case INT -> (long) buffer.getInt();
+            case LONG -> buffer.getLong();
+            case FLOAT -> (double) buffer.getFloat();
+            case DOUBLE -> buffer.getDouble();
+            case STRING -> readString(buffer);
+            case BIG_INTEGER -> new BigInteger(readBytes(buffer));
+            case BIG_DECIMAL -> new BigDecimal(new BigInteger(readBytes(buffer)), buffer.getInt());
+            case LIST -> {
+                buffer.getInt(); // body length
+                int count = readLength(buffer, 1);
+                List<Object> list = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    list.add(readTagged(buffer, nodes));
+                }
+                yield list;
+            }
+            case MAP -> readMap(buffer, nodes);
+            default -> throw new IOException("Unknown binary storage tag " + tag);
+        };
+    }
+
+    /**
+     * Decodes a map whose tag has already been consumed.
+     *
+     * @param buffer The buffer positioned at the body length of the map
+     * @param nodes  The factory for the maps of the tree
+     * @return The decoded map
+     * @throws IOException if a nested tag is unknown or a length is corrupt
+     */
+    private static @NotNull Map<String, Object> readMap(@NotNull ByteBuffer buffer,
+                                                        @NotNull Supplier<Map<String, Object>> nodes) throws IOException {
+        buffer.getInt(); // body length
+        int count = readLength(buffer, Integer.BYTES);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+
+        Map<String, Object> map = nodes.get();
+        for (int i = 0; i < count; i++) {
+            String key = readString(buffer);
+            Object value = readTagged(buffer, nodes);
+            if (value != null) map.put(key, value);
+        }
+        return map;
+    }
+
+    static @NotNull String readString(@NotNull ByteBuffer buffer) throws IOException {
+        return new String(readBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static byte @NotNull [] readBytes(@NotNull ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[readLength(buffer, 1)];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads a length or element count and checks it against the bytes left in the buffer, so that
+     * corrupt input fails before anything is allocated for it.
+     *
+     * @param buffer      The buffer positioned at the length
+     * @param elementSize The minimum number of bytes every counted element occupies
+     * @return The length
+     * @throws IOException if the length is negative or larger than the rest of the buffer
+     */
+    private static int readLength(@NotNull ByteBuffer buffer, int elementSize) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining() / elementSize) {
+            throw new IOException("Corrupt binary storage length " + length + " with "
+                    + buffer.remaining() + " bytes left");
+        }
+        return length;
+    }
+
+    private static void writeValue(@NotNull Output out, @Nullable Object value) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof Boolean bool) {
+            out.write(bool ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.write(INT);
+            out.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long number) {
+            out.write(LONG);
+            out.writeLong(number);
+        } else if (value instanceof Float number) {
+            out.write(FLOAT);
+            out.writeInt(Float.floatToRawIntBits(number));
+        } else if (value instanceof Double number) {
+            out.write(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits(number));
+        } else if (value instanceof BigInteger number) {
+            out.write(BIG_INTEGER);
+            writeBytes(out, number.toByteArray());
+        } else if (value instanceof BigDecimal number) {
+            out.write(BIG_DECIMAL);
+            writeBytes(out, number.unscaledValue().toByteArray());
+            out.writeInt(number.scale());
+        } else if (value instanceof Map<?, ?> map) {
+            writeMap(out, map);
+        } else if (value instanceof Collection<?> collection) {
+            out.write(LIST);
+            int lengthPosition = out.reserveInt();
+            int bodyStart = out.size();
+            out.writeInt(collection.size());
+            for (Object element : collection) {
+                writeValue(out, element);
+            }
+            out.patchInt(lengthPosition, out.size() - bodyStart);
+        } else if (value instanceof CharSequence text) {
+            out.write(STRING);
+            writeBytes(out, text.toString().getBytes(StandardCharsets.UTF_8));
+        } else {
+            throw new IllegalArgumentException("Unsupported binary storage value of type " + value.getClass().getName());
+        }
+    }
+
+    private static void writeMap(@NotNull Output out, @NotNull Map<?, ?> map) {
+        List<Map.Entry<byte[], Object>> entries = new ArrayList<>(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (entry.getValue() == null) continue;
+            byte[] key = String.valueOf(entry.getKey()).getBytes(StandardCharsets.UTF_8);
+            entries.add(new AbstractMap.SimpleEntry<>(key, entry.getValue()));
+        }
+        entries.sort((a, b) -> Arrays.compareUnsigned(a.getKey(), b.getKey()));
+
+        out.write(MAP);
+        int lengthPosition = out.reserveInt();
+        int bodyStart = out.size();
+        out.writeInt(entries.size());
+        int tablePosition = out.size();
+        for (int i = 0; i < entries.size(); i++) {
+            out.reserveInt();
+        }
+
+        int entriesStart = out.size();
+        for (int i = 0; i < entries.size(); i++) {
+            out.patchInt(tablePosition + i * Integer.BYTES, out.size() - entriesStart);
+            writeBytes(out, entries.get(i).getKey());
+            writeValue(out, entries.get(i).getValue());
+        }
+        out.patchInt(lengthPosition, out.size() - bodyStart);
+    }
+
+    private static void writeBytes(@NotNull Output out, byte @NotNull [] bytes) {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * A growable byte array that allows patching already written ints.
+     */
+    private static final class Output {
+        private byte[] bytes;
+        private int size;
+
+        Output(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void write(byte value) {
+            ensure(1);
+            bytes[size++] = value;
+        }
+
+        void write(byte @NotNull [] values) {
+            ensure(values.length);
+            System.arraycopy(values, 0, bytes, size, values.length);
+            size += values.length;
+        }
+
+        void writeInt(int value) {
+            ensure(Integer.BYTES);
+            patchInt(size, value);
+            size += Integer.BYTES;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        int reserveInt() {
+            int position = size;
+            writeInt(0);
+            return position;
+        }
+
+        void patchInt(int position, int value) {
+            bytes[position] = (byte) (value >>> 24);
+            bytes[position + 1] = (byte) (value >>> 16);
+            bytes[position + 2] = (byte) (value >>> 8);
+            bytes[position + 3] = (byte) value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte @NotNull [] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensure(int additional) {
+            if (size + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+            }
+        }
+    }
+}
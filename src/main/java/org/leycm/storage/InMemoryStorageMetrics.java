@@ -0,0 +1,271 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The default {@link StorageMetrics} recorder, which keeps everything in memory and needs no
+ * external service.
+ * <p>
+ * Parse and serialize times are recorded per {@link StorageBase.Type} in lock-free log-linear
+ * histograms, everything else in striped counters, so recording is cheap even under contention and
+ * the memory used is fixed. Read the measurements with {@link #snapshot()} or over JMX:
+ * <pre>
+ * InMemoryStorageMetrics metrics = new InMemoryStorageMetrics();
+ * StorageRegistry.setMetrics(metrics);
+ * metrics.registerMBeans();
+ *
+ * StorageMetricsSnapshot snapshot = metrics.snapshot();
+ * long p99 = snapshot.formats().get(StorageBase.Type.JSON).parse().p99Nanos();
+ * </pre>
+ */
+public final class InMemoryStorageMetrics implements StorageMetrics, StorageMetricsMXBean {
+
+    /**
+     * The JMX object name of the counters; the measurements of a format are registered under this
+     * name with an additional {@code format} key.
+     */
+    public static final String OBJECT_NAME = "org.leycm.storage:type=StorageMetrics";
+
+    private final Map<StorageBase.Type, FormatMetrics> formats = new EnumMap<>(StorageBase.Type.class);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder adapterCalls = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a recorder without any measurements.
+     */
+    public InMemoryStorageMetrics() {
+        for (StorageBase.Type type : StorageBase.Type.values()) {
+            formats.put(type, new FormatMetrics());
+        }
+    }
+
+    @Override
+    public void parsed(@NotNull StorageBase.Type type, long bytes, long nanos) {
+        FormatMetrics format = formats.get(type);
+        format.parse.record(nanos);
+        format.bytesRead.add(bytes);
+    }
+
+    @Override
+    public void serialized(@NotNull StorageBase.Type type, long bytes, long nanos) {
+        FormatMetrics format = formats.get(type);
+        format.serialize.record(nanos);
+        format.bytesWritten.add(bytes);
+    }
+
+    @Override
+    public void lookup(boolean hit) {
+        (hit ? hits : misses).increment();
+    }
+
+    @Override
+    public void adapterCalled(@NotNull Class<?> type) {
+        adapterCalls.increment();
+    }
+
+    @Override
+    public void evicted(@NotNull String file) {
+        evictions.increment();
+    }
+
+    /**
+     * Returns the current measurements. Operations recorded while the snapshot is taken may or may
+     * not be included.
+     *
+     * @return The snapshot
+     */
+    public @NotNull StorageMetricsSnapshot snapshot() {
+        Map<StorageBase.Type, StorageMetricsSnapshot.Format> snapshots = new EnumMap<>(StorageBase.Type.class);
+        formats.forEach((type, format) -> snapshots.put(type, format.snapshot()));
+        return new StorageMetricsSnapshot(Collections.unmodifiableMap(snapshots),
+                hits.sum(), misses.sum(), adapterCalls.sum(), evictions.sum());
+    }
+
+    /**
+     * Clears all measurements. Operations recorded concurrently may be partially kept.
+     */
+    @Override
+    public void reset() {
+        formats.values().forEach(FormatMetrics::reset);
+        hits.reset();
+        misses.reset();
+        adapterCalls.reset();
+        evictions.reset();
+    }
+
+    /**
+     * Registers this recorder with the platform MBean server as {@value #OBJECT_NAME}, and one MBean
+     * per format as {@value #OBJECT_NAME}{@code ,format=<type>}. MBeans of another recorder
+     * registered under these names before are replaced.
+     *
+     * @throws RuntimeException if the MBeans cannot be registered
+     */
+    public void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, new ObjectName(OBJECT_NAME), this);
+            for (Map.Entry<StorageBase.Type, FormatMetrics> entry : formats.entrySet()) {
+                register(server, formatName(entry.getKey()), entry.getValue());
+            }
+        } catch (JMException e) {
+            throw new RuntimeException("Failed to register storage metrics", e);
+        }
+    }
+
+    /**
+     * Removes the MBeans registered by {@link #registerMBeans()}. Names that are not registered are skipped.
+     *
+     * @throws RuntimeException if the MBeans cannot be unregistered
+     */
+    public void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            unregister(server, new ObjectName(OBJECT_NAME));
+            for (StorageBase.Type type : formats.keySet()) {
+                unregister(server, formatName(type));
+            }
+        } catch (JMException e) {
+            throw new RuntimeException("Failed to unregister storage metrics", e);
+        }
+    }
+
+    @Override
+    public long getLookupHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getLookupMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getLookupHitRate() {
+        long found = hits.sum();
+        long lookups = found + misses.sum();
+        return lookups == 0 ? 1.0 : (double) found / lookups;
+    }
+
+    @Override
+    public long getAdapterCalls() {
+        return adapterCalls.sum();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return evictions.sum();
+    }
+
+    private static @NotNull ObjectName formatName(@NotNull StorageBase.Type type) throws JMException {
+        return new ObjectName(OBJECT_NAME + ",format=" + type.getId());
+    }
+
+    private static void register(@NotNull MBeanServer server, @NotNull ObjectName name, @NotNull Object mbean) throws JMException {
+        unregister(server, name);
+        server.registerMBean(mbean, name);
+    }
+
+    private static void unregister(@NotNull MBeanServer server, @NotNull ObjectName name) throws JMException {
+        try {
+            server.unregisterMBean(name);
+        } catch (InstanceNotFoundException ignored) {
+            // nothing registered under this name
+        }
+    }
+
+    /**
+     * The measurements of the files of one format.
+     */
+    private static final class FormatMetrics implements StorageFormatMetricsMXBean {
+        private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+        private final LatencyHistogram parse = new LatencyHistogram();
+        private final LatencyHistogram serialize = new LatencyHistogram();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+
+        private @NotNull StorageMetricsSnapshot.Format snapshot() {
+            return new StorageMetricsSnapshot.Format(parse.snapshot(), serialize.snapshot(),
+                    bytesRead.sum(), bytesWritten.sum());
+        }
+
+        private void reset() {
+            parse.reset();
+            serialize.reset();
+            bytesRead.reset();
+            bytesWritten.reset();
+        }
+
+        @Override
+        public long getParseCount() {
+            return parse.count();
+        }
+
+        @Override
+        public double getParseMeanMillis() {
+            return parse.snapshot().meanNanos() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public double getParseP50Millis() {
+            return parse.snapshot().p50Nanos() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public double getParseP99Millis() {
+            return parse.snapshot().p99Nanos() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public double getParseMaxMillis() {
+            return parse.snapshot().maxNanos() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public long getSerializeCount() {
+            return serialize.count();
+        }
+
+        @Override
+        public double getSerializeMeanMillis() {
+            return serialize.snapshot().meanNanos() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public double getSerializeP50Millis() {
+            return serialize.snapshot().p50Nanos() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public double getSerializeP99Millis() {
+            return serialize.snapshot().p99Nanos() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public double getSerializeMaxMillis() {
+            return serialize.snapshot().maxNanos() / NANOS_PER_MILLI;
+        }
+
+        @Override
+        public long getBytesRead() {
+            return bytesRead.sum();
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return bytesWritten.sum();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds with log-linear buckets, in the style of
+ * HdrHistogram.
+ * <p>
+ * Values below {@code 2 * SUB_BUCKETS} get a bucket of their own. Above that, every power of two is
+ * split into {@code SUB_BUCKETS} equally wide buckets, so a reported percentile is never more than
+ * about 3% above the recorded value, whatever its magnitude. Recording is a handful of atomic
+ * increments and the memory is fixed, so the histogram can stay enabled indefinitely.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a duration. Negative durations, which a non-monotonic clock could produce, count as 0.
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Clears all recorded values. Values recorded concurrently may be partially kept.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    /**
+     * Returns the summary of the recorded values.
+     *
+     * @return The snapshot
+     */
+    @NotNull StorageMetricsSnapshot.Timing snapshot() {
+        long[] copy = new long[BUCKETS];
+        long recorded = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            recorded += copy[i];
+        }
+
+        long highest = max.get();
+        return new StorageMetricsSnapshot.Timing(recorded, total.sum(), highest,
+                percentile(copy, recorded, 0.50, highest),
+                percentile(copy, recorded, 0.90, highest),
+                percentile(copy, recorded, 0.99, highest));
+    }
+
+    /**
+     * Returns the number of recorded values.
+     */
+    long count() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given percentile, capped at the maximum.
+     */
+    private static long percentile(long @NotNull [] counts, long recorded, double quantile, long highest) {
+        if (recorded == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * recorded));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(highestValueIn(i), highest);
+        }
+        return highest;
+    }
+
+    private static int indexOf(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValueIn(int index) {
+        if (index < 2 * SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index - (long) shift * SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
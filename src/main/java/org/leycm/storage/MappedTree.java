@@ -0,0 +1,248 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A read-only view of a {@link BinaryFormat} file that is mapped into memory instead of being decoded.
+ * <p>
+ * Lookups walk the file directly: at every level the key is found by a binary search over the offset
+ * table of the map, and only the requested value is decoded. Opening a file therefore costs a single
+ * {@code mmap} call regardless of its size, and the data itself lives outside the Java heap.
+ * Since the file is never decoded as a whole, every length, count and offset a lookup reads is checked
+ * against the body of its map, and a corrupt file fails the lookup instead of reading out of bounds.
+ */
+final class MappedTree {
+    private final ByteBuffer buffer;
+    private final int root;
+
+    /**
+     * Creates a view over an already validated buffer.
+     *
+     * @param buffer The mapped file content
+     * @param root   The position of the root map's body, or -1 for an empty file
+     */
+    private MappedTree(@NotNull ByteBuffer buffer, int root) {
+        this.buffer = buffer;
+        this.root = root;
+    }
+
+    /**
+     * Maps a binary storage file into memory. A missing or empty file results in an empty view.
+     *
+     * @param file The file to map
+     * @return The mapped view
+     * @throws IOException if the file cannot be mapped or is not in the binary storage format
+     */
+    static @NotNull MappedTree open(@NotNull Path file) throws IOException {
+        if (!file.toFile().exists()) return new MappedTree(ByteBuffer.allocate(0), -1);
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Binary storage file too large to map: " + file);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (!buffer.hasRemaining()) return new MappedTree(buffer, -1);
+
+        BinaryFormat.checkHeader(buffer.duplicate());
+        if (buffer.get(BinaryFormat.HEADER_SIZE) != BinaryFormat.MAP) throw new IOException("Storage root must be a map");
+        return new MappedTree(buffer, BinaryFormat.HEADER_SIZE + 1);
+    }
+
+    /**
+     * Looks up and decodes the value at the given path.
+     *
+     * @param path  The path of the value
+     * @param nodes The factory for maps, used if the value is itself a map
+     * @return The decoded value, or null if the path does not exist
+     */
+    @Nullable Object get(@NotNull StoragePath path, @NotNull Supplier<Map<String, Object>> nodes) {
+        try {
+            int position = locate(path);
+            if (position < 0) return null;
+            return BinaryFormat.readValue(buffer.duplicate().position(position), nodes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt binary storage", e);
+        }
+    }
+
+    /**
+     * Collects the keys of the map at the given path, see {@link StorageBase#getKeys(String, boolean)}.
+     *
+     * @param base      The path of the map, or null for the root
+     * @param deep      If true, nested keys are added with their path relative to {@code base}
+     * @param collector The set where keys will be collected
+     */
+    void collectKeys(@Nullable StoragePath base, boolean deep, @NotNull Set<String> collector) {
+        try {
+            int position = root;
+            if (base != null && position >= 0) {
+                position = locate(base);
+                if (position < 0 || buffer.get(position) != BinaryFormat.MAP) return;
+                position++;
+            }
+            if (position >= 0) collectKeys(position, "", deep, collector);
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt binary storage", e);
+        }
+    }
+
+    /**
+     * Decodes the complete tree.
+     *
+     * @param nodes The factory for the maps of the tree
+     * @return The root map
+     */
+    @NotNull Map<String, Object> decodeAll(@NotNull Supplier<Map<String, Object>> nodes) {
+        if (root < 0) return nodes.get();
+        try {
+            return BinaryFormat.decode(buffer.duplicate().position(0), nodes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt binary storage", e);
+        }
+    }
+
+    /**
+     * Finds the position of the tag of the value at the given path.
+     *
+     * @param path The path to look up
+     * @return The position of the value's tag, or -1 if the path does not exist
+     * @throws IOException if a map on the way is corrupt
+     */
+    private int locate(@NotNull StoragePath path) throws IOException {
+        byte[][] keys = path.utf8Segments();
+        if (root < 0 || keys.length == 0) return -1;
+
+        int map = root;
+        for (int i = 0; ; i++) {
+            int value = find(map, keys[i]);
+            if (value < 0 || i == keys.length - 1) return value;
+            if (buffer.get(value) != BinaryFormat.MAP) return -1;
+            map = value + 1;
+        }
+    }
+
+    /**
+     * Binary searches a map for a key.
+     *
+     * @param map The position of the map's body
+     * @param key The UTF-8 bytes of the key
+     * @return The position of the value's tag, or -1 if the key is not present
+     * @throws IOException if the map is corrupt
+     */
+    private int find(int map, byte @NotNull [] key) throws IOException {
+        int end = bodyEnd(map);
+        int count = count(map, end);
+        int table = map + 2 * Integer.BYTES;
+        int entries = table + count * Integer.BYTES;
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = entry(entries, buffer.getInt(table + middle * Integer.BYTES), end);
+            int comparison = compareKey(entry, keyLength(entry, end), key);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return entry + Integer.BYTES + key.length;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the length-prefixed key stored at a position with the given bytes.
+     */
+    private int compareKey(int position, int length, byte @NotNull [] key) {
+        int start = position + Integer.BYTES;
+        int shared = Math.min(length, key.length);
+
+        for (int i = 0; i < shared; i++) {
+            int comparison = Byte.compareUnsigned(buffer.get(start + i), key[i]);
+            if (comparison != 0) return comparison;
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private void collectKeys(int map, @NotNull String prefix, boolean deep, @NotNull Set<String> collector) throws IOException {
+        int end = bodyEnd(map);
+        int count = count(map, end);
+        int table = map + 2 * Integer.BYTES;
+        int entries = table + count * Integer.BYTES;
+
+        for (int i = 0; i < count; i++) {
+            int entry = entry(entries, buffer.getInt(table + i * Integer.BYTES), end);
+            int length = keyLength(entry, end);
+            byte[] bytes = new byte[length];
+            buffer.get(entry + Integer.BYTES, bytes);
+
+            String key = new String(bytes, StandardCharsets.UTF_8);
+            String path = prefix.isEmpty() ? key : prefix + "." + key;
+            collector.add(path);
+
+            int value = entry + Integer.BYTES + length;
+            if (deep && buffer.get(value) == BinaryFormat.MAP) collectKeys(value + 1, path, true, collector);
+        }
+    }
+
+    /**
+     * Reads the body length of a map and checks that the body lies within the buffer.
+     *
+     * @param map The position of the map's body
+     * @return The position right after the body
+     * @throws IOException if the body length is corrupt
+     */
+    private int bodyEnd(int map) throws IOException {
+        if (map > buffer.limit() - 2 * Integer.BYTES) throw corrupt(map);
+        int length = buffer.getInt(map);
+        if (length < Integer.BYTES || length > buffer.limit() - map - Integer.BYTES) throw corrupt(map);
+        return map + Integer.BYTES + length;
+    }
+
+    /**
+     * Reads the entry count of a map and checks that its offset table fits into the body.
+     */
+    private int count(int map, int end) throws IOException {
+        int count = buffer.getInt(map + Integer.BYTES);
+        if (count < 0 || count > (end - map - 2 * Integer.BYTES) / Integer.BYTES) throw corrupt(map);
+        return count;
+    }
+
+    /**
+     * Resolves an entry offset of the table and checks that the entry lies within the body.
+     */
+    private int entry(int entries, int offset, int end) throws IOException {
+        if (offset < 0 || offset > end - entries - Integer.BYTES) throw corrupt(entries);
+        return entries + offset;
+    }
+
+    /**
+     * Reads the length of the key of an entry and checks that the key and the tag of the value fit
+     * into the body.
+     */
+    private int keyLength(int entry, int end) throws IOException {
+        int length = buffer.getInt(entry);
+        if (length < 0 || length > end - entry - Integer.BYTES - 1) throw corrupt(entry);
+        return length;
+    }
+
+    private static @NotNull IOException corrupt(int position) {
+        return new IOException("Corrupt binary storage map at position " + position);
+    }
+}
@@ -1,30 +1,63 @@
 package org.leycm.storage;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.Getter;
-import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.net.MalformedURLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * Abstract base class for storage implementations that handle key-value data persistence.
- * Supports multiple file formats (JSON, YAML, TOML) and provides type adapters for custom serialization.
+ * Supports multiple file formats (JSON, YAML, TOML, binary) and provides type adapters for custom serialization.
  * <p>
  * This class provides a hierarchical storage system with dot-notation paths (e.g., "user.profile.name")
  * and supports custom type adapters for complex object serialization/deserialization.
+ * <p>
+ * Mutations are serialized on {@link #lock}. Reads never lock; by default they are only safe
+ * while no other thread mutates the storage, see {@link Option#CONCURRENT} for cross-thread use.
  */
 public abstract class StorageBase {
-    protected final Map<String, Object> init = new HashMap<>();
+    protected volatile Map<String, Object> init = new HashMap<>();
+    protected final ReentrantLock lock = new ReentrantLock();
 
     protected final Map<Class<?>, StorageAdapter.Setter<?>> encrypting = new HashMap<>();
     protected final Map<Class<?>, StorageAdapter.Getter<?>> decrypting = new HashMap<>();
+    private volatile AdapterResolver adapters = AdapterResolver.empty();
 
     protected String file = "storage";
     protected Type type = Type.JSON;
     protected boolean isDigital = false;
+    protected Set<Option> options = EnumSet.noneOf(Option.class);
+
+    volatile StorageIndex index;
+    volatile MappedTree mapped;
+    volatile long fileStamp = -1;
+    volatile boolean dirty = false;
+    volatile int structure = 0;
+    StorageTransaction transaction; // guarded by lock
+    StorageJournal journal;
+    StorageShards shards;
+    final Object saveLock = new Object();
+
+    // created on first use, so section views and storages nobody listens to do not carry them
+    private volatile Map<String, List<StorageListener>> listeners;
+    private volatile StorageWatchers watchers;
+    private List<StorageChange> pending; // guarded by lock
+    private volatile Cache<StoragePath, StorageSection> sections;
 
     /**
      * Creates or loads a storage instance of the specified type.
@@ -34,6 +67,7 @@ public abstract class StorageBase {
      * @param type          The storage file format type (JSON, YAML, or TOML)
      * @param digital       The storage file state digital or not
      * @param storageClass  The class of the storage implementation to create
+     * @param options       Optional behaviours of the storage (see {@link Option})
      * @return A new storage instance of the requested type
      * @throws IllegalArgumentException if the storage cannot be created or loaded
      * @throws RuntimeException if there's an error during initialization
@@ -41,8 +75,9 @@ public abstract class StorageBase {
     public static <T extends StorageBase> @NotNull T of(@NotNull String file,
                                                         @NotNull Type type,
                                                         boolean digital,
-                                                        @NotNull Class<T> storageClass) {
-        return StorageRegistry.register(file, type, digital, storageClass);
+                                                        @NotNull Class<T> storageClass,
+                                                        Option @NotNull ... options) {
+        return StorageRegistry.register(file, type, digital, storageClass, options);
     }
 
     /**
@@ -52,18 +87,23 @@ public abstract class StorageBase {
      * @param file          The base filename (without extension) where data will be stored
      * @param type          The storage file format type (JSON, YAML, or TOML)
      * @param storageClass  The class of the storage implementation to create
+     * @param options       Optional behaviours of the storage (see {@link Option})
      * @return A new storage instance of the requested type
      * @throws IllegalArgumentException if the storage cannot be created or loaded
      * @throws RuntimeException if there's an error during initialization
      */
     public static <T extends StorageBase> @NotNull T of(@NotNull String file,
                                                         @NotNull Type type,
-                                                        @NotNull Class<T> storageClass) {
-        return StorageRegistry.register(file, type, false, storageClass);
+                                                        @NotNull Class<T> storageClass,
+                                                        Option @NotNull ... options) {
+        return StorageRegistry.register(file, type, false, storageClass, options);
     }
 
     /**
      * Adds a type adapter for custom serialization/deserialization of specific classes.
+     * <p>
+     * The setter is also used for values of subclasses and implementations of {@code type},
+     * unless a more specific adapter is registered for them.
      *
      * @param <T>     The type to be adapted
      * @param type    The class object representing the type to be adapted
@@ -73,6 +113,7 @@ public abstract class StorageBase {
     public <T> void addAdapter(Class<T> type, StorageAdapter.Setter<T> setter, StorageAdapter.Getter<T> getter) {
         encrypting.put(type, setter);
         decrypting.put(type, getter);
+        adapters = new AdapterResolver(new HashMap<>(encrypting), new HashMap<>(decrypting));
     }
 
     /**
@@ -114,12 +155,68 @@ public abstract class StorageBase {
      * @return The deserialized StorageSection object
      */
 
-    @Contract("_ -> new")
     private @NotNull StorageSection getStorageSection(String key) {
-        StorageSection section = new StorageSection();
-        section.parentKey = key;
-        section.parentStorage = this;
-        return section;
+        return section(StoragePath.of(key));
+    }
+
+    /**
+     * Returns the section view of the subtree at the given path. Sections hold no data of their own,
+     * so a single instance per path is shared while it is referenced; sections nobody holds any more
+     * are dropped, so views of removed or short-lived paths do not accumulate.
+     *
+     * @param path The path of the section
+     * @return The section
+     */
+    @NotNull StorageSection section(@NotNull StoragePath path) {
+        Cache<StoragePath, StorageSection> cache = sections;
+        if (cache == null) {
+            synchronized (this) {
+                cache = sections;
+                if (cache == null) sections = cache = CacheBuilder.newBuilder().weakValues().build();
+            }
+        }
+        return cache.asMap().computeIfAbsent(path, key -> {
+            StorageSection section = new StorageSection();
+            section.parentKey = key.toString();
+            section.parentPath = key;
+            section.parentStorage = this;
+            return section;
+        });
+    }
+
+    /**
+     * Returns the map at the given path of the current tree, which sections use as their backing node.
+     * The result stays valid until {@link #structureVersion()} changes.
+     *
+     * @param path The path of the map
+     * @return The map, or null if there is no map at the path or the storage is {@link Option#MAPPED}
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable Map<String, Object> nodeAt(@NotNull StoragePath path) {
+        if (mapped != null) return null;
+        if (shards != null) {
+            if (path.segments().length == 0) loadShards();
+            else loadShard(path.segment(0));
+        }
+
+        Object node = init;
+        for (String segment : path.segments()) {
+            if (!(node instanceof Map)) return null;
+            node = ((Map<String, Object>) node).get(segment);
+        }
+        return node instanceof Map ? (Map<String, Object>) node : null;
+    }
+
+    /**
+     * Returns a counter that changes whenever a map of the tree is added, replaced or removed,
+     * including when the whole tree is swapped.
+     *
+     * Subclasses can use it to drop caches derived from the paths of the tree.
+     *
+     * @return The structure version
+     */
+    protected int structureVersion() {
+        return structure;
     }
 
     /**
@@ -129,7 +226,13 @@ public abstract class StorageBase {
     public enum Type {
         YAML("yml"),
         JSON("json"),
-        TOML("toml");
+        TOML("toml"),
+
+        /**
+         * A compact binary format that is much faster to load and save than the text formats.
+         * String representations of this format are Base64 encoded.
+         */
+        BINARY("bin");
 
         private final String id;
 
@@ -144,253 +247,1497 @@ public abstract class StorageBase {
     }
 
     /**
-     * Checks if this storage instance is marked as digital (should not persist to file).
-     * @return true if the @Digital annotation is present on the class
+     * Enum representing optional behaviours that can be enabled when a storage is created.
      */
-    public boolean isDigital() {
-        return isDigital;
+    public enum Option {
+        /**
+         * Maintains a flat {@code fullPath -> value} index next to the nested tree,
+         * so lookups of deep keys cost a single hash probe. The paths are also kept sorted, so
+         * {@link #getKeys(String, boolean)} lists a subtree without walking its maps, at the price
+         * of a logarithmic update of the sorted paths on every mutation.
+         * <p>
+         * Maps obtained from the storage must not be modified directly while this option is
+         * enabled, otherwise the index can no longer see the change. Committing a
+         * {@link StorageTransaction} copies the whole index, so its cost grows with the number of
+         * paths in the storage rather than with the number of edits.
+         */
+        INDEXED,
+
+        /**
+         * Makes the storage safe for use from multiple threads without ever blocking readers.
+         * <p>
+         * All nested maps are {@link ConcurrentHashMap}s and writers are serialized on the
+         * storage lock, so intermediate maps are created exactly once. The guarantees are:
+         * <ul>
+         *   <li>a single read sees either the value before or after a concurrent write, never a torn state</li>
+         *   <li>a read that starts after a write completed sees that write</li>
+         *   <li>reads of several keys are not a snapshot; writes may land between them</li>
+         *   <li>{@link #getKeys(boolean)} is weakly consistent, like the iterators of {@link ConcurrentHashMap}</li>
+         * </ul>
+         * Values of type {@code null} cannot be stored; setting null removes the key as usual.
+         */
+        CONCURRENT,
+
+        /**
+         * Opens a {@link Type#BINARY} storage read-only by mapping its file into memory.
+         * <p>
+         * Nothing is decoded when the storage is loaded; every read binary-searches the mapped file and
+         * decodes only the requested value, so opening is near-instant and the heap footprint stays tiny
+         * regardless of the file size. All mutating methods throw {@link UnsupportedOperationException}.
+         * Change listeners are not notified on reload.
+         */
+        MAPPED,
+
+        /**
+         * Persists every {@code set} and {@code remove} by appending a small record to a journal next
+         * to the storage file ({@code <file>.journal}) instead of rewriting the whole file.
+         * <p>
+         * Records are written to the operating system immediately, so they survive a crash of the
+         * process; {@link #save()} and {@link #flush()} additionally sync the journal to the device.
+         * Once the journal exceeds {@link StorageRegistry#getJournalCompactionSize()} it is compacted
+         * into a new snapshot of the file in the background, and {@link #reload()} replays the journal
+         * on top of the snapshot. Replacing the whole content, e.g. with {@link #fromString(String)},
+         * writes a full snapshot on the next save.
+         */
+        JOURNALED,
+
+        /**
+         * Spreads the top-level keys of the storage over several files in the directory {@code <file>/},
+         * for storages with very many top-level keys.
+         * <p>
+         * A shard is loaded the first time one of its keys is read or written, and {@link #save()} only
+         * writes the shards that were modified since they were last saved. {@link #reload()} reloads the
+         * shards that are currently loaded. Operations on the whole content, such as
+         * {@link #getKeys(boolean)} from the root, {@link #toString()} and {@link #fromString(String)},
+         * load all shards. The number of shards is taken from {@link StorageRegistry#setShardCount(int)}
+         * when the storage is created and kept from then on.
+         */
+        SHARDED
     }
 
+    /**
+     * Checks if the given option was enabled when this storage was created.
+     *
+     * @param option The option to check
+     * @return true if the option is enabled
+     */
+    public boolean hasOption(@NotNull Option option) {
+        return options.contains(option);
+    }
 
     /**
-     * Stores a value at the specified key/path.
-     * <p>
-     * Uses registered adapters if available for the value type, otherwise uses default storage.
-     * If the value is null, the key will be removed from storage.
+     * Applies the creation options of this storage. Called by the registry before the
+     * first load.
      *
-     * @param <T>   The type of the value to store
-     * @param key   The path/key where to store the value (dot-notation supported)
-     * @param value The value to store (null will remove the key)
+     * @param options The enabled options
      */
-    public <T> void set(@NotNull String key, @Nullable T value) {
-        if (value == null) {
-            remove(key);
-            return;
-        }
+    void configure(@NotNull Set<Option> options) {
+        this.options = options;
+        this.init = newNode();
+        this.index = newIndex();
+    }
 
-        @SuppressWarnings("unchecked")
-        StorageAdapter.Setter<T> setter = (StorageAdapter.Setter<T>) encrypting.get(value.getClass());
+    /**
+     * Creates an empty flat index matching the storage's options.
+     *
+     * @return A new index, or null if {@link Option#INDEXED} is not enabled
+     */
+    private @Nullable StorageIndex newIndex() {
+        if (!options.contains(Option.INDEXED)) return null;
+        return options.contains(Option.CONCURRENT) ? new StorageIndex(new ConcurrentHashMap<>(), new ConcurrentSkipListSet<>())
+                : new StorageIndex();
+    }
 
-        if (setter != null) {
-            setter.set(key, value);
-        } else {
-            setDefault(key, value);
-        }
+    /**
+     * Creates an empty map for a node of the storage tree, matching the storage's options.
+     *
+     * @return A new, empty node map
+     */
+    protected @NotNull Map<String, Object> newNode() {
+        return options.contains(Option.CONCURRENT) ? new ConcurrentHashMap<>() : new LinkedHashMap<>();
     }
 
     /**
-     * Retrieves a value with a fallback to default if not found.
+     * Casts a map found in the tree to a node. Maps only enter the tree through {@link #newNode()},
+     * the parsers and {@link #set(String, Object)}, all of which use string keys.
      *
-     * @param <T>          The expected return type
-     * @param key          The path/key of the value to retrieve
-     * @param type         The expected class of the return value
-     * @param defaultValue The value to return if the key doesn't exist
-     * @return The stored value if found and convertible, otherwise the defaultValue
-     * @see #get(String, Class)
+     * @param map A map of the tree
+     * @return The same map as a node
      */
-    public <T> T get(@NotNull String key,
-                     @NotNull Class<T> type,
-                     @Nullable T defaultValue) {
-        T value = get(key, type);
-        return value != null ? value : defaultValue;
+    @SuppressWarnings("unchecked")
+    static @NotNull Map<String, Object> asNode(@NotNull Object map) {
+        return (Map<String, Object>) map;
     }
 
     /**
-     * Retrieves a value of specified type from storage.
-     * <p>
-     * If a type adapter is registered for the requested type, it will be used for deserialization.
+     * Converts a freshly parsed tree into node maps of this storage.
+     * Maps produced by the parsers are kept as-is unless {@link Option#CONCURRENT} is enabled,
+     * in which case every nested map is copied into a {@link #newNode()} and null values are dropped.
      *
-     * @param <T>  The expected return type
-     * @param key  The path/key of the value to retrieve
-     * @param type The expected class of the return value
-     * @return The stored value if found and convertible, otherwise null
-     * @throws RuntimeException if there's an error during deserialization
+     * @param parsed The parsed tree
+     * @return A tree that can be stored in {@link #init}
      */
     @SuppressWarnings("unchecked")
-    public <T> @Nullable T get(@NotNull String key, @NotNull Class<T> type) {
-        Object value = getPathValue(key);
-        if (value == null) return null;
+    @NotNull Map<String, Object> adoptTree(@Nullable Map<?, ?> parsed) {
+        if (parsed == null) return newNode();
+        if (!options.contains(Option.CONCURRENT)) return (Map<String, Object>) parsed;
 
-        if (type.isInstance(value)) {
-            return (T) value;
+        Map<String, Object> node = newNode();
+        for (Map.Entry<?, ?> entry : parsed.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null) continue;
+            node.put(String.valueOf(entry.getKey()), value instanceof Map<?, ?> map ? adoptTree(map) : value);
         }
+        return node;
+    }
 
-        StorageAdapter.Getter<T> getter = (StorageAdapter.Getter<T>) decrypting.get(type);
-        if (getter != null) {
-            try {
-                return getter.get(key);
-            } catch (MalformedURLException e) {
-                throw new RuntimeException(e);
-            }
+    /**
+     * Replaces the whole tree of this storage with a freshly parsed one.
+     * <p>
+     * The new tree and its index are built completely before they are published with a single
+     * volatile write, so readers see either the old or the new tree but never a mix of both,
+     * and never wait for the replacement. Keys missing from the parsed tree disappear.
+     *
+     * @param parsed The parsed tree
+     */
+    void replace(@Nullable Map<?, ?> parsed) {
+        replaceTree(adoptTree(parsed));
+    }
+
+    /**
+     * Replaces the whole tree of this storage like {@link #replace(Map)} with a tree whose maps
+     * were already created by {@link #newNode()}. Listeners and watches are notified after the
+     * lock is released.
+     *
+     * @param tree The new root map, which must not be shared with any other storage
+     */
+    void replaceTree(@NotNull Map<String, Object> tree) {
+        replaceTree(tree, true);
+    }
+
+    /**
+     * Replaces the whole tree of this storage like {@link #replaceTree(Map)}, optionally only if that
+     * loses no changes. The check and the swap happen under the same lock, so no write can slip in
+     * between them.
+     *
+     * @param tree           The new root map, which must not be shared with any other storage
+     * @param discardChanges If false, the tree is left unchanged while the storage has unsaved changes
+     *                       or an open transaction
+     * @return true if the tree was replaced
+     */
+    boolean replaceTree(@NotNull Map<String, Object> tree, boolean discardChanges) {
+        StorageIndex rebuilt = indexOf(tree);
+        Map<String, Object> previous;
+        lock.lock();
+        try {
+            if (!discardChanges && (dirty || transaction != null)) return false;
+            previous = swapTree(tree, rebuilt);
+        } finally {
+            release();
         }
+        notifyReplaced(previous, tree);
+        return true;
+    }
 
-        return null;
+    /**
+     * Publishes a reloaded tree and marks the storage as saved. The changes are described for the
+     * watches, which {@link #release()} notifies. Must be called while holding the storage lock, and
+     * the caller must pass the result to {@link #notifyReplaced(Map, Map)} once it released the lock.
+     *
+     * @param tree    The new root map, which must not be shared with any other storage
+     * @param rebuilt The index of the new tree, see {@link #indexOf(Map)}
+     * @return The previous root map
+     * @throws IllegalStateException if a transaction is open
+     */
+    @NotNull Map<String, Object> swapTree(@NotNull Map<String, Object> tree, @Nullable StorageIndex rebuilt) {
+        Map<String, Object> previous = init;
+        publish(tree, rebuilt);
+        dirty = false;
+        record(previous, tree);
+        return previous;
     }
 
     /**
-     * Internal method to retrieve a value using dot-path notation.
+     * Notifies the change listeners of the differences between the tree before and after it was
+     * replaced. Must be called without holding the storage lock.
      *
-     * @param path The dot-separated path to the value (e.g., "user.profile.name")
-     * @return The value if found, otherwise null
+     * @param previous The root before the replacement
+     * @param tree     The root after the replacement
      */
-    public @Nullable Object getPathValue(@NotNull String path) {
-        String[] parts = path.split("\\.");
-        Map<String, Object> current = init;
+    void notifyReplaced(@NotNull Map<String, Object> previous, @NotNull Map<String, Object> tree) {
+        Map<String, List<StorageListener>> registered = listeners;
+        if (registered == null || registered.isEmpty()) return;
+        StorageDiff.compare(previous, tree).forEach(this::fireChange);
+    }
 
-        for (int i = 0; i < parts.length - 1; i++) {
-            Object next = current.get(parts[i]);
-            if (!(next instanceof Map)) return null;
-            //noinspection unchecked
-            current = (Map<String, Object>) next;
+    /**
+     * Merges a freshly parsed tree over the top-level keys of this storage.
+     * <p>
+     * The merge is applied to a copy of the root map that is then published like in
+     * {@link #replace(Map)}, so readers never observe a half-merged state.
+     *
+     * @param parsed The parsed tree
+     */
+    void merge(@Nullable Map<?, ?> parsed) {
+        requireWritable();
+        Map<String, Object> additions = adoptTree(parsed);
+
+        lock.lock();
+        try {
+            loadShards();
+            if (shards != null) additions.keySet().forEach(key -> shards.markDirty(shards.shardOf(key)));
+            Map<String, Object> previous = init;
+            Map<String, Object> tree = newNode();
+            tree.putAll(init);
+            tree.putAll(additions);
+            publish(tree, indexOf(tree));
+            dirty = true;
+            record(previous, tree);
+        } finally {
+            release();
         }
-
-        return current.get(parts[parts.length - 1]);
     }
 
     /**
-     * Internal method to store a value using dot-path notation with automatic map creation.
+     * Builds the flat index of a tree that is about to be published.
      *
-     * @param path  The dot-separated path where to store the value
-     * @param value The value to store
+     * @param tree The tree
+     * @return The index, or null if {@link Option#INDEXED} is not enabled
      */
-    private void setDefault(@NotNull String path, Object value) {
-        String[] parts = path.split("\\.");
-        Map<String, Object> current = init;
+    @Nullable StorageIndex indexOf(@NotNull Map<String, Object> tree) {
+        StorageIndex rebuilt = newIndex();
+        if (rebuilt != null) rebuilt.rebuild(tree);
+        return rebuilt;
+    }
 
-        for (int i = 0; i < parts.length - 1; i++) {
-            //noinspection unchecked
-            current = (Map<String, Object>) current.computeIfAbsent(
-                    parts[i], k -> new HashMap<String, Object>()
-            );
+    /**
+     * Publishes a complete tree as the new root of this storage together with its index.
+     *
+     * @param tree    The new root map, which must not be shared with any other storage
+     * @param rebuilt The index of the new tree, see {@link #indexOf(Map)}
+     */
+    private void publish(@NotNull Map<String, Object> tree, @Nullable StorageIndex rebuilt) {
+        lock.lock();
+        try {
+            if (transaction != null) throw new IllegalStateException("Cannot replace the tree of " + file + " during a transaction");
+            init = tree;
+            index = rebuilt;
+            structure++;
+        } finally {
+            lock.unlock();
         }
+    }
 
-        current.put(parts[parts.length - 1], value);
+    /**
+     * Publishes the working copy of a committed transaction together with its index. The index must
+     * not be shared with readers yet, see {@link #copyIndex()}. Must be called while holding the
+     * storage lock.
+     *
+     * @param committed The transaction being committed
+     * @param tree      The working copy of the transaction
+     * @param updated   The index of the working copy, or null if the storage is not indexed
+     * @throws IllegalStateException if the transaction is not the one open on this storage
+     */
+    void publish(@NotNull StorageTransaction committed,
+                 @NotNull Map<String, Object> tree,
+                 @Nullable StorageIndex updated) {
+        if (transaction != committed) throw new IllegalStateException("Transaction is not open on " + file);
+        init = tree;
+        index = updated;
+        structure++;
     }
 
     /**
-     * Removes a value at the specified path.
+     * Returns a private copy of the current flat index, which can be updated and then published
+     * without readers observing a partially updated index.
      *
-     * @param path The dot-separated path of the value to remove
+     * @return The copy, or null if {@link Option#INDEXED} is not enabled
      */
-    private void remove(@NotNull String path) {
-        String[] parts = path.split("\\.");
-        Map<String, Object> current = init;
+    @Nullable StorageIndex copyIndex() {
+        StorageIndex current = index;
+        if (current == null) return null;
+        StorageIndex copied = newIndex();
+        if (copied != null) copied.addAll(current);
+        return copied;
+    }
 
-        for (int i = 0; i < parts.length - 1; i++) {
-            Object next = current.get(parts[i]);
-            if (!(next instanceof Map)) return;
-            //noinspection unchecked
-            current = (Map<String, Object>) next;
-        }
+    /**
+     * Publishes a newly mapped file as the content of a {@link Option#MAPPED} storage.
+     *
+     * @param tree The mapped file
+     */
+    void remap(@NotNull MappedTree tree) {
+        mapped = tree;
+        structure++;
+        dirty = false;
+    }
 
-        current.remove(parts[parts.length - 1]);
+    /**
+     * Returns the complete tree of this storage, decoding it first if the storage is {@link Option#MAPPED}.
+     *
+     * @return The root map, which must not be modified
+     */
+    @NotNull Map<String, Object> tree() {
+        MappedTree tree = mapped;
+        if (tree != null) return tree.decodeAll(this::newNode);
+        loadShards();
+        return init;
     }
 
     /**
-     * Reloads the storage data from the file using the selected {@link Type}.
-     * <p>
-     * Replaces the current {@link #init} contents with the loaded data.
-     * This operation is thread-safe and will preserve any registered adapters.
+     * Loads the shard of the given top-level key of a {@link Option#SHARDED} storage if it is not
+     * loaded yet. Does nothing for other storages.
      *
-     * @throws RuntimeException if the reload operation fails (e.g., file not found or parse error)
+     * @param key The top-level key
+     * @throws RuntimeException if the shard file cannot be read
      */
-    public void reload() {StorageRegistry.reload(this); }
+    void loadShard(@NotNull String key) {
+        StorageShards current = shards;
+        if (current == null) return;
+        int shard = current.shardOf(key);
+        if (current.isLoaded(shard)) return;
+
+        lock.lock();
+        try {
+            if (!current.isLoaded(shard)) adoptShard(current, shard);
+        } finally {
+            lock.unlock();
+        }
+    }
 
     /**
-     * Saves the current storage data to a file using the selected {@link Type}.
-     * <p>
-     * Automatically serializes the {@link #init} map based on the chosen format.
-     * The file will be created if it doesn't exist, or overwritten if it does.
+     * Loads all shards of a {@link Option#SHARDED} storage that are not loaded yet.
+     * Does nothing for other storages.
      *
-     * @throws RuntimeException if the save operation fails (e.g., IO error or serialization error)
-     * @throws IllegalStateException if this is a digital storage (marked with @Digital annotation)
+     * @throws RuntimeException if a shard file cannot be read
      */
-    public void save() {
-        if (isDigital()) {
-            throw new IllegalStateException("Digital storage cannot be saved to file");
+    void loadShards() {
+        StorageShards current = shards;
+        if (current == null) return;
+
+        lock.lock();
+        try {
+            for (int shard = 0; shard < current.count(); shard++) {
+                if (!current.isLoaded(shard)) adoptShard(current, shard);
+            }
+        } finally {
+            lock.unlock();
         }
-        StorageRegistry.save(this);
     }
 
     /**
-     * Returns a string representation of the storage data in the default format.
-     * @return serialized data as string in default format
+     * Adds the keys of a shard file to the tree. The caller must hold the lock.
+     * No key of the shard can be present yet, since every access to a key loads its shard first.
      */
-    @Override
-    public String toString() {
-        return toStringAs(this.type);
+    private void adoptShard(@NotNull StorageShards current, int shard) {
+        Map<String, Object> loaded = StorageRegistry.readShard(this, current, shard);
+        for (Map.Entry<String, Object> entry : loaded.entrySet()) {
+            init.put(entry.getKey(), entry.getValue());
+            if (index != null) index.put(entry.getKey(), null, entry.getValue());
+        }
+        if (transaction != null) transaction.include(loaded);
+        structure++;
+        current.markLoaded(shard);
     }
 
     /**
-     * Returns a string representation of the storage data in the specified format.
-     * @param format the desired output format
-     * @return serialized data as string in requested format
+     * Checks if this storage is read-only because it was created with {@link Option#MAPPED}.
+     *
+     * @return true if the storage cannot be modified
      */
-    public String toStringAs(Type format) {
-        return StorageRegistry.serialize(this.init, format);
+    public boolean isReadOnly() {
+        return options.contains(Option.MAPPED);
     }
 
     /**
-     * Deserializes data from a string representation in the default format
-     * and populates the storage with the parsed data.
+     * Ensures that this storage may be modified.
      *
-     * @param content the string containing serialized data in default format
-     * @throws IllegalArgumentException if the content cannot be parsed
-     * @throws NullPointerException if the content is null
+     * @throws UnsupportedOperationException if the storage is read-only
      */
-    public void fromString(String content) {
-        fromSpecificString(content, this.type);
+    private void requireWritable() {
+        if (isReadOnly()) throw new UnsupportedOperationException("Storage " + file + " is read-only");
     }
 
     /**
-     * Deserializes data from a string representation in the specified format
-     * and populates the storage with the parsed data.
+     * Registers a listener that is notified whenever a reload changes the value at the given key.
+     * <p>
+     * Changes are computed by diffing the tree before and after the reload, so the listener is
+     * only called if the value actually differs. Keys are compared per leaf value; a listener on
+     * a key that holds a map is not notified.
      *
-     * @param content the string containing serialized data
-     * @param format the format of the input data
-     * @throws IllegalArgumentException if the content cannot be parsed in the specified format
-     * @throws NullPointerException if either content or format is null
-     * @throws UnsupportedOperationException if the specified format is not supported
+     * @param key      The full dot-separated key to listen on
+     * @param listener The listener to notify
      */
-    public void fromSpecificString(String content, Type format) {
-        init.putAll(StorageRegistry.deserialize(content, format));
+    public void addChangeListener(@NotNull String key, @NotNull StorageListener listener) {
+        Map<String, List<StorageListener>> registered = listeners;
+        if (registered == null) {
+            synchronized (this) {
+                registered = listeners;
+                if (registered == null) listeners = registered = new ConcurrentHashMap<>();
+            }
+        }
+        registered.computeIfAbsent(StoragePath.of(key).toString(), k -> new CopyOnWriteArrayList<>()).add(listener);
     }
 
     /**
-     * Returns a set of keys at the root level or all keys if deep is true.
+     * Removes a listener previously registered with {@link #addChangeListener(String, StorageListener)}.
      *
-     * @param deep If true, returns all keys in the storage with their full path;
-     *             If false, returns only the top-level keys
-     * @return A set of keys matching the criteria
+     * @param key      The key the listener was registered on
+     * @param listener The listener to remove
      */
-    public Set<String> getKeys(boolean deep) {
-        return getKeys("", deep);
+    public void removeChangeListener(@NotNull String key, @NotNull StorageListener listener) {
+        Map<String, List<StorageListener>> all = listeners;
+        if (all == null) return;
+        List<StorageListener> registered = all.get(StoragePath.of(key).toString());
+        if (registered != null) registered.remove(listener);
     }
 
     /**
-     * Returns a set of keys at the specified base path or all keys underneath if deep is true.
+     * Notifies all listeners registered on the path of the given change.
      *
-     * @param baseKey The base path to start from (empty string for root)
-     * @param deep    If true, returns all keys in the path with their full path;
-     *                If false, returns only the immediate child keys
-     * @return A set of keys matching the criteria
+     * @param change The change to dispatch
      */
-    public Set<String> getKeys(@NotNull String baseKey, boolean deep) {
-        Set<String> result = new HashSet<>();
+    private void fireChange(@NotNull StorageChange change) {
+        Map<String, List<StorageListener>> all = listeners;
+        List<StorageListener> registered = all != null ? all.get(change.path()) : null;
+        if (registered == null) return;
 
-        if (baseKey.isEmpty()) {
-            if (deep) {
-                collectAllPaths(init, "", result);
-            } else {
-                result.addAll(init.keySet());
+        for (StorageListener listener : registered) {
+            listener.onChange(change);
+        }
+    }
+
+    /**
+     * Watches all values at or below a path, e.g. {@code storage.watch("db.pool", listener)} is notified
+     * of changes to {@code db.pool.size} as well as of the removal of {@code db}.
+     * <p>
+     * Unlike {@link #addChangeListener(String, StorageListener)}, watches see every change: writes
+     * through {@link #set(String, Object)}, {@link #remove(String)}, batches, patches and sections,
+     * committed transactions and reloads. Changes are reported per leaf like {@link StorageChange}
+     * describes, always with absolute paths. The listener runs on the writing thread after the write
+     * has completed and the storage lock has been released; the changes of a batch or transaction are
+     * delivered together once it is complete, changes that are rolled back are never delivered.
+     * Reloads of {@link Option#MAPPED} storages are not reported.
+     * <p>
+     * Writers only pay for describing a change if a watch is registered on its path, an ancestor or
+     * a descendant of it, and delivering a change costs one lookup per segment of its path regardless
+     * of the number of watches.
+     *
+     * @param prefix   The dot-separated path to watch, empty to watch the whole storage
+     * @param listener The listener to notify
+     * @return The watch, which stops the notifications when closed
+     */
+    public @NotNull StorageWatch watch(@NotNull String prefix, @NotNull StorageListener listener) {
+        return watch(prefix, listener, null);
+    }
+
+    /**
+     * Watches all values at or below a path like {@link #watch(String, StorageListener)}, notifying
+     * the listener on the given executor. The listener still receives its changes one at a time and
+     * in order, and slow listeners never delay writers.
+     *
+     * @param prefix   The dot-separated path to watch, empty to watch the whole storage
+     * @param listener The listener to notify
+     * @param executor The executor that runs the listener, or null to run it on the writing thread
+     * @return The watch, which stops the notifications when closed
+     */
+    public @NotNull StorageWatch watch(@NotNull String prefix,
+                                       @NotNull StorageListener listener,
+                                       @Nullable Executor executor) {
+        String canonical = prefix.isEmpty() ? prefix : StoragePath.of(prefix).toString();
+        StorageWatchers current = watchers;
+        if (current == null) {
+            synchronized (this) {
+                current = watchers;
+                if (current == null) watchers = current = new StorageWatchers();
             }
-            return result;
         }
+        return current.add(canonical, listener, executor);
+    }
 
-        // Get the value at the baseKey path
-        Object value = getPathValue(baseKey);
-        if (!(value instanceof Map)) {
-            return result; // doesn't point to a map
+    /**
+     * Returns a {@link Flow.Publisher} of the changes at or below a path, signalled on the common
+     * {@link ForkJoinPool}. {@link #watch(String, StorageListener)}
+     *
+     * @param prefix The dot-separated path to watch, empty to watch the whole storage
+     * @return The publisher
+     */
+    public @NotNull Flow.Publisher<StorageChange> changes(@NotNull String prefix) {
+        return changes(prefix, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a {@link Flow.Publisher} of the changes at or below a path.
+     * <p>
+     * Every subscriber is backed by its own watch, which is closed when the subscription is
+     * cancelled. Changes are buffered until they are requested, up to {@link Flow#defaultBufferSize()}
+     * per subscriber; a subscriber that falls further behind is cancelled with an
+     * {@link IllegalStateException}. {@link #watch(String, StorageListener)}
+     *
+     * @param prefix   The dot-separated path to watch, empty to watch the whole storage
+     * @param executor The executor the subscribers are signalled on
+     * @return The publisher
+     */
+    public @NotNull Flow.Publisher<StorageChange> changes(@NotNull String prefix, @NotNull Executor executor) {
+        return new StoragePublisher(this, prefix, executor);
+    }
+
+    /**
+     * Checks if this storage instance is marked as digital (should not persist to file).
+     * @return true if the @Digital annotation is present on the class
+     */
+    public boolean isDigital() {
+        return isDigital;
+    }
+
+
+    /**
+     * Stores a value at the specified key/path.
+     * <p>
+     * Uses registered adapters if available for the value type, otherwise uses default storage.
+     * If the value is null, the key will be removed from storage. Numbers are stored in the
+     * representation the file loaders use: {@link Integer}, {@link Short} and {@link Byte} as
+     * {@link Long} and {@link Float} as {@link Double}, so reads behave the same before and after a reload.
+     *
+     * @param <T>   The type of the value to store
+     * @param key   The path/key where to store the value (dot-notation supported)
+     * @param value The value to store (null will remove the key)
+     */
+    public <T> void set(@NotNull String key, @Nullable T value) {
+        set(StoragePath.of(key), value);
+    }
+
+    /**
+     * Stores a value at the specified pre-parsed path.
+     * {@link #set(String, Object)}
+     *
+     * @param <T>   The type of the value to store
+     * @param path  The path where to store the value
+     * @param value The value to store (null will remove the key)
+     */
+    public <T> void set(@NotNull StoragePath path, @Nullable T value) {
+        if (value == null) {
+            remove(path);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        StorageAdapter.Setter<T> setter = (StorageAdapter.Setter<T>) adapters.setter(value.getClass());
+
+        if (setter != null) {
+            adapterCalled(value.getClass());
+            setter.set(path.toString(), value);
+        } else {
+            setDefault(path, normalize(value));
+        }
+    }
+
+    /**
+     * Widens numbers to the types the file loaders produce, see {@link #set(String, Object)}.
+     *
+     * @param value The value to store
+     * @return The value in its stored representation
+     */
+    static @NotNull Object normalize(@NotNull Object value) {
+        return value instanceof Number number ? StorageReader.normalize(number) : value;
+    }
+
+    /**
+     * Applies several mutations as one unit.
+     * <p>
+     * The mutations are applied while the storage lock is held, so concurrent writers never see a
+     * partially applied batch, and consecutive mutations of sibling keys share the traversal of their
+     * common prefix. If {@link StorageBatch#save()} was called, the storage is saved once after all
+     * mutations have been applied:
+     * <pre>
+     * storage.batch(batch -&gt; batch
+     *         .set("user.name", "Steve")
+     *         .set("user.age", 42)
+     *         .remove("user.legacy")
+     *         .save());
+     * </pre>
+     * If the consumer throws, the mutations applied until then are kept and no save is performed.
+     *
+     * @param mutations The consumer that performs the mutations
+     * @throws UnsupportedOperationException if the storage is read-only
+     */
+    public void batch(@NotNull Consumer<StorageBatch> mutations) {
+        requireWritable();
+        StorageBatch batch = new StorageBatch(this);
+
+        lock.lock();
+        try {
+            mutations.accept(batch);
+        } finally {
+            release();
+        }
+
+        if (batch.saveRequested()) save();
+    }
+
+    /**
+     * Applies a patch computed with {@link StoragePatch#diff(StorageBase, StorageBase)} to this storage.
+     * <p>
+     * All operations are applied as one {@link #batch(Consumer)}, so concurrent writers never see a
+     * partially applied patch and the cost is proportional to the size of the patch, not of the storage.
+     * The storage is not saved.
+     *
+     * @param patch The patch to apply
+     * @throws UnsupportedOperationException if the storage is read-only
+     */
+    public void applyPatch(@NotNull StoragePatch patch) {
+        if (patch.isEmpty()) return;
+        batch(batch -> {
+            for (StoragePatch.Operation operation : patch.operations()) {
+                batch.set(operation.path(), copyValue(operation.value()));
+            }
+        });
+    }
+
+    /**
+     * Copies the maps and lists of a value into mutable containers of this storage.
+     *
+     * @param value The value
+     * @return The copy, or the value itself if it is neither a map nor a list
+     */
+    private @Nullable Object copyValue(@Nullable Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> node = newNode();
+            map.forEach((key, child) -> {
+                if (child != null) node.put(String.valueOf(key), copyValue(child));
+            });
+            return node;
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(element -> copy.add(copyValue(element)));
+            return copy;
+        }
+        return value;
+    }
+
+    /**
+     * Begins a transaction on this storage.
+     * <p>
+     * Edits made through the transaction, and all other writes of the calling thread while it is
+     * open, are collected in a working copy that shares all untouched maps with the current tree.
+     * Readers on other threads keep seeing the current tree until {@link StorageTransaction#commit()}
+     * swaps the working copy in; {@link StorageTransaction#rollback()} discards it. Reads of the calling
+     * thread already see the working copy. The storage lock is held until then,
+     * so other writers wait for the transaction to finish.
+     *
+     * @return The open transaction
+     * @throws IllegalStateException if the calling thread already has an open transaction on this storage
+     * @throws UnsupportedOperationException if the storage is read-only
+     */
+    public @NotNull StorageTransaction begin() {
+        requireWritable();
+        lock.lock();
+        if (transaction != null) {
+            lock.unlock();
+            throw new IllegalStateException("A transaction is already open on " + file);
+        }
+
+        transaction = new StorageTransaction(this);
+        return transaction;
+    }
+
+    /**
+     * Ends the given transaction and releases the lock acquired by {@link #begin()}.
+     *
+     * @param finished The committed or rolled back transaction
+     */
+    void finish(@NotNull StorageTransaction finished) {
+        if (transaction == finished) transaction = null;
+        release();
+    }
+
+    /**
+     * Records a completed mutation for the next save: journaled storages append it to their journal,
+     * all others are marked dirty, sharded storages additionally mark the shard of the path.
+     * Must be called while holding the storage lock.
+     *
+     * @param path  The changed path
+     * @param value The new value, or null if the path was removed
+     */
+    void changed(@NotNull StoragePath path, @Nullable Object value) {
+        StorageShards sharded = shards;
+        if (sharded != null) sharded.markDirty(sharded.shardOf(path.segment(0)));
+
+        StorageJournal current = journal;
+        if (current == null || !current.append(path, value)) dirty = true;
+    }
+
+    /**
+     * Describes a completed mutation for the watches of this storage, see {@link #watch(String, StorageListener)}.
+     * The changes are delivered once the lock is released by {@link #release()}, and nothing is
+     * described if no watch can see the mutated path. Must be called while holding the storage lock.
+     *
+     * @param path     The mutated path
+     * @param depth    The number of leading segments of the path whose value was replaced
+     * @param previous The replaced value, or null if there was none
+     * @param value    The new value, or null if it was removed
+     */
+    void record(@NotNull StoragePath path, int depth, @Nullable Object previous, @Nullable Object value) {
+        StorageWatchers current = watchers;
+        if (current == null || !current.covers(path.segments(), depth)) return;
+        if (pending == null) pending = new ArrayList<>();
+        StorageDiff.compare(path.prefix(depth), previous, value, pending);
+    }
+
+    /**
+     * Describes the replacement of the whole tree for the watches of this storage like
+     * {@link #record(StoragePath, int, Object, Object)}. Maps shared by both trees are skipped.
+     *
+     * @param previous The root before the replacement
+     * @param tree     The root after the replacement
+     */
+    void record(@NotNull Map<String, Object> previous, @NotNull Map<String, Object> tree) {
+        StorageWatchers current = watchers;
+        if (current == null || current.isEmpty()) return;
+        if (pending == null) pending = new ArrayList<>();
+        StorageDiff.compare("", previous, tree, pending);
+    }
+
+    /**
+     * Releases the storage lock. Once the calling thread no longer holds it, the changes described
+     * while it was held are delivered to the watches, so listeners never run under the lock and see
+     * a batch or transaction only after it is complete.
+     */
+    void release() {
+        List<StorageChange> changes = null;
+        if (lock.getHoldCount() == 1) {
+            changes = pending;
+            pending = null;
+        }
+        lock.unlock();
+        if (changes != null) watchers.dispatch(changes); // only described while watches exist
+    }
+
+    /**
+     * Returns true if values of the given class are stored through a registered adapter.
+     *
+     * @param type The class of the value
+     * @return true if a setter adapter applies to the class
+     */
+    boolean hasSetter(@NotNull Class<?> type) {
+        return adapters.setter(type) != null;
+    }
+
+    /**
+     * Retrieves a value with a fallback to default if not found.
+     *
+     * @param <T>          The expected return type
+     * @param key          The path/key of the value to retrieve
+     * @param type         The expected class of the return value
+     * @param defaultValue The value to return if the key doesn't exist
+     * @return The stored value if found and convertible, otherwise the defaultValue
+     * @see #get(String, Class)
+     */
+    public <T> T get(@NotNull String key,
+                     @NotNull Class<T> type,
+                     @Nullable T defaultValue) {
+        return get(StoragePath.of(key), type, defaultValue);
+    }
+
+    /**
+     * Retrieves a value at a pre-parsed path with a fallback to default if not found.
+     *
+     * @param <T>          The expected return type
+     * @param path         The path of the value to retrieve
+     * @param type         The expected class of the return value
+     * @param defaultValue The value to return if the key doesn't exist
+     * @return The stored value if found and convertible, otherwise the defaultValue
+     * @see #get(StoragePath, Class)
+     */
+    public <T> T get(@NotNull StoragePath path,
+                     @NotNull Class<T> type,
+                     @Nullable T defaultValue) {
+        T value = get(path, type);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Retrieves a value of specified type from storage.
+     * <p>
+     * If a type adapter is registered for the requested type, it will be used for deserialization.
+     *
+     * @param <T>  The expected return type
+     * @param key  The path/key of the value to retrieve
+     * @param type The expected class of the return value
+     * @return The stored value if found and convertible, otherwise null
+     * @throws RuntimeException if there's an error during deserialization
+     */
+    public <T> @Nullable T get(@NotNull String key, @NotNull Class<T> type) {
+        return get(StoragePath.of(key), type);
+    }
+
+    /**
+     * Retrieves a value of specified type from a pre-parsed path.
+     * {@link #get(String, Class)}
+     *
+     * @param <T>  The expected return type
+     * @param path The path of the value to retrieve
+     * @param type The expected class of the return value
+     * @return The stored value if found and convertible, otherwise null
+     * @throws RuntimeException if there's an error during deserialization
+     */
+    public <T> @Nullable T get(@NotNull StoragePath path, @NotNull Class<T> type) {
+        return counted(lookup(path, type));
+    }
+
+    /**
+     * Resolves a value for {@link #get(StoragePath, Class)}.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> @Nullable T lookup(@NotNull StoragePath path, @NotNull Class<T> type) {
+        Object value = getPathValue(path);
+        if (value == null) return null;
+
+        if (type.isInstance(value)) {
+            return (T) value;
+        }
+
+        if (value instanceof Number number) {
+            Number coerced = coerce(number, type);
+            if (coerced != null) return (T) coerced;
+        }
+
+        StorageAdapter.Getter<T> getter = (StorageAdapter.Getter<T>) adapters.getter(type);
+        if (getter != null) {
+            adapterCalled(type);
+            try {
+                return getter.get(path.toString());
+            } catch (MalformedURLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Reports the outcome of a lookup to the installed {@link StorageMetrics}.
+     *
+     * @param value The value found by the lookup, or null if it missed
+     * @return The value
+     */
+    static <T> @Nullable T counted(@Nullable T value) {
+        StorageMetrics recorder = StorageRegistry.getMetrics();
+        if (recorder != null) recorder.lookup(value != null);
+        return value;
+    }
+
+    /**
+     * Reports the outcome of a lookup of the primitive getters to the installed {@link StorageMetrics}.
+     *
+     * @param hit true if a value of the requested type was found
+     * @return The outcome
+     */
+    static boolean counted(boolean hit) {
+        StorageMetrics recorder = StorageRegistry.getMetrics();
+        if (recorder != null) recorder.lookup(hit);
+        return hit;
+    }
+
+    private static void adapterCalled(@NotNull Class<?> type) {
+        StorageMetrics recorder = StorageRegistry.getMetrics();
+        if (recorder != null) recorder.adapterCalled(type);
+    }
+
+    /**
+     * Creates an object from the values of this storage.
+     * <p>
+     * Records are created through their canonical constructor, other classes through their
+     * no-argument constructor and their setters (or fields if there are none). Each property is
+     * read from the key of the same name; properties whose type is a record or a bean class are
+     * read from the nested section of that name. Accessors are generated once per class, so binding
+     * costs about as much as the equivalent hand-written {@code get} calls.
+     * <pre>
+     * record Database(String host, int port) {}
+     *
+     * Database database = storage.bind("database", Database.class);
+     * </pre>
+     *
+     * @param <T>  The type to create
+     * @param type The class of the object, a record or a class with a no-argument constructor
+     * @return The new object; missing values keep their defaults
+     * @throws IllegalArgumentException if the class cannot be mapped
+     */
+    public <T> @NotNull T bind(@NotNull Class<T> type) {
+        return StorageMapper.of(type).read(this, null);
+    }
+
+    /**
+     * Creates an object from the values of the section at the given key.
+     * {@link #bind(Class)}
+     *
+     * @param <T>  The type to create
+     * @param key  The path/key of the section
+     * @param type The class of the object, a record or a class with a no-argument constructor
+     * @return The new object; missing values keep their defaults
+     * @throws IllegalArgumentException if the class cannot be mapped
+     */
+    public <T> @NotNull T bind(@NotNull String key, @NotNull Class<T> type) {
+        return StorageMapper.of(type).read(this, StoragePath.of(key));
+    }
+
+    /**
+     * Stores all properties of an object in this storage, the reverse of {@link #bind(Class)}.
+     * Null properties are removed.
+     *
+     * @param <T>   The type of the object
+     * @param value The object to store
+     * @throws IllegalArgumentException if the class of the object cannot be mapped
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void write(@NotNull T value) {
+        StorageMapper.of((Class<T>) value.getClass()).write(this, null, value);
+    }
+
+    /**
+     * Stores all properties of an object in the section at the given key.
+     * {@link #write(Object)}
+     *
+     * @param <T>   The type of the object
+     * @param key   The path/key of the section
+     * @param value The object to store
+     * @throws IllegalArgumentException if the class of the object cannot be mapped
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void write(@NotNull String key, @NotNull T value) {
+        StorageMapper.of((Class<T>) value.getClass()).write(this, StoragePath.of(key), value);
+    }
+
+    /**
+     * Converts a stored number into the requested boxed number type.
+     * <p>
+     * Integral targets only accept integral values in their range, so {@code 2.5} is never silently
+     * truncated to {@code 2}. Floating point targets accept every number.
+     *
+     * @param number The stored number
+     * @param type   The requested type
+     * @return The converted number, or null if the number cannot be represented exactly
+     */
+    private static @Nullable Number coerce(@NotNull Number number, @NotNull Class<?> type) {
+        if (type == Double.class) return number.doubleValue();
+        if (type == Float.class) return number.floatValue();
+
+        if (!isIntegral(number)) return null;
+        long value = number.longValue();
+
+        if (type == Long.class) return value;
+        if (type == Integer.class) return value == (int) value ? (int) value : null;
+        if (type == Short.class) return value == (short) value ? (short) value : null;
+        if (type == Byte.class) return value == (byte) value ? (byte) value : null;
+        return null;
+    }
+
+    /**
+     * Checks if a number is integral and fits into a {@code long}.
+     *
+     * @param number The number to check
+     * @return true if {@link Number#longValue()} represents the number exactly
+     */
+    private static boolean isIntegral(@NotNull Number number) {
+        if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) return true;
+        if (number instanceof Double || number instanceof Float) {
+            double value = number.doubleValue();
+            return value == Math.rint(value) && value >= Long.MIN_VALUE && value < 0x1p63;
+        }
+        if (number instanceof BigInteger big) return big.bitLength() < Long.SIZE;
+        if (number instanceof BigDecimal decimal) {
+            try {
+                decimal.longValueExact();
+                return true;
+            } catch (ArithmeticException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves an {@code int} without boxing.
+     * Integral numbers outside the {@code int} range and fractional numbers count as missing.
+     *
+     * @param key          The path/key of the value to retrieve
+     * @param defaultValue The value to return if the key doesn't exist or is not an {@code int}
+     * @return The stored value or the default value
+     */
+    public int getInt(@NotNull String key, int defaultValue) {
+        return getInt(StoragePath.of(key), defaultValue);
+    }
+
+    /**
+     * Retrieves an {@code int} at a pre-parsed path without boxing.
+     * {@link #getInt(String, int)}
+     *
+     * @param path         The path of the value to retrieve
+     * @param defaultValue The value to return if the key doesn't exist or is not an {@code int}
+     * @return The stored value or the default value
+     */
+    public int getInt(@NotNull StoragePath path, int defaultValue) {
+        Object value = getPathValue(path);
+        boolean found = value instanceof Number number && isIntegral(number) && number.longValue() == number.intValue();
+        return counted(found) ? ((Number) value).intValue() : defaultValue;
+    }
+
+    /**
+     * Retrieves a {@code long} without boxing.
+     * Fractional numbers and numbers outside the {@code long} range count as missing.
+     *
+     * @param key          The path/key of the value to retrieve
+     * @param defaultValue The value to return if the key doesn't exist or is not a {@code long}
+     * @return The stored value or the default value
+     */
+    public long getLong(@NotNull String key, long defaultValue) {
+        return getLong(StoragePath.of(key), defaultValue);
+    }
+
+    /**
+     * Retrieves a {@code long} at a pre-parsed path without boxing.
+     * {@link #getLong(String, long)}
+     *
+     * @param path         The path of the value to retrieve
+     * @param defaultValue The value to return if the key doesn't exist or is not a {@code long}
+     * @return The stored value or the default value
+     */
+    public long getLong(@NotNull StoragePath path, long defaultValue) {
+        Object value = getPathValue(path);
+        return counted(value instanceof Number number && isIntegral(number)) ? ((Number) value).longValue() : defaultValue;
+    }
+
+    /**
+     * Retrieves a {@code double} without boxing. Every stored number is accepted.
+     *
+     * @param key          The path/key of the value to retrieve
+     * @param defaultValue The value to return if the key doesn't exist or is not a number
+     * @return The stored value or the default value
+     */
+    public double getDouble(@NotNull String key, double defaultValue) {
+        return getDouble(StoragePath.of(key), defaultValue);
+    }
+
+    /**
+     * Retrieves a {@code double} at a pre-parsed path without boxing.
+     * {@link #getDouble(String, double)}
+     *
+     * @param path         The path of the value to retrieve
+     * @param defaultValue The value to return if the key doesn't exist or is not a number
+     * @return The stored value or the default value
+     */
+    public double getDouble(@NotNull StoragePath path, double defaultValue) {
+        Object value = getPathValue(path);
+        return counted(value instanceof Number) ? ((Number) value).doubleValue() : defaultValue;
+    }
+
+    /**
+     * Retrieves a {@code boolean} without boxing.
+     *
+     * @param key          The path/key of the value to retrieve
+     * @param defaultValue The value to return if the key doesn't exist or is not a boolean
+     * @return The stored value or the default value
+     */
+    public boolean getBoolean(@NotNull String key, boolean defaultValue) {
+        return getBoolean(StoragePath.of(key), defaultValue);
+    }
+
+    /**
+     * Retrieves a {@code boolean} at a pre-parsed path without boxing.
+     * {@link #getBoolean(String, boolean)}
+     *
+     * @param path         The path of the value to retrieve
+     * @param defaultValue The value to return if the key doesn't exist or is not a boolean
+     * @return The stored value or the default value
+     */
+    public boolean getBoolean(@NotNull StoragePath path, boolean defaultValue) {
+        Object value = getPathValue(path);
+        return counted(value instanceof Boolean) ? (Boolean) value : defaultValue;
+    }
+
+    /**
+     * Stores an {@code int}. The value is stored as {@link Long}, the same representation
+     * the file loaders use for integral numbers, so reads behave the same before and after a reload.
+     *
+     * @param key   The path/key where to store the value
+     * @param value The value to store
+     */
+    public void set(@NotNull String key, int value) {
+        set(StoragePath.of(key), (long) value);
+    }
+
+    /**
+     * Stores an {@code int} at a pre-parsed path.
+     * {@link #set(String, int)}
+     *
+     * @param path  The path where to store the value
+     * @param value The value to store
+     */
+    public void set(@NotNull StoragePath path, int value) {
+        set(path, (long) value);
+    }
+
+    /**
+     * Stores a {@code long}.
+     *
+     * @param key   The path/key where to store the value
+     * @param value The value to store
+     */
+    public void set(@NotNull String key, long value) {
+        set(StoragePath.of(key), value);
+    }
+
+    /**
+     * Stores a {@code long} at a pre-parsed path.
+     *
+     * @param path  The path where to store the value
+     * @param value The value to store
+     */
+    public void set(@NotNull StoragePath path, long value) {
+        set(path, (Object) value);
+    }
+
+    /**
+     * Stores a {@code double}.
+     *
+     * @param key   The path/key where to store the value
+     * @param value The value to store
+     */
+    public void set(@NotNull String key, double value) {
+        set(StoragePath.of(key), value);
+    }
+
+    /**
+     * Stores a {@code double} at a pre-parsed path.
+     *
+     * @param path  The path where to store the value
+     * @param value The value to store
+     */
+    public void set(@NotNull StoragePath path, double value) {
+        set(path, (Object) value);
+    }
+
+    /**
+     * Stores a {@code boolean}.
+     *
+     * @param key   The path/key where to store the value
+     * @param value The value to store
+     */
+    public void set(@NotNull String key, boolean value) {
+        set(StoragePath.of(key), value);
+    }
+
+    /**
+     * Stores a {@code boolean} at a pre-parsed path.
+     *
+     * @param path  The path where to store the value
+     * @param value The value to store
+     */
+    public void set(@NotNull StoragePath path, boolean value) {
+        set(path, (Object) value);
+    }
+
+    /**
+     * Internal method to retrieve a value using dot-path notation.
+     *
+     * @param path The dot-separated path to the value (e.g., "user.profile.name")
+     * @return The value if found, otherwise null
+     */
+    public @Nullable Object getPathValue(@NotNull String path) {
+        return getPathValue(StoragePath.of(path));
+    }
+
+    /**
+     * Internal method to retrieve a value at a pre-parsed path.
+     *
+     * @param path The path to the value
+     * @return The value if found, otherwise null
+     */
+    public @Nullable Object getPathValue(@NotNull StoragePath path) {
+        String[] parts = path.segments();
+        if (parts.length == 0) return null;
+        MappedTree tree = mapped;
+        if (tree != null) return tree.get(path, this::newNode);
+        StorageTransaction open = transaction;
+        if (open != null && lock.isHeldByCurrentThread()) return open.getPathValue(path);
+        if (shards != null) loadShard(parts[0]);
+        if (index != null) return index.get(path);
+        Map<String, Object> current = init;
+
+        for (int i = 0; i < parts.length - 1; i++) {
+            Object next = current.get(parts[i]);
+            if (!(next instanceof Map)) return null;
+            current = asNode(next);
+        }
+
+        return current.get(parts[parts.length - 1]);
+    }
+
+    /**
+     * Internal method to store a value using dot-path notation with automatic map creation.
+     *
+     * @param path  The path where to store the value
+     * @param value The value to store
+     */
+    private void setDefault(@NotNull StoragePath path, Object value) {
+        String[] parts = path.segments();
+        if (parts.length == 0) throw new IllegalArgumentException("Empty storage path");
+        requireWritable();
+        loadShard(parts[0]);
+
+        lock.lock();
+        try {
+            if (transaction != null) {
+                transaction.put(path, value);
+                return;
+            }
+
+            Map<String, Object> current = init;
+            boolean structural = value instanceof Map;
+            int replaced = -1;
+            Object replacedValue = null;
+            Map<String, Object> replacedBy = null;
+
+            for (int i = 0; i < parts.length - 1; i++) {
+                Object next = current.get(parts[i]);
+                if (!(next instanceof Map)) {
+                    Map<String, Object> created = newNode();
+                    current.put(parts[i], created);
+                    if (index != null) index.put(path.prefix(i + 1), next, created);
+                    if (next != null && replaced < 0) {
+                        replaced = i + 1;
+                        replacedValue = next;
+                        replacedBy = created;
+                    }
+                    next = created;
+                    structural = true;
+                }
+                current = asNode(next);
+            }
+
+            Object previous = current.put(parts[parts.length - 1], value);
+            if (index != null) index.put(path.toString(), previous, value);
+            if (structural || previous instanceof Map) structure++;
+            changed(path, value);
+            if (replaced < 0) {
+                record(path, parts.length, previous, value);
+            } else {
+                record(path, replaced, replacedValue, replacedBy);
+            }
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Removes a value at the specified path.
+     *
+     * @param path The dot-separated path of the value to remove
+     */
+    public void remove(@NotNull String path) {
+        remove(StoragePath.of(path));
+    }
+
+    /**
+     * Removes a value at the specified pre-parsed path.
+     *
+     * @param path The path of the value to remove
+     */
+    public void remove(@NotNull StoragePath path) {
+        String[] parts = path.segments();
+        if (parts.length == 0) return;
+        requireWritable();
+        loadShard(parts[0]);
+
+        lock.lock();
+        try {
+            if (transaction != null) {
+                transaction.delete(path);
+                return;
+            }
+
+            Map<String, Object> current = init;
+
+            for (int i = 0; i < parts.length - 1; i++) {
+                Object next = current.get(parts[i]);
+                if (!(next instanceof Map)) return;
+                current = asNode(next);
+            }
+
+            Object previous = current.remove(parts[parts.length - 1]);
+            if (previous == null) return;
+            if (index != null) index.remove(path.toString(), previous);
+            if (previous instanceof Map) structure++;
+            changed(path, null);
+            record(path, parts.length, previous, null);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Reloads the storage data from the file using the selected {@link Type}.
+     * <p>
+     * Replaces the current {@link #init} contents with the loaded data. The file is parsed into
+     * a separate tree that is swapped in atomically once complete, so concurrent readers are
+     * never blocked and never see a partially loaded state. Keys deleted from the file are removed.
+     * This operation is thread-safe and will preserve any registered adapters.
+     *
+     * @throws RuntimeException if the reload operation fails (e.g., file not found or parse error)
+     */
+    public void reload() {StorageRegistry.reload(this); }
+
+    /**
+     * Saves the current storage data to a file using the selected {@link Type}.
+     * <p>
+     * Automatically serializes the {@link #init} map based on the chosen format.
+     * The file will be created if it doesn't exist, or overwritten if it does.
+     * If write-behind is enabled on the {@link StorageRegistry}, the save is only scheduled
+     * and merged with other saves of this storage; use {@link #flush()} for a durability point.
+     *
+     * @throws RuntimeException if the save operation fails (e.g., IO error or serialization error)
+     * @throws IllegalStateException if this is a digital storage (marked with @Digital annotation)
+     * @see StorageRegistry#enableWriteBehind(java.time.Duration)
+     */
+    public void save() {
+        saveAsync();
+    }
+
+    /**
+     * Saves the current storage data like {@link #save()} and returns a future that completes
+     * once the data has been written.
+     * <p>
+     * Without write-behind the data is written on the calling thread and the returned future
+     * is already complete.
+     *
+     * @return A future that completes once the storage has been written
+     * @throws IllegalStateException if this is a digital storage
+     */
+    public @NotNull CompletableFuture<Void> saveAsync() {
+        if (isDigital()) {
+            throw new IllegalStateException("Digital storage cannot be saved to file");
+        }
+        requireWritable();
+        return StorageRegistry.saveLater(this);
+    }
+
+    /**
+     * Writes this storage to its file as soon as possible, skipping any pending write-behind window.
+     *
+     * @return A future that completes once the storage has been written
+     * @throws IllegalStateException if this is a digital storage
+     */
+    public @NotNull CompletableFuture<Void> flush() {
+        if (isDigital()) {
+            throw new IllegalStateException("Digital storage cannot be saved to file");
+        }
+        return StorageRegistry.flush(this);
+    }
+
+    /**
+     * Checks if this storage was modified since it was last loaded or saved.
+     *
+     * @return true if there are unsaved changes
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Returns a string representation of the storage data in the default format.
+     * @return serialized data as string in default format
+     */
+    @Override
+    public String toString() {
+        return toStringAs(this.type);
+    }
+
+    /**
+     * Returns a string representation of the storage data in the specified format.
+     * @param format the desired output format
+     * @return serialized data as string in requested format
+     */
+    public String toStringAs(Type format) {
+        return StorageRegistry.serialize(tree(), format);
+    }
+
+    /**
+     * Deserializes data from a string representation in the default format
+     * and populates the storage with the parsed data.
+     *
+     * @param content the string containing serialized data in default format
+     * @throws IllegalArgumentException if the content cannot be parsed
+     * @throws NullPointerException if the content is null
+     */
+    public void fromString(String content) {
+        fromSpecificString(content, this.type);
+    }
+
+    /**
+     * Deserializes data from a string representation in the specified format
+     * and populates the storage with the parsed data.
+     *
+     * @param content the string containing serialized data
+     * @param format the format of the input data
+     * @throws IllegalArgumentException if the content cannot be parsed in the specified format
+     * @throws NullPointerException if either content or format is null
+     * @throws UnsupportedOperationException if the specified format is not supported
+     */
+    public void fromSpecificString(String content, Type format) {
+        merge(StorageRegistry.deserialize(content, format));
+    }
+
+    /**
+     * Returns a set of keys at the root level or all keys if deep is true.
+     *
+     * @param deep If true, returns all keys in the storage with their full path;
+     *             If false, returns only the top-level keys
+     * @return A set of keys matching the criteria
+     */
+    public Set<String> getKeys(boolean deep) {
+        return getKeys("", deep);
+    }
+
+    /**
+     * Returns a set of keys at the specified base path or all keys underneath if deep is true.
+     *
+     * @param baseKey The base path to start from (empty string for root)
+     * @param deep    If true, returns all keys in the path with their full path;
+     *                If false, returns only the immediate child keys
+     * @return A set of keys matching the criteria
+     */
+    public Set<String> getKeys(@NotNull String baseKey, boolean deep) {
+        Set<String> result = new HashSet<>();
+
+        MappedTree tree = mapped;
+        if (tree != null) {
+            tree.collectKeys(baseKey.isEmpty() ? null : StoragePath.of(baseKey), deep, result);
+            return result;
+        }
+
+        if (baseKey.isEmpty()) {
+            loadShards();
+            if (deep && index != null) {
+                result.addAll(index.paths());
+            } else if (deep) {
+                collectAllPaths(init, "", result);
+            } else {
+                result.addAll(init.keySet());
+            }
+            return result;
+        }
+
+        // Get the value at the baseKey path
+        Object value = getPathValue(baseKey);
+        if (!(value instanceof Map)) {
+            return result; // doesn't point to a map
+        }
+
+        StorageIndex flat = index;
+        if (deep && flat != null) {
+            flat.collectBelow(StoragePath.of(baseKey).toString(), result);
+            return result;
         }
 
         @SuppressWarnings("unchecked")
@@ -0,0 +1,271 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of mutations that are applied to a storage as one unit, see {@link StorageBase#batch(java.util.function.Consumer)}.
+ * <p>
+ * All mutations of a batch run while the storage lock is held, so other writers never observe a
+ * partially applied batch. The maps visited for the previous mutation are remembered, which lets
+ * consecutive mutations of sibling keys (e.g. {@code user.name} and {@code user.age}) skip walking
+ * their shared prefix again. The storage is saved at most once, after the whole batch has been applied.
+ * <p>
+ * Values of types with a registered adapter are stored through the adapter as usual. Inside an open
+ * {@link StorageTransaction} the mutations become part of the transaction.
+ */
+public final class StorageBatch {
+    private final StorageBase storage;
+    private final @Nullable StoragePath base;
+    private final Cursor cursor;
+
+    /**
+     * Creates a new batch for the given storage.
+     *
+     * @param storage The storage the mutations are applied to
+     */
+    StorageBatch(@NotNull StorageBase storage) {
+        this(storage, null, new Cursor());
+    }
+
+    private StorageBatch(@NotNull StorageBase storage, @Nullable StoragePath base, @NotNull Cursor cursor) {
+        this.storage = storage;
+        this.base = base;
+        this.cursor = cursor;
+    }
+
+    /**
+     * Stores a value at the specified key/path.
+     * {@link StorageBase#set(String, Object)}
+     *
+     * @param key   The path/key where to store the value
+     * @param value The value to store (null will remove the key)
+     * @return This batch
+     */
+    @Contract("_, _ -> this")
+    public @NotNull StorageBatch set(@NotNull String key, @Nullable Object value) {
+        return set(StoragePath.of(key), value);
+    }
+
+    /**
+     * Stores a value at the specified pre-parsed path.
+     * {@link StorageBase#set(StoragePath, Object)}
+     *
+     * @param path  The path where to store the value
+     * @param value The value to store (null will remove the key)
+     * @return This batch
+     */
+    @Contract("_, _ -> this")
+    public @NotNull StorageBatch set(@NotNull StoragePath path, @Nullable Object value) {
+        StoragePath target = resolve(path);
+        if (value == null) {
+            delete(target);
+        } else if (storage.transaction != null || storage.hasSetter(value.getClass())) {
+            cursor.reset();
+            storage.set(target, value);
+        } else {
+            put(target, StorageBase.normalize(value));
+        }
+        return this;
+    }
+
+    /**
+     * Removes the value at the specified key/path.
+     *
+     * @param key The path/key of the value to remove
+     * @return This batch
+     */
+    @Contract("_ -> this")
+    public @NotNull StorageBatch remove(@NotNull String key) {
+        return remove(StoragePath.of(key));
+    }
+
+    /**
+     * Removes the value at the specified pre-parsed path.
+     *
+     * @param path The path of the value to remove
+     * @return This batch
+     */
+    @Contract("_ -> this")
+    public @NotNull StorageBatch remove(@NotNull StoragePath path) {
+        delete(resolve(path));
+        return this;
+    }
+
+    /**
+     * Requests a save of the storage once the batch has been applied.
+     * Requesting it several times still results in a single save.
+     *
+     * @return This batch
+     */
+    @Contract("-> this")
+    public @NotNull StorageBatch save() {
+        cursor.save = true;
+        return this;
+    }
+
+    /**
+     * Returns a view of this batch whose paths are relative to the given path, used by sections.
+     *
+     * @param path The absolute path the returned view is relative to
+     * @return The relative view
+     */
+    @NotNull StorageBatch within(@NotNull StoragePath path) {
+        return new StorageBatch(storage, resolve(path), cursor);
+    }
+
+    /**
+     * Returns true if a save was requested with {@link #save()}.
+     */
+    boolean saveRequested() {
+        return cursor.save;
+    }
+
+    private @NotNull StoragePath resolve(@NotNull StoragePath path) {
+        return base == null ? path : base.child(path.toString());
+    }
+
+    /**
+     * Stores a value without adapters, reusing the maps of the previous mutation's common prefix.
+     */
+    private void put(@NotNull StoragePath path, @NotNull Object value) {
+        String[] parts = path.segments();
+        if (parts.length == 0) throw new IllegalArgumentException("Empty storage path");
+
+        storage.loadShard(parts[0]);
+        StorageIndex index = storage.index;
+        int depth = cursor.descend(storage, parts);
+        boolean structural = value instanceof Map;
+        int replaced = -1;
+        Object replacedValue = null;
+        Map<String, Object> replacedBy = null;
+
+        for (; depth < parts.length - 1; depth++) {
+            Map<String, Object> current = cursor.nodes.get(depth);
+            Object next = current.get(parts[depth]);
+            if (!(next instanceof Map)) {
+                Map<String, Object> created = storage.newNode();
+                current.put(parts[depth], created);
+                if (index != null) index.put(path.prefix(depth + 1), next, created);
+                if (next != null && replaced < 0) {
+                    replaced = depth + 1;
+                    replacedValue = next;
+                    replacedBy = created;
+                }
+                next = created;
+                structural = true;
+            }
+            cursor.push(depth + 1, parts[depth], StorageBase.asNode(next));
+        }
+
+        Object previous = cursor.nodes.get(parts.length - 1).put(parts[parts.length - 1], value);
+        if (index != null) index.put(path.toString(), previous, value);
+        if (structural || previous instanceof Map) cursor.version = ++storage.structure;
+        storage.changed(path, value);
+        if (replaced < 0) {
+            storage.record(path, parts.length, previous, value);
+        } else {
+            storage.record(path, replaced, replacedValue, replacedBy);
+        }
+    }
+
+    /**
+     * Removes a value, reusing the maps of the previous mutation's common prefix.
+     */
+    private void delete(@NotNull StoragePath path) {
+        String[] parts = path.segments();
+        if (parts.length == 0) return;
+        if (storage.transaction != null) {
+            storage.remove(path);
+            return;
+        }
+
+        storage.loadShard(parts[0]);
+        int depth = cursor.descend(storage, parts);
+        for (; depth < parts.length - 1; depth++) {
+            Object next = cursor.nodes.get(depth).get(parts[depth]);
+            if (!(next instanceof Map)) return;
+            cursor.push(depth + 1, parts[depth], StorageBase.asNode(next));
+        }
+
+        Object previous = cursor.nodes.get(parts.length - 1).remove(parts[parts.length - 1]);
+        if (previous == null) return;
+
+        StorageIndex index = storage.index;
+        if (index != null) index.remove(path.toString(), previous);
+        if (previous instanceof Map) cursor.version = ++storage.structure;
+        storage.changed(path, null);
+        storage.record(path, parts.length, previous, null);
+    }
+
+    /**
+     * The chain of maps from the root to the parent of the last mutated key, shared by all views of a batch.
+     * <p>
+     * The chain always ends at the map that was mutated last, so no mutation of the batch can have
+     * replaced any map on it: the mutated key is a child of the last map, never one of the maps
+     * themselves. Mutations outside the batch are detected through the structure version of the storage.
+     */
+    private static final class Cursor {
+        private final List<Map<String, Object>> nodes = new ArrayList<>();
+        private String[] keys = new String[8];
+        private Map<String, Object> root;
+        private int version;
+        private int size;
+
+        private boolean save;
+
+        /**
+         * Truncates the chain to the longest prefix shared with the parent of the given path.
+         *
+         * @param storage The storage of the batch
+         * @param parts   The segments of the path
+         * @return The depth of the deepest reusable map
+         */
+        int descend(@NotNull StorageBase storage, String @NotNull [] parts) {
+            if (root != storage.init || version != storage.structure) {
+                root = storage.init;
+                version = storage.structure;
+                if (nodes.isEmpty()) nodes.add(root);
+                else nodes.set(0, root);
+                size = 1;
+            }
+
+            int shared = 1;
+            int limit = Math.min(size, parts.length);
+            while (shared < limit && keys[shared].equals(parts[shared - 1])) {
+                shared++;
+            }
+            size = shared;
+            return shared - 1;
+        }
+
+        /**
+         * Appends the map of the given key to the chain.
+         *
+         * @param depth The depth of the map, 1 for a child of the root
+         * @param key   The key of the map in its parent
+         * @param node  The map
+         */
+        void push(int depth, @NotNull String key, @NotNull Map<String, Object> node) {
+            if (depth == keys.length) keys = Arrays.copyOf(keys, depth * 2);
+            if (depth == nodes.size()) nodes.add(node);
+            else nodes.set(depth, node);
+            keys[depth] = key;
+            size = depth + 1;
+        }
+
+        /**
+         * Forgets the chain, used after mutations that bypassed it.
+         */
+        void reset() {
+            root = null;
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.leycm.storage;
+
+/**
+ * A snapshot of the statistics of the storage cache of the {@link StorageRegistry},
+ * see {@link StorageRegistry#cacheStats()}.
+ *
+ * @param hits      The number of registrations that were served from the cache
+ * @param misses    The number of registrations that had to load the storage
+ * @param evictions The number of storages evicted because of the size limit or idle timeout
+ * @param size      The number of file storages currently cached
+ */
+public record StorageCacheStats(long hits,
+                                long misses,
+                                long evictions,
+                                long size) {
+
+    /**
+     * Returns the ratio of registrations served from the cache.
+     *
+     * @return The hit rate between 0 and 1, or 1 if there were no registrations yet
+     */
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+}
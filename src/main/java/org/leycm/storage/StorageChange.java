@@ -0,0 +1,28 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Describes the change of a single value in a {@link StorageBase}.
+ * <p>
+ * Changes are reported per leaf: if a map is replaced by a scalar (or vice versa), one change is
+ * reported for every affected leaf path, so a change never carries a {@link java.util.Map} as value.
+ *
+ * @param path     The full dot-separated path of the changed value
+ * @param oldValue The value before the change, or null if the key did not exist
+ * @param newValue The value after the change, or null if the key was removed
+ */
+public record StorageChange(@NotNull String path,
+                            @Nullable Object oldValue,
+                            @Nullable Object newValue) {
+
+    /**
+     * Checks if this change removed the key.
+     *
+     * @return true if the key no longer exists after the change
+     */
+    public boolean isRemoval() {
+        return newValue == null;
+    }
+}
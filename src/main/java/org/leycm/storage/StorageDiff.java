@@ -0,0 +1,139 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Computes the differences between two storage trees, either per leaf for change listeners and watches or as
+ * the smallest set of operations for a {@link StoragePatch}.
+ */
+final class StorageDiff {
+
+    private StorageDiff() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Compares two trees and returns one {@link StorageChange} for every leaf that was added,
+     * removed or modified. Subtrees that are the same instance in both trees are skipped.
+     *
+     * @param before The tree before the change
+     * @param after  The tree after the change
+     * @return The list of changes, empty if both trees are equal
+     */
+    static @NotNull List<StorageChange> compare(@NotNull Map<?, ?> before, @NotNull Map<?, ?> after) {
+        List<StorageChange> changes = new ArrayList<>();
+        compareMaps("", before, after, changes);
+        return changes;
+    }
+
+    /**
+     * Compares the values at a path before and after a change and adds one {@link StorageChange}
+     * for every leaf below the path that was added, removed or modified.
+     *
+     * @param path    The dot-separated path of the values, empty for whole trees
+     * @param before  The value before the change, or null if there was none
+     * @param after   The value after the change, or null if it was removed
+     * @param changes Receives the changes
+     */
+    static void compare(@NotNull String path,
+                        @Nullable Object before,
+                        @Nullable Object after,
+                        @NotNull List<StorageChange> changes) {
+        compareValues(path, before, after, changes);
+    }
+
+    /**
+     * Compares two trees and reports the operations that turn the first into the second. Only maps
+     * present on both sides are descended; everything else that differs is reported as a single
+     * {@code set} of the new value or a {@code remove} (with a null value) at its path.
+     * Removals of a map are reported before its additions.
+     *
+     * @param before     The old tree
+     * @param after      The new tree
+     * @param operations Receives the path and the new value of every operation
+     */
+    static void patch(@NotNull Map<?, ?> before,
+                      @NotNull Map<?, ?> after,
+                      @NotNull BiConsumer<String, Object> operations) {
+        patchMaps("", before, after, operations);
+    }
+
+    private static void patchMaps(@NotNull String prefix,
+                                  @NotNull Map<?, ?> before,
+                                  @NotNull Map<?, ?> after,
+                                  @NotNull BiConsumer<String, Object> operations) {
+        if (before == after) return;
+
+        for (Map.Entry<?, ?> entry : before.entrySet()) {
+            if (entry.getValue() != null && after.get(entry.getKey()) == null) {
+                operations.accept(join(prefix, entry.getKey()), null);
+            }
+        }
+
+        for (Map.Entry<?, ?> entry : after.entrySet()) {
+            Object previous = before.get(entry.getKey());
+            Object value = entry.getValue();
+            if (value == null) continue;
+
+            if (previous instanceof Map<?, ?> oldMap && value instanceof Map<?, ?> newMap) {
+                patchMaps(join(prefix, entry.getKey()), oldMap, newMap, operations);
+            } else if (!Objects.equals(previous, value)) {
+                operations.accept(join(prefix, entry.getKey()), value);
+            }
+        }
+    }
+
+    private static void compareMaps(@NotNull String prefix,
+                                    @NotNull Map<?, ?> before,
+                                    @NotNull Map<?, ?> after,
+                                    @NotNull List<StorageChange> changes) {
+        if (before == after) return;
+
+        for (Map.Entry<?, ?> entry : before.entrySet()) {
+            String path = join(prefix, entry.getKey());
+            compareValues(path, entry.getValue(), after.get(entry.getKey()), changes);
+        }
+
+        for (Map.Entry<?, ?> entry : after.entrySet()) {
+            if (before.containsKey(entry.getKey())) continue;
+            compareValues(join(prefix, entry.getKey()), null, entry.getValue(), changes);
+        }
+    }
+
+    private static void compareValues(@NotNull String path,
+                                      @Nullable Object before,
+                                      @Nullable Object after,
+                                      @NotNull List<StorageChange> changes) {
+        if (before instanceof Map<?, ?> oldMap && after instanceof Map<?, ?> newMap) {
+            compareMaps(path, oldMap, newMap, changes);
+            return;
+        }
+
+        if (before instanceof Map<?, ?> oldMap) {
+            compareMaps(path, oldMap, Map.of(), changes);
+            if (after != null) changes.add(new StorageChange(path, null, after));
+            return;
+        }
+
+        if (after instanceof Map<?, ?> newMap) {
+            if (before != null) changes.add(new StorageChange(path, before, null));
+            compareMaps(path, Map.of(), newMap, changes);
+            return;
+        }
+
+        if (!Objects.equals(before, after)) {
+            changes.add(new StorageChange(path, before, after));
+        }
+    }
+
+    private static @NotNull String join(@NotNull String prefix, Object key) {
+        return prefix.isEmpty() ? String.valueOf(key) : prefix + "." + key;
+    }
+}
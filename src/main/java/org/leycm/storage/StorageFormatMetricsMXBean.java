@@ -0,0 +1,33 @@
+package org.leycm.storage;
+
+/**
+ * The JMX view of the file measurements of one {@link StorageBase.Type}, registered as
+ * {@value InMemoryStorageMetrics#OBJECT_NAME}{@code ,format=<type>} by
+ * {@link InMemoryStorageMetrics#registerMBeans()}. Durations are in milliseconds.
+ */
+public interface StorageFormatMetricsMXBean {
+
+    long getParseCount();
+
+    double getParseMeanMillis();
+
+    double getParseP50Millis();
+
+    double getParseP99Millis();
+
+    double getParseMaxMillis();
+
+    long getSerializeCount();
+
+    double getSerializeMeanMillis();
+
+    double getSerializeP50Millis();
+
+    double getSerializeP99Millis();
+
+    double getSerializeMaxMillis();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+}
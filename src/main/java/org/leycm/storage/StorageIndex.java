@@ -0,0 +1,157 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A flat {@code fullPath -> value} view over the nested maps of a {@link StorageBase}.
+ * <p>
+ * Every node of the tree, including intermediate maps, is registered under its complete
+ * dot-separated path, so a lookup costs a single hash probe regardless of depth.
+ * The index is kept in sync by the owning storage on every mutation and is rebuilt
+ * whenever the whole tree is replaced.
+ * <p>
+ * The paths are additionally kept in sorted order, so all paths below a prefix form one contiguous
+ * range and can be listed without walking the nested maps, see {@link #collectBelow(String, Set)}.
+ */
+final class StorageIndex {
+    private final Map<String, Object> values;
+    private final NavigableSet<String> sorted;
+
+    /**
+     * Creates an empty index backed by the given collections.
+     *
+     * @param values The map that holds the flat entries
+     * @param sorted The set that holds the indexed paths in order
+     */
+    StorageIndex(@NotNull Map<String, Object> values, @NotNull NavigableSet<String> sorted) {
+        this.values = values;
+        this.sorted = sorted;
+    }
+
+    /**
+     * Creates an empty index backed by a {@link HashMap} and a {@link TreeSet}.
+     */
+    StorageIndex() {
+        this(new HashMap<>(), new TreeSet<>());
+    }
+
+    /**
+     * Looks up the value stored at the given path.
+     *
+     * @param path The full path of the value
+     * @return The value if present, otherwise null
+     */
+    @Nullable Object get(@NotNull StoragePath path) {
+        return values.get(path.toString());
+    }
+
+    /**
+     * Registers a value under the given path, replacing the previous value and,
+     * if the previous value was a map, all of its descendants.
+     *
+     * @param path     The full path of the value
+     * @param previous The value previously stored at the path (may be null)
+     * @param value    The new value
+     */
+    void put(@NotNull String path, @Nullable Object previous, @NotNull Object value) {
+        if (previous instanceof Map<?, ?> old) removeChildren(path, old);
+        if (values.put(path, value) == null) sorted.add(path);
+        if (value instanceof Map<?, ?> map) addChildren(path, map);
+    }
+
+    /**
+     * Replaces the value under the given path without touching its descendants, used when a map
+     * was exchanged for a copy with the same entries.
+     *
+     * @param path  The full path of the value
+     * @param value The new value
+     */
+    void replace(@NotNull String path, @NotNull Object value) {
+        values.put(path, value);
+    }
+
+    /**
+     * Removes the value under the given path and all of its descendants.
+     *
+     * @param path     The full path of the value
+     * @param previous The value that was stored at the path (may be null)
+     */
+    void remove(@NotNull String path, @Nullable Object previous) {
+        if (previous instanceof Map<?, ?> old) removeChildren(path, old);
+        values.remove(path);
+        sorted.remove(path);
+    }
+
+    /**
+     * Discards all entries and re-indexes the given tree.
+     *
+     * @param root The root map of the storage
+     */
+    void rebuild(@NotNull Map<String, Object> root) {
+        values.clear();
+        sorted.clear();
+        for (Map.Entry<String, Object> entry : root.entrySet()) {
+            values.put(entry.getKey(), entry.getValue());
+            sorted.add(entry.getKey());
+            if (entry.getValue() instanceof Map<?, ?> map) addChildren(entry.getKey(), map);
+        }
+    }
+
+    /**
+     * Adds every entry of another index to this one, used to update a copy of a live index
+     * without exposing the intermediate states to its readers.
+     *
+     * @param other The index to copy
+     */
+    void addAll(@NotNull StorageIndex other) {
+        values.putAll(other.values);
+        sorted.addAll(other.sorted);
+    }
+
+    /**
+     * Returns a live view of every indexed path.
+     *
+     * @return The indexed paths
+     */
+    @NotNull Set<String> paths() {
+        return values.keySet();
+    }
+
+    /**
+     * Adds every path below the given prefix to the collector, relative to the prefix. Only the
+     * range of paths below the prefix is visited, not the whole index.
+     *
+     * @param prefix    The full path of the parent, not empty
+     * @param collector The set where the relative paths will be collected
+     */
+    void collectBelow(@NotNull String prefix, @NotNull Set<String> collector) {
+        // '/' directly follows '.', so every path starting with "prefix." sorts before "prefix/"
+        for (String path : sorted.subSet(prefix + ".", true, prefix + "/", false)) {
+            collector.add(path.substring(prefix.length() + 1));
+        }
+    }
+
+    private void addChildren(@NotNull String prefix, @NotNull Map<?, ?> map) {
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String path = prefix + "." + entry.getKey();
+            if (values.put(path, entry.getValue()) == null) sorted.add(path);
+            if (entry.getValue() instanceof Map<?, ?> nested) addChildren(path, nested);
+        }
+    }
+
+    private void removeChildren(@NotNull String prefix, @NotNull Map<?, ?> map) {
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String path = prefix + "." + entry.getKey();
+            values.remove(path);
+            sorted.remove(path);
+            if (entry.getValue() instanceof Map<?, ?> nested) removeChildren(path, nested);
+        }
+    }
+}
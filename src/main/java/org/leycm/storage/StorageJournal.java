@@ -0,0 +1,314 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * The append-only change log of a {@link StorageBase.Option#JOURNALED} storage, kept next to its
+ * file as {@code <file>.journal}.
+ * <p>
+ * The journal starts with the magic bytes {@code TFJ} and a version byte, followed by one record per
+ * {@code set} or {@code remove}. A record is a 4 byte payload length, the payload and a CRC32 of the
+ * payload. The payload is an operation byte, the path as a length-prefixed UTF-8 string and, for
+ * {@code set}, the value in the tagged encoding of {@link BinaryFormat}.
+ * <p>
+ * Every record sets or removes a complete path, so replaying records that are already contained in
+ * the snapshot is harmless. Compaction relies on this: it writes a new snapshot first and only then
+ * drops the records it covers, so a crash in between merely replays them again.
+ * <p>
+ * All methods except {@link #replay(Map, Supplier)} must be called while holding the storage lock.
+ */
+final class StorageJournal {
+    private static final byte[] MAGIC = {'T', 'F', 'J'};
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 1;
+
+    private static final byte SET = 1;
+    private static final byte REMOVE = 2;
+
+    private static volatile ExecutorService compactor;
+
+    private final StorageBase storage;
+    private final Path file;
+    private final AtomicBoolean compactionPending = new AtomicBoolean();
+    private FileChannel channel;
+
+    /**
+     * Creates the journal of a storage. The file is opened on the first append.
+     *
+     * @param storage The journaled storage
+     * @param file    The journal file
+     */
+    StorageJournal(@NotNull StorageBase storage, @NotNull Path file) {
+        this.storage = storage;
+        this.file = file;
+    }
+
+    /**
+     * Appends a record and schedules a background compaction once the journal has grown past
+     * {@link StorageRegistry#getJournalCompactionSize()}.
+     *
+     * @param path  The changed path
+     * @param value The new value, or null for a removal
+     * @return true if the record was written, false if the value cannot be encoded or writing failed
+     *         and the change must be saved otherwise
+     */
+    boolean append(@NotNull StoragePath path, @Nullable Object value) {
+        byte[] key = path.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] encoded;
+        try {
+            encoded = value != null ? BinaryFormat.encodeValue(value) : new byte[0];
+        } catch (IllegalArgumentException e) {
+            return false; // written by the next snapshot in the format of the storage
+        }
+        int length = 1 + Integer.BYTES + key.length + encoded.length;
+
+        ByteBuffer payload = ByteBuffer.allocate(Integer.BYTES + length + Integer.BYTES);
+        payload.putInt(length);
+        payload.put(value != null ? SET : REMOVE);
+        payload.putInt(key.length);
+        payload.put(key);
+        payload.put(encoded);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), Integer.BYTES, length);
+        payload.putInt((int) crc.getValue());
+        payload.flip();
+
+        try {
+            FileChannel output = open();
+            while (payload.hasRemaining()) {
+                output.write(payload);
+            }
+            if (output.size() >= StorageRegistry.getJournalCompactionSize()) scheduleCompaction();
+            return true;
+        } catch (IOException e) {
+            StorageRegistry.getLogger().severe("Failed to append to storage journal " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Returns the current size of the journal in bytes.
+     *
+     * @return The size, or 0 if the journal does not exist yet
+     * @throws IOException if the size cannot be determined
+     */
+    long size() throws IOException {
+        if (channel != null) return channel.size();
+        return Files.exists(file) ? Files.size(file) : 0;
+    }
+
+    /**
+     * Forces all appended records to the storage device.
+     *
+     * @throws IOException if the journal cannot be synced
+     */
+    void force() throws IOException {
+        if (channel != null) channel.force(false);
+    }
+
+    /**
+     * Drops the first {@code position} bytes of records after they have been written to a snapshot.
+     * Records appended after that position are kept.
+     *
+     * @param position The journal size at the time the snapshot was taken
+     * @throws IOException if the journal cannot be rewritten
+     */
+    void discard(long position) throws IOException {
+        if (position <= HEADER_SIZE) return;
+        long size = size();
+
+        close();
+        if (position >= size) {
+            Files.deleteIfExists(file);
+            return;
+        }
+
+        Path temp = StorageRegistry.createTempFile(file);
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            target.write(header());
+            long offset = Math.max(position, HEADER_SIZE);
+            while (offset < size) {
+                offset += source.transferTo(offset, size - offset, target);
+            }
+            target.force(true);
+        }
+        StorageRegistry.moveAtomically(temp, file);
+    }
+
+    /**
+     * Applies all intact records of the journal to a freshly loaded tree. A torn or corrupt tail,
+     * as left by a crash during an append, ends the replay and is cut off.
+     *
+     * @param tree  The tree loaded from the snapshot
+     * @param nodes The factory for maps created by the records
+     * @throws IOException if the journal cannot be read or is not a storage journal
+     */
+    void replay(@NotNull Map<String, Object> tree, @NotNull Supplier<Map<String, Object>> nodes) throws IOException {
+        storage.lock.lock();
+        try {
+            close();
+            if (!Files.exists(file)) return;
+
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() < HEADER_SIZE) {
+                Files.delete(file);
+                return;
+            }
+            for (byte magic : MAGIC) {
+                if (buffer.get() != magic) throw new IOException("Not a storage journal: " + file);
+            }
+            byte version = buffer.get();
+            if (version != VERSION) throw new IOException("Unsupported storage journal version " + version);
+
+            int valid = buffer.position();
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt();
+                if (length <= 0 || buffer.remaining() < length + Integer.BYTES) break;
+
+                CRC32 crc = new CRC32();
+                crc.update(buffer.array(), buffer.position(), length);
+                int end = buffer.position() + length;
+                if (buffer.getInt(end) != (int) crc.getValue()) break;
+
+                apply(buffer.slice(buffer.position(), length), tree, nodes);
+                buffer.position(end + Integer.BYTES);
+                valid = buffer.position();
+            }
+
+            if (valid < buffer.limit()) {
+                StorageRegistry.getLogger().warning("Discarding corrupt tail of storage journal " + file);
+                try (FileChannel output = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    output.truncate(valid);
+                }
+            }
+        } finally {
+            storage.lock.unlock();
+        }
+    }
+
+    /**
+     * Applies a single record to a tree.
+     */
+    @SuppressWarnings("unchecked")
+    private static void apply(@NotNull ByteBuffer record,
+                              @NotNull Map<String, Object> tree,
+                              @NotNull Supplier<Map<String, Object>> nodes) throws IOException {
+        byte operation = record.get();
+        String[] parts = StoragePath.of(BinaryFormat.readString(record)).segments();
+        if (parts.length == 0) return;
+
+        Map<String, Object> current = tree;
+        for (int i = 0; i < parts.length - 1; i++) {
+            Object next = current.get(parts[i]);
+            if (!(next instanceof Map)) {
+                if (operation == REMOVE) return;
+                next = nodes.get();
+                current.put(parts[i], next);
+            }
+            current = (Map<String, Object>) next;
+        }
+
+        String key = parts[parts.length - 1];
+        switch (operation) {
+            case SET -> {
+                Object value = BinaryFormat.readValue(record, nodes);
+                if (value != null) current.put(key, value);
+            }
+            case REMOVE -> current.remove(key);
+            default -> throw new IOException("Unknown storage journal operation " + operation);
+        }
+    }
+
+    /**
+     * Returns the append channel, creating the journal with its header if necessary.
+     */
+    private @NotNull FileChannel open() throws IOException {
+        if (channel == null) {
+            Files.createDirectories(file.getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (channel.size() == 0) channel.write(header());
+        }
+        return channel;
+    }
+
+    /**
+     * Closes the append channel. The journal is reopened by the next append.
+     *
+     * @throws IOException if the channel cannot be closed
+     */
+    void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private static @NotNull ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).put(VERSION).flip();
+        return header;
+    }
+
+    /**
+     * Compacts the journal into the snapshot on the shared background thread, at most once at a time.
+     * Appends that reach the threshold while a compaction is finishing cannot schedule another one,
+     * so the size is checked again once it is done.
+     */
+    private void scheduleCompaction() {
+        if (!compactionPending.compareAndSet(false, true)) return;
+        compactor().execute(() -> {
+            try {
+                StorageRegistry.compact(storage);
+            } catch (RuntimeException e) {
+                StorageRegistry.getLogger().severe(e.getMessage());
+                compactionPending.set(false);
+                return;
+            }
+
+            storage.lock.lock();
+            try {
+                compactionPending.set(false);
+                if (size() >= StorageRegistry.getJournalCompactionSize()) scheduleCompaction();
+            } catch (IOException e) {
+                StorageRegistry.getLogger().warning("Failed to check storage journal " + file + ": " + e.getMessage());
+            } finally {
+                storage.lock.unlock();
+            }
+        });
+    }
+
+    private static @NotNull ExecutorService compactor() {
+        ExecutorService executor = compactor;
+        if (executor == null) {
+            synchronized (StorageJournal.class) {
+                executor = compactor;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "the-frame-storage-compactor");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    compactor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,19 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A listener that is notified when a value in a {@link StorageBase} changes.
+ * Listeners are registered per key via {@link StorageBase#addChangeListener(String, StorageListener)}
+ * or for all keys below a path via {@link StorageBase#watch(String, StorageListener)}.
+ */
+@FunctionalInterface
+public interface StorageListener {
+
+    /**
+     * Called after the value at the listened key has changed.
+     *
+     * @param change The change that was applied
+     */
+    void onChange(@NotNull StorageChange change);
+}
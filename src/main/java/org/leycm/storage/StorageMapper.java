@@ -0,0 +1,403 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Maps records and plain Java objects to and from a storage subtree, see {@link StorageBase#bind(Class)}.
+ * <p>
+ * The accessors of a class are generated once, the first time the class is bound: getters, setters
+ * and no-argument constructors are turned into lambdas with {@link LambdaMetafactory}, so mapping an
+ * object afterwards costs no more than the hand-written {@code get}/{@code set} calls. Fields without
+ * accessors and the canonical constructors of records are called through {@link MethodHandle}s.
+ * <p>
+ * Every property is stored under its name. Properties whose type is a record or a class with a
+ * no-argument constructor are mapped as nested sections, except for types of the JDK, which are
+ * stored as values so that the adapters of the storage apply to them. Enums are stored by name.
+ *
+ * @param <T> The mapped type
+ */
+final class StorageMapper<T> {
+    private static final ClassValue<StorageMapper<?>> mappers = new ClassValue<>() {
+        @Override
+        protected StorageMapper<?> computeValue(@NotNull Class<?> type) {
+            return create(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final Property[] properties;
+    private final @Nullable Supplier<Object> constructor;
+    private final @Nullable MethodHandle canonicalConstructor;
+
+    private StorageMapper(@NotNull Class<T> type,
+                          @NotNull Property @NotNull [] properties,
+                          @Nullable Supplier<Object> constructor,
+                          @Nullable MethodHandle canonicalConstructor) {
+        this.type = type;
+        this.properties = properties;
+        this.constructor = constructor;
+        this.canonicalConstructor = canonicalConstructor;
+    }
+
+    /**
+     * Returns the mapper of the given class, generating it on first use.
+     *
+     * @param <T>  The mapped type
+     * @param type The mapped class
+     * @return The mapper
+     * @throws IllegalArgumentException if the class is neither a record nor has a no-argument constructor
+     */
+    @SuppressWarnings("unchecked")
+    static <T> @NotNull StorageMapper<T> of(@NotNull Class<T> type) {
+        return (StorageMapper<T>) mappers.get(type);
+    }
+
+    /**
+     * Creates a new instance from the values stored in the given storage. Missing values keep the
+     * defaults of the class, or zero and null for record components.
+     *
+     * @param storage The storage or section to read from
+     * @param base    The path of the subtree to read, or null for the whole storage
+     * @return The new instance
+     */
+    @NotNull T read(@NotNull StorageBase storage, @Nullable StoragePath base) {
+        if (canonicalConstructor != null) {
+            Object[] arguments = new Object[properties.length];
+            for (int i = 0; i < properties.length; i++) {
+                Object value = properties[i].read(storage, base);
+                arguments[i] = value != null ? value : properties[i].zero;
+            }
+
+            try {
+                return type.cast(canonicalConstructor.invokeExact(arguments));
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to create " + type.getName(), e);
+            }
+        }
+
+        Object instance = constructor.get();
+        for (Property property : properties) {
+            if (property.setter == null) continue;
+            Object value = property.read(storage, base);
+            if (value != null) property.setter.accept(instance, value);
+        }
+        return type.cast(instance);
+    }
+
+    /**
+     * Stores all properties of the given instance. Null properties are removed from the storage.
+     *
+     * @param storage The storage or section to write to
+     * @param base    The path of the subtree to write, or null for the whole storage
+     * @param value   The instance to store
+     */
+    void write(@NotNull StorageBase storage, @Nullable StoragePath base, @NotNull T value) {
+        for (Property property : properties) {
+            property.write(storage, base, property.getter.apply(value));
+        }
+    }
+
+    /**
+     * Generates the mapper of a class.
+     *
+     * @param type The mapped class
+     * @return The mapper
+     */
+    private static <T> @NotNull StorageMapper<T> create(@NotNull Class<T> type) {
+        MethodHandles.Lookup lookup = lookupIn(type);
+        try {
+            if (type.isRecord()) {
+                RecordComponent[] components = type.getRecordComponents();
+                Property[] properties = new Property[components.length];
+                Class<?>[] parameters = new Class<?>[components.length];
+
+                for (int i = 0; i < components.length; i++) {
+                    RecordComponent component = components[i];
+                    Function<Object, Object> getter = getter(lookup, type, component.getAccessor());
+                    properties[i] = new Property(component.getName(), component.getType(), getter, null);
+                    parameters[i] = component.getType();
+                }
+
+                MethodHandle constructor = lookup.unreflectConstructor(type.getDeclaredConstructor(parameters))
+                        .asSpreader(Object[].class, parameters.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+                return new StorageMapper<>(type, properties, null, constructor);
+            }
+
+            if (!hasNoArgumentConstructor(type)) {
+                throw new IllegalArgumentException(type.getName() + " is neither a record nor has a no-argument constructor");
+            }
+
+            List<Property> properties = new ArrayList<>();
+            collectProperties(lookup, type, type, properties);
+            return new StorageMapper<>(type, properties.toArray(Property[]::new), constructor(lookup, type), null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot map " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Adds the instance fields of a class and its superclasses, superclass fields first.
+     */
+    private static void collectProperties(@NotNull MethodHandles.Lookup lookup,
+                                          @NotNull Class<?> owner,
+                                          @NotNull Class<?> type,
+                                          @NotNull List<Property> properties) throws ReflectiveOperationException {
+        Class<?> parent = type.getSuperclass();
+        if (parent != null && parent != Object.class) collectProperties(lookupIn(parent), owner, parent, properties);
+
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) continue;
+
+            String suffix = Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+            Method read = findMethod(type, "get" + suffix, field.getType());
+            if (read == null && field.getType() == boolean.class) read = findMethod(type, "is" + suffix, field.getType());
+            Method write = findMethod(type, "set" + suffix, void.class, field.getType());
+
+            Function<Object, Object> getter = read != null
+                    ? getter(lookup, owner, read)
+                    : invoking(lookup.unreflectGetter(field));
+
+            BiConsumer<Object, Object> setter = null;
+            if (write != null) {
+                setter = setter(lookup, owner, write);
+            } else if (!Modifier.isFinal(modifiers)) {
+                setter = invokingSetter(lookup.unreflectSetter(field));
+            }
+
+            properties.add(new Property(field.getName(), field.getType(), getter, setter));
+        }
+    }
+
+    /**
+     * Finds a public or declared method with the given signature.
+     */
+    private static @Nullable Method findMethod(@NotNull Class<?> type,
+                                               @NotNull String name,
+                                               @NotNull Class<?> returnType,
+                                               Class<?> @NotNull ... parameters) {
+        try {
+            Method method = type.getDeclaredMethod(name, parameters);
+            return method.getReturnType() == returnType && !Modifier.isStatic(method.getModifiers()) ? method : null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static boolean hasNoArgumentConstructor(@NotNull Class<?> type) {
+        if (type.isInterface() || type.isEnum() || Modifier.isAbstract(type.getModifiers())) return false;
+        try {
+            type.getDeclaredConstructor();
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if values of the given type are mapped as nested sections.
+     */
+    private static boolean isNested(@NotNull Class<?> type) {
+        if (type.isPrimitive() || type.isArray() || type.getName().startsWith("java.")) return false;
+        if (StorageBase.class.isAssignableFrom(type)) return false;
+        return type.isRecord() || hasNoArgumentConstructor(type);
+    }
+
+    private static @NotNull MethodHandles.Lookup lookupIn(@NotNull Class<?> type) {
+        try {
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access " + type.getName()
+                    + ", its package must be opened to the storage module", e);
+        }
+    }
+
+    /**
+     * Generates a getter lambda for an accessor method.
+     */
+    @SuppressWarnings("unchecked")
+    private static @NotNull Function<Object, Object> getter(@NotNull MethodHandles.Lookup lookup,
+                                                            @NotNull Class<?> owner,
+                                                            @NotNull Method method) throws IllegalAccessException {
+        MethodHandle handle = lookup.unreflect(method);
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    handle,
+                    MethodType.methodType(box(method.getReturnType()), owner));
+            return (Function<Object, Object>) site.getTarget().invoke();
+        } catch (Throwable e) {
+            return invoking(handle);
+        }
+    }
+
+    /**
+     * Generates a setter lambda for a mutator method.
+     */
+    @SuppressWarnings("unchecked")
+    private static @NotNull BiConsumer<Object, Object> setter(@NotNull MethodHandles.Lookup lookup,
+                                                              @NotNull Class<?> owner,
+                                                              @NotNull Method method) throws IllegalAccessException {
+        MethodHandle handle = lookup.unreflect(method);
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    handle,
+                    MethodType.methodType(void.class, owner, box(method.getParameterTypes()[0])));
+            return (BiConsumer<Object, Object>) site.getTarget().invoke();
+        } catch (Throwable e) {
+            return invokingSetter(handle);
+        }
+    }
+
+    /**
+     * Generates a constructor lambda for the no-argument constructor of a class.
+     */
+    @SuppressWarnings("unchecked")
+    private static @NotNull Supplier<Object> constructor(@NotNull MethodHandles.Lookup lookup,
+                                                         @NotNull Class<?> type) throws ReflectiveOperationException {
+        MethodHandle handle = lookup.findConstructor(type, MethodType.methodType(void.class));
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    handle,
+                    MethodType.methodType(type));
+            return (Supplier<Object>) site.getTarget().invoke();
+        } catch (Throwable e) {
+            MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return generic.invokeExact();
+                } catch (Throwable t) {
+                    throw new IllegalStateException("Failed to create " + type.getName(), t);
+                }
+            };
+        }
+    }
+
+    /**
+     * Wraps a getter handle that cannot be turned into a lambda, such as a field getter.
+     */
+    private static @NotNull Function<Object, Object> invoking(@NotNull MethodHandle handle) {
+        MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+        return instance -> {
+            try {
+                return generic.invokeExact(instance);
+            } catch (Throwable t) {
+                throw new IllegalStateException("Failed to read property", t);
+            }
+        };
+    }
+
+    /**
+     * Wraps a setter handle that cannot be turned into a lambda, such as a field setter.
+     */
+    private static @NotNull BiConsumer<Object, Object> invokingSetter(@NotNull MethodHandle handle) {
+        MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (instance, value) -> {
+            try {
+                generic.invokeExact(instance, value);
+            } catch (Throwable t) {
+                throw new IllegalStateException("Failed to set property", t);
+            }
+        };
+    }
+
+    private static @NotNull Class<?> box(@NotNull Class<?> type) {
+        if (!type.isPrimitive()) return type;
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    /**
+     * A single mapped property with its pre-parsed path and generated accessors.
+     * <p>
+     * The absolute path of the property below the last used base path is remembered, so binding the
+     * same subtree repeatedly does not build the path again.
+     */
+    private static final class Property {
+        private final StoragePath path;
+        private final Class<?> type;
+        private final boolean nested;
+        private final boolean constant;
+        private final @Nullable Object zero;
+        private final Function<Object, Object> getter;
+        private final @Nullable BiConsumer<Object, Object> setter;
+
+        Property(@NotNull String name,
+                 @NotNull Class<?> type,
+                 @NotNull Function<Object, Object> getter,
+                 @Nullable BiConsumer<Object, Object> setter) {
+            this.path = StoragePath.of(name);
+            this.type = box(type);
+            this.nested = isNested(type);
+            this.constant = type.isEnum();
+            this.zero = type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        private volatile Resolved resolved;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        @Nullable Object read(@NotNull StorageBase storage, @Nullable StoragePath base) {
+            StoragePath path = resolve(base);
+            if (nested) {
+                if (!(storage.getPathValue(path) instanceof Map)) return null;
+                return of(type).read(storage, path);
+            }
+
+            if (constant) {
+                String name = storage.get(path, String.class);
+                return name != null ? Enum.valueOf((Class<? extends Enum>) type, name) : null;
+            }
+            return storage.get(path, type);
+        }
+
+        @SuppressWarnings("unchecked")
+        void write(@NotNull StorageBase storage, @Nullable StoragePath base, @Nullable Object value) {
+            StoragePath path = resolve(base);
+            if (nested && value != null) {
+                ((StorageMapper<Object>) of(type)).write(storage, path, value);
+            } else if (value instanceof Enum<?> constant) {
+                storage.set(path, constant.name());
+            } else {
+                storage.set(path, value);
+            }
+        }
+
+        /**
+         * Returns the absolute path of this property below the given base path.
+         */
+        private @NotNull StoragePath resolve(@Nullable StoragePath base) {
+            if (base == null) return path;
+
+            Resolved last = resolved;
+            if (last == null || last.base() != base) {
+                last = new Resolved(base, base.child(path.toString()));
+                resolved = last;
+            }
+            return last.path();
+        }
+    }
+
+    private record Resolved(@NotNull StoragePath base, @NotNull StoragePath path) {
+    }
+}
@@ -0,0 +1,63 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives measurements of the storage system once it is installed with
+ * {@link StorageRegistry#setMetrics(StorageMetrics)}. Metrics are disabled by default and cost a
+ * single field read per operation while disabled.
+ * <p>
+ * {@link InMemoryStorageMetrics} keeps latency histograms and counters in memory and exposes them
+ * as snapshots and over JMX. Implement this interface to forward the measurements elsewhere.
+ * Methods are called on the thread performing the operation, often while a storage lock is held,
+ * so they must be fast and thread-safe. Every method does nothing by default.
+ */
+public interface StorageMetrics {
+
+    /**
+     * Called after a storage file or shard file has been read and parsed.
+     *
+     * @param type  The format of the file
+     * @param bytes The size of the file
+     * @param nanos The time spent reading and parsing the file
+     */
+    default void parsed(@NotNull StorageBase.Type type, long bytes, long nanos) {
+    }
+
+    /**
+     * Called after a tree has been serialized into a storage file or shard file, before the file
+     * is forced to disk.
+     *
+     * @param type  The format of the file
+     * @param bytes The size of the written file
+     * @param nanos The time spent serializing the tree
+     */
+    default void serialized(@NotNull StorageBase.Type type, long bytes, long nanos) {
+    }
+
+    /**
+     * Called for every {@link StorageBase#get(StoragePath, Class)}, including the typed getters
+     * and the overloads with a default value.
+     *
+     * @param hit true if a value of the requested type was found
+     */
+    default void lookup(boolean hit) {
+    }
+
+    /**
+     * Called whenever a registered {@link StorageAdapter} stores or reads a value.
+     *
+     * @param type The class the adapter is registered for
+     */
+    default void adapterCalled(@NotNull Class<?> type) {
+    }
+
+    /**
+     * Called when a file storage is evicted from the cache of the {@link StorageRegistry},
+     * see {@link StorageRegistry#setCacheLimits(long, java.time.Duration)}.
+     *
+     * @param file The file of the evicted storage
+     */
+    default void evicted(@NotNull String file) {
+    }
+}
@@ -0,0 +1,23 @@
+package org.leycm.storage;
+
+/**
+ * The JMX view of the counters of an {@link InMemoryStorageMetrics} recorder, registered as
+ * {@value InMemoryStorageMetrics#OBJECT_NAME} by {@link InMemoryStorageMetrics#registerMBeans()}.
+ */
+public interface StorageMetricsMXBean {
+
+    long getLookupHits();
+
+    long getLookupMisses();
+
+    double getLookupHitRate();
+
+    long getAdapterCalls();
+
+    long getCacheEvictions();
+
+    /**
+     * Clears all measurements, including those of the formats.
+     */
+    void reset();
+}
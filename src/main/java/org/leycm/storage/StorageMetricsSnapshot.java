@@ -0,0 +1,73 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+/**
+ * A snapshot of the measurements of an {@link InMemoryStorageMetrics} recorder,
+ * see {@link InMemoryStorageMetrics#snapshot()}.
+ *
+ * @param formats      The file measurements per format, containing every {@link StorageBase.Type}
+ * @param hits         The number of lookups that found a value of the requested type
+ * @param misses       The number of lookups that returned null or the default value
+ * @param adapterCalls The number of values stored or read through a {@link StorageAdapter}
+ * @param evictions    The number of file storages evicted from the registry cache
+ */
+public record StorageMetricsSnapshot(@NotNull Map<StorageBase.Type, Format> formats,
+                                     long hits,
+                                     long misses,
+                                     long adapterCalls,
+                                     long evictions) {
+
+    /**
+     * Returns the ratio of lookups that found a value.
+     *
+     * @return The hit rate between 0 and 1, or 1 if there were no lookups yet
+     */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 1.0 : (double) hits / lookups;
+    }
+
+    /**
+     * The measurements of the files of one format.
+     *
+     * @param parse        The time spent reading and parsing files
+     * @param serialize    The time spent serializing trees into files
+     * @param bytesRead    The total size of all parsed files
+     * @param bytesWritten The total size of all written files
+     */
+    public record Format(@NotNull Timing parse,
+                         @NotNull Timing serialize,
+                         long bytesRead,
+                         long bytesWritten) {
+    }
+
+    /**
+     * The distribution of the durations of an operation. Percentiles are accurate to about 3%.
+     *
+     * @param count      The number of recorded operations
+     * @param totalNanos The sum of all durations
+     * @param maxNanos   The longest duration
+     * @param p50Nanos   The median duration
+     * @param p90Nanos   The 90th percentile of the durations
+     * @param p99Nanos   The 99th percentile of the durations
+     */
+    public record Timing(long count,
+                         long totalNanos,
+                         long maxNanos,
+                         long p50Nanos,
+                         long p90Nanos,
+                         long p99Nanos) {
+
+        /**
+         * Returns the average duration.
+         *
+         * @return The mean in nanoseconds, or 0 if nothing was recorded
+         */
+        public long meanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The differences between two storage trees as a list of {@code set} and {@code remove} operations,
+ * see {@link #diff(StorageBase, StorageBase)} and {@link StorageBase#applyPatch(StoragePatch)}.
+ * <p>
+ * A patch is as small as the change rather than the storage: trees are only descended where both
+ * sides hold a map, so an added or replaced subtree is a single {@code set} of the whole subtree and
+ * a removed subtree is a single {@code remove}. Applying the patch to a storage equal to the first
+ * tree makes it equal to the second.
+ * <p>
+ * Patches are immutable; the values are copied when the patch is created. They can be shipped to
+ * other processes with {@link #toBytes()} and {@link #fromBytes(byte[])}:
+ * <pre>
+ * StoragePatch patch = StoragePatch.diff(lastShipped, storage);
+ * send(patch.toBytes());
+ *
+ * replica.applyPatch(StoragePatch.fromBytes(received));
+ * </pre>
+ */
+public final class StoragePatch {
+    private static final byte[] MAGIC = {'T', 'F', 'P'};
+    private static final byte VERSION = 1;
+
+    private final List<Operation> operations;
+
+    private StoragePatch(@NotNull List<Operation> operations) {
+        this.operations = Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * Computes the patch that turns the content of one storage into that of another.
+     * <p>
+     * Both storages are read while the patch is computed; concurrent writes to them may or may not
+     * be included.
+     *
+     * @param before The storage holding the old content
+     * @param after  The storage holding the new content
+     * @return The patch, empty if both storages are equal
+     */
+    public static @NotNull StoragePatch diff(@NotNull StorageBase before, @NotNull StorageBase after) {
+        return diff(before.tree(), after.tree());
+    }
+
+    /**
+     * Computes the patch that turns one tree into another, e.g. a tree parsed with
+     * {@link StorageRegistry#deserialize(String, StorageBase.Type)} from a previously shipped snapshot.
+     *
+     * @param before The old tree
+     * @param after  The new tree
+     * @return The patch, empty if both trees are equal
+     */
+    public static @NotNull StoragePatch diff(@NotNull Map<String, ?> before, @NotNull Map<String, ?> after) {
+        List<Operation> operations = new ArrayList<>();
+        StorageDiff.patch(before, after, (path, value) -> operations.add(new Operation(StoragePath.of(path), freeze(value))));
+        return new StoragePatch(operations);
+    }
+
+    /**
+     * Returns the operations of this patch in the order they are applied.
+     *
+     * @return The unmodifiable list of operations
+     */
+    public @NotNull List<Operation> operations() {
+        return operations;
+    }
+
+    /**
+     * Checks if this patch changes nothing.
+     *
+     * @return true if the patch has no operations
+     */
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    /**
+     * Encodes this patch in the compact binary format of {@link StorageBase.Type#BINARY}.
+     *
+     * @return The encoded patch
+     * @throws IllegalArgumentException if a value of the patch cannot be represented in the binary format
+     */
+    public byte @NotNull [] toBytes() {
+        List<List<Object>> encoded = new ArrayList<>(operations.size());
+        for (Operation operation : operations) {
+            encoded.add(operation.isRemoval()
+                    ? List.of(operation.path().toString())
+                    : List.of(operation.path().toString(), operation.value()));
+        }
+
+        byte[] body = BinaryFormat.encodeValue(encoded);
+        return ByteBuffer.allocate(MAGIC.length + 1 + body.length).put(MAGIC).put(VERSION).put(body).array();
+    }
+
+    /**
+     * Decodes a patch encoded with {@link #toBytes()}.
+     *
+     * @param bytes The encoded patch
+     * @return The patch
+     * @throws IllegalArgumentException if the bytes are not an encoded patch
+     */
+    public static @NotNull StoragePatch fromBytes(byte @NotNull [] bytes) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (buffer.remaining() < MAGIC.length + 1) throw new IOException("Not a storage patch");
+            for (byte magic : MAGIC) {
+                if (buffer.get() != magic) throw new IOException("Not a storage patch");
+            }
+            byte version = buffer.get();
+            if (version != VERSION) throw new IOException("Unsupported storage patch version " + version);
+
+            if (!(BinaryFormat.readValue(buffer, LinkedHashMap::new) instanceof List<?> encoded)) {
+                throw new IOException("Storage patch must be a list of operations");
+            }
+
+            List<Operation> operations = new ArrayList<>(encoded.size());
+            for (Object element : encoded) {
+                if (!(element instanceof List<?> operation) || operation.isEmpty() || operation.size() > 2
+                        || !(operation.get(0) instanceof String path)) {
+                    throw new IOException("Malformed storage patch operation");
+                }
+                Object value = operation.size() == 2 ? operation.get(1) : null;
+                operations.add(new Operation(StoragePath.of(path), freeze(value)));
+            }
+            return new StoragePatch(operations);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid storage patch", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StoragePatch" + operations;
+    }
+
+    /**
+     * Returns an unmodifiable deep copy of a value, so the patch does not change with the tree it was
+     * computed from.
+     */
+    private static @Nullable Object freeze(@Nullable Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            map.forEach((key, child) -> copy.put(String.valueOf(key), freeze(child)));
+            return Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(element -> copy.add(freeze(element)));
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+    /**
+     * A single operation of a patch.
+     *
+     * @param path  The path to set or remove
+     * @param value The value to store, or null if the path is removed
+     */
+    public record Operation(@NotNull StoragePath path, @Nullable Object value) {
+
+        /**
+         * Checks if this operation removes the path.
+         *
+         * @return true if the path is removed
+         */
+        public boolean isRemoval() {
+            return value == null;
+        }
+    }
+}
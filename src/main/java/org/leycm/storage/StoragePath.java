@@ -0,0 +1,201 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable, pre-parsed dot-notation path into a {@link StorageBase} (e.g. "user.profile.name").
+ * <p>
+ * The path is split into its segments exactly once and the segments are interned, so repeated
+ * lookups with the same path neither re-split the string nor allocate. Raw strings passed to
+ * {@link #of(String)} are memoized in a bounded cache, which lets the {@code String} overloads of
+ * {@link StorageBase} benefit from pre-parsing as well. A cache hit is a plain map lookup that
+ * records nothing; once the cache is full it is cleared as a whole, so a working set larger than the
+ * cache is parsed again instead of being tracked per access.
+ * <p>
+ * Callers on hot paths should keep the {@code StoragePath} in a constant:
+ * <pre>
+ * private static final StoragePath POOL_SIZE = StoragePath.of("db.pool.size");
+ *
+ * int size = storage.get(POOL_SIZE, Integer.class, 10);
+ * </pre>
+ */
+public final class StoragePath {
+    private static final int CACHE_LIMIT = 4096;
+    private static final Map<String, StoragePath> cache = new ConcurrentHashMap<>();
+
+    private final String raw;
+    private final String[] segments;
+    private final int hash;
+    private volatile byte[][] utf8;
+
+    /**
+     * Creates a new path from its raw representation and already interned segments.
+     *
+     * @param raw      The raw dot-separated path
+     * @param segments The interned path segments
+     */
+    private StoragePath(@NotNull String raw, String @NotNull [] segments) {
+        this.raw = raw;
+        this.segments = segments;
+        this.hash = Arrays.hashCode(segments);
+    }
+
+    /**
+     * Returns the parsed form of the given dot-separated path.
+     * <p>
+     * Results are cached, so calling this method again with an equal string returns the
+     * same instance without splitting the string a second time until the cache is next cleared.
+     *
+     * @param path The dot-separated path (e.g. "user.profile.name")
+     * @return The parsed path
+     */
+    public static @NotNull StoragePath of(@NotNull String path) {
+        StoragePath cached = cache.get(path);
+        if (cached != null) return cached;
+
+        StoragePath parsed = parse(path);
+        if (cache.size() >= CACHE_LIMIT) cache.clear();
+        cache.put(path, parsed);
+        return parsed;
+    }
+
+    /**
+     * Parses a path without consulting or filling the cache.
+     *
+     * @param path The dot-separated path
+     * @return The parsed path
+     */
+    @Contract("_ -> new")
+    private static @NotNull StoragePath parse(@NotNull String path) {
+        String[] parts = path.split("\\.");
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = parts[i].intern();
+        }
+
+        String canonical = String.join(".", parts);
+        return new StoragePath(canonical.equals(path) ? path : canonical, parts);
+    }
+
+    /**
+     * Returns the number of segments in this path.
+     *
+     * @return The segment count
+     */
+    public int length() {
+        return segments.length;
+    }
+
+    /**
+     * Returns the segment at the given position.
+     *
+     * @param index The zero-based segment index
+     * @return The segment
+     * @throws ArrayIndexOutOfBoundsException if the index is out of range
+     */
+    public @NotNull String segment(int index) {
+        return segments[index];
+    }
+
+    /**
+     * Returns the last segment of this path, i.e. the key inside its parent map.
+     *
+     * @return The last segment
+     * @throws IllegalStateException if the path has no segments
+     */
+    public @NotNull String last() {
+        if (segments.length == 0) throw new IllegalStateException("Empty storage path");
+        return segments[segments.length - 1];
+    }
+
+    /**
+     * Returns a new path with the given key appended to this path.
+     * The key may itself contain dots.
+     *
+     * @param key The key to append
+     * @return The combined path
+     */
+    @Contract("_ -> new")
+    public @NotNull StoragePath child(@NotNull String key) {
+        return child(of(key));
+    }
+
+    /**
+     * Returns a new path with the segments of the given path appended to this path.
+     *
+     * @param child The relative path to append
+     * @return The combined path
+     */
+    @Contract("_ -> new")
+    @NotNull StoragePath child(@NotNull StoragePath child) {
+        String[] combined = Arrays.copyOf(segments, segments.length + child.segments.length);
+        System.arraycopy(child.segments, 0, combined, segments.length, child.segments.length);
+        return new StoragePath(raw + "." + child.raw, combined);
+    }
+
+    /**
+     * Returns the dot-separated representation of the first {@code length} segments.
+     *
+     * @param length The number of leading segments to include
+     * @return The prefix path as string
+     */
+    @NotNull String prefix(int length) {
+        return length == segments.length ? raw : String.join(".", Arrays.asList(segments).subList(0, length));
+    }
+
+    /**
+     * Returns the interned segments without copying.
+     * The returned array must not be modified.
+     *
+     * @return The segment array
+     */
+    String[] segments() {
+        return segments;
+    }
+
+    /**
+     * Returns the UTF-8 encoded segments, encoding them on first use.
+     * The returned arrays must not be modified.
+     *
+     * @return The encoded segments
+     */
+    byte[][] utf8Segments() {
+        byte[][] encoded = utf8;
+        if (encoded == null) {
+            encoded = new byte[segments.length][];
+            for (int i = 0; i < segments.length; i++) {
+                encoded[i] = segments[i].getBytes(StandardCharsets.UTF_8);
+            }
+            utf8 = encoded;
+        }
+        return encoded;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StoragePath other)) return false;
+        return hash == other.hash && Arrays.equals(segments, other.segments);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Returns the dot-separated representation of this path.
+     * Empty trailing segments of the original string are not included.
+     *
+     * @return The dot-separated path
+     */
+    @Override
+    public String toString() {
+        return raw;
+    }
+}
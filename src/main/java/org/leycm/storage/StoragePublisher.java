@@ -0,0 +1,123 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the changes below a path of a storage to {@link Flow.Subscriber}s, see
+ * {@link StorageBase#changes(String, Executor)}.
+ * <p>
+ * Every subscriber gets its own {@link StorageWatch}, which is registered once
+ * {@link Flow.Subscriber#onSubscribe(Flow.Subscription)} has returned and closed when the
+ * subscription is cancelled. Changes are buffered until the subscriber requests them and signalled
+ * on the executor, one at a time. A subscriber that lets more than {@link Flow#defaultBufferSize()}
+ * changes pile up is cancelled with an {@link IllegalStateException}, since holding back the writers
+ * of the storage is not an option.
+ */
+final class StoragePublisher implements Flow.Publisher<StorageChange> {
+    private final StorageBase storage;
+    private final String prefix;
+    private final Executor executor;
+
+    StoragePublisher(@NotNull StorageBase storage, @NotNull String prefix, @NotNull Executor executor) {
+        this.storage = storage;
+        this.prefix = prefix;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super StorageChange> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        ChangeSubscription subscription = new ChangeSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.watch = storage.watch(prefix, subscription::offer);
+        if (subscription.cancelled) subscription.watch.close();
+    }
+
+    /**
+     * The subscription of a single subscriber. All signals to the subscriber are sent from
+     * {@link #drain()}, which never runs concurrently with itself.
+     */
+    private final class ChangeSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super StorageChange> subscriber;
+        private final Queue<StorageChange> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger buffered = new AtomicInteger();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private volatile StorageWatch watch;
+        private volatile Throwable failure;
+        private volatile boolean cancelled;
+        private boolean terminated;
+
+        private ChangeSubscription(@NotNull Flow.Subscriber<? super StorageChange> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failure = new IllegalArgumentException("Non-positive request of " + n + " changes");
+            } else {
+                requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            StorageWatch current = watch;
+            if (current != null) current.close();
+        }
+
+        private void offer(@NotNull StorageChange change) {
+            if (cancelled) return;
+            if (buffered.incrementAndGet() > Flow.defaultBufferSize()) {
+                failure = new IllegalStateException("Subscriber of changes to " + prefix + " cannot keep up");
+            } else {
+                queue.add(change);
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0) executor.execute(this::drain);
+        }
+
+        private void drain() {
+            int missed = 1;
+            while (true) {
+                if (!terminated && !cancelled) emit();
+                missed = pending.addAndGet(-missed);
+                if (missed == 0) return;
+            }
+        }
+
+        private void emit() {
+            Throwable error = failure;
+            if (error != null) {
+                terminated = true;
+                cancel();
+                queue.clear();
+                subscriber.onError(error);
+                return;
+            }
+
+            while (!cancelled && requested.get() > 0) {
+                StorageChange change = queue.poll();
+                if (change == null) return;
+                buffered.decrementAndGet();
+                if (requested.get() != Long.MAX_VALUE) requested.decrementAndGet();
+                subscriber.onNext(change);
+            }
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package org.leycm.storage;
+
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.moandjiezana.toml.Toml;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.DocumentEndEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.events.StreamStartEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Streams storage files straight into a storage tree.
+ * <p>
+ * JSON is read token by token with Gson's {@link JsonReader} and YAML event by event with
+ * SnakeYAML's parser, so the file is never held in memory as a whole and no intermediate object
+ * model is built. Binary files are decoded from a single read of the file. Every map of the resulting tree is created by the given node factory, which lets the
+ * tree be used by a storage without a further copy.
+ */
+final class StorageReader {
+    private static final LoaderOptions options = new LoaderOptions();
+    private static final Yaml yaml = new Yaml(options);
+
+    private StorageReader() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Reads a storage file into a new tree. A missing file results in an empty tree.
+     *
+     * @param file  The file to read
+     * @param type  The format of the file
+     * @param nodes The factory for the maps of the tree
+     * @return The root map of the tree
+     * @throws IOException if the file cannot be read or parsed
+     */
+    static @NotNull Map<String, Object> read(@NotNull Path file,
+                                             @NotNull StorageBase.Type type,
+                                             @NotNull Supplier<Map<String, Object>> nodes) throws IOException {
+        if (!Files.exists(file)) return nodes.get();
+        if (type == StorageBase.Type.BINARY) return BinaryFormat.decode(ByteBuffer.wrap(Files.readAllBytes(file)), nodes);
+
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(reader, type, nodes);
+        }
+    }
+
+    /**
+     * Reads a document of one of the text formats into a new tree.
+     * <p>
+     * Numbers are read deterministically regardless of the format: integral values become {@link Long}
+     * ({@link BigInteger} if they do not fit) and all other values become {@link Double}.
+     *
+     * @param reader The reader positioned before the document
+     * @param type   The format of the document
+     * @param nodes  The factory for the maps of the tree
+     * @return The root map of the tree
+     * @throws IOException if the document cannot be read or parsed
+     * @throws IllegalArgumentException if the type is not a text format
+     */
+    static @NotNull Map<String, Object> read(@NotNull Reader reader,
+                                             @NotNull StorageBase.Type type,
+                                             @NotNull Supplier<Map<String, Object>> nodes) throws IOException {
+        return switch (type) {
+            case JSON -> readJson(new JsonReader(reader), nodes);
+            case YAML -> readYaml(reader, nodes);
+            case TOML -> copy(new Toml().read(reader).toMap(), nodes);
+            case BINARY -> throw new IllegalArgumentException("Binary storages cannot be read as text");
+        };
+    }
+
+    /**
+     * Reads a JSON document whose root is an object.
+     *
+     * @param reader The reader positioned before the document
+     * @param nodes  The factory for the maps of the tree
+     * @return The root map
+     * @throws IOException if the document is malformed
+     */
+    private static @NotNull Map<String, Object> readJson(@NotNull JsonReader reader,
+                                                         @NotNull Supplier<Map<String, Object>> nodes) throws IOException {
+        reader.setStrictness(Strictness.LENIENT);
+        try {
+            reader.peek();
+        } catch (EOFException e) {
+            return nodes.get(); // empty document
+        }
+        return readJsonObject(reader, nodes);
+    }
+
+    private static @NotNull Map<String, Object> readJsonObject(@NotNull JsonReader reader,
+                                                               @NotNull Supplier<Map<String, Object>> nodes) throws IOException {
+        Map<String, Object> map = nodes.get();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            Object value = readJsonValue(reader, nodes);
+            if (value != null) map.put(key, value);
+        }
+        reader.endObject();
+        return map;
+    }
+
+    private static @Nullable Object readJsonValue(@NotNull JsonReader reader,
+                                                  @NotNull Supplier<Map<String, Object>> nodes) throws IOException {
+        return switch (reader.peek()) {
+            case BEGIN_OBJECT -> readJsonObject(reader, nodes);
+            case BEGIN_ARRAY -> {
+                List<Object> list = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    list.add(readJsonValue(reader, nodes));
+                }
+                reader.endArray();
+                yield list;
+            }
+            case STRING -> reader.nextString();
+            case NUMBER -> parseNumber(reader.nextString());
+            case BOOLEAN -> reader.nextBoolean();
+            case NULL -> {
+                reader.nextNull();
+                yield null;
+            }
+            default -> throw new IOException("Unexpected JSON token " + reader.peek() + " at " + reader.getPath());
+        };
+    }
+
+    /**
+     * Reads a YAML document whose root is a mapping.
+     * <p>
+     * Scalars are resolved and constructed exactly like {@link Yaml#load(Reader)} does, so YAML 1.1
+     * booleans such as {@code yes} and {@code on}, timestamps, binary values, merge keys ({@code <<})
+     * and anchors load as they did before files were streamed. An alias is replaced by a copy of the
+     * anchored value, so no map of the tree is shared between two keys. Since copies of nested aliases
+     * grow exponentially, aliases of collections are limited like in {@link Yaml#load(Reader)} by
+     * {@link LoaderOptions#getMaxAliasesForCollections()}, and the values copied for all aliases together
+     * by {@link LoaderOptions#getCodePointLimit()}, the most values a document without aliases could hold.
+     *
+     * @param reader The reader positioned before the document
+     * @param nodes  The factory for the maps of the tree
+     * @return The root map
+     * @throws IOException if the document is malformed or its root is not a mapping
+     */
+    private static @NotNull Map<String, Object> readYaml(@NotNull Reader reader,
+                                                         @NotNull Supplier<Map<String, Object>> nodes) throws IOException {
+        try {
+            YamlEvents events = new YamlEvents(yaml.parse(reader).iterator(), nodes);
+            events.expect(StreamStartEvent.class);
+            if (events.peek() instanceof StreamEndEvent) return nodes.get();
+
+            events.expect(DocumentStartEvent.class);
+            Event root = events.next();
+            Map<String, Object> map;
+            if (root instanceof MappingStartEvent start) {
+                map = events.readMapping(start);
+            } else if (root instanceof ScalarEvent scalar && events.construct(scalar) == null) {
+                map = nodes.get();
+            } else {
+                throw new IOException("Storage root must be a mapping, found " + root.getEventId());
+            }
+            events.expect(DocumentEndEvent.class);
+            if (!(events.next() instanceof StreamEndEvent)) throw new IOException("Storage file must contain a single YAML document");
+            return map;
+        } catch (YAMLException e) {
+            throw new IOException("Malformed YAML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Copies an already parsed tree into maps created by the node factory, dropping null values.
+     *
+     * @param source The parsed tree
+     * @param nodes  The factory for the maps of the tree
+     * @return The copied root map
+     */
+    private static @NotNull Map<String, Object> copy(@NotNull Map<?, ?> source,
+                                                     @NotNull Supplier<Map<String, Object>> nodes) {
+        Map<String, Object> map = nodes.get();
+        for (Map.Entry<?, ?> entry : source.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null) continue;
+            if (value instanceof Map<?, ?> nested) {
+                value = copy(nested, nodes);
+            } else if (value instanceof Number number) {
+                value = normalize(number);
+            }
+            map.put(String.valueOf(entry.getKey()), value);
+        }
+        return map;
+    }
+
+    /**
+     * Parses a JSON number literal into a {@link Long}, {@link BigInteger} or {@link Double}.
+     *
+     * @param literal The number literal
+     * @return The parsed number
+     */
+    private static @NotNull Number parseNumber(@NotNull String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E') return Double.parseDouble(literal);
+        }
+
+        try {
+            return Long.parseLong(literal);
+        } catch (NumberFormatException e) {
+            return new BigInteger(literal);
+        }
+    }
+
+    /**
+     * Widens a number of a parser specific type to {@link Long} or {@link Double}.
+     *
+     * @param number The parsed number
+     * @return The normalized number
+     */
+    static @NotNull Number normalize(@NotNull Number number) {
+        if (number instanceof Integer || number instanceof Short || number instanceof Byte) return number.longValue();
+        if (number instanceof Float) return number.doubleValue();
+        return number;
+    }
+
+    /**
+     * Builds a storage tree from the events of a YAML document.
+     */
+    private static final class YamlEvents {
+        private final Iterator<Event> events;
+        private final Supplier<Map<String, Object>> nodes;
+        private final Resolver resolver = new Resolver();
+        private final ScalarConstructor constructor = new ScalarConstructor();
+        private final Map<String, Object> anchors = new HashMap<>();
+        private int collectionAliases;
+        private long copiedValues;
+        private Event peeked;
+
+        private YamlEvents(@NotNull Iterator<Event> events, @NotNull Supplier<Map<String, Object>> nodes) {
+            this.events = events;
+            this.nodes = nodes;
+        }
+
+        private @NotNull Event peek() throws IOException {
+            if (peeked == null) {
+                if (!events.hasNext()) throw new IOException("Unexpected end of YAML document");
+                peeked = events.next();
+            }
+            return peeked;
+        }
+
+        private @NotNull Event next() throws IOException {
+            Event event = peek();
+            peeked = null;
+            return event;
+        }
+
+        private void expect(@NotNull Class<? extends Event> type) throws IOException {
+            Event event = next();
+            if (!type.isInstance(event)) throw new IOException("Unexpected YAML event " + event);
+        }
+
+        private @Nullable Object readValue(@NotNull Event event) throws IOException {
+            Object value;
+            if (event instanceof ScalarEvent scalar) {
+                value = construct(scalar);
+            } else if (event instanceof MappingStartEvent start) {
+                value = readMapping(start);
+            } else if (event instanceof SequenceStartEvent start) {
+                value = readSequence(start);
+            } else if (event instanceof AliasEvent alias) {
+                if (!anchors.containsKey(alias.getAnchor())) throw new IOException("Undefined YAML alias " + alias.getAnchor());
+                Object anchored = anchors.get(alias.getAnchor());
+                if ((anchored instanceof Map<?, ?> || anchored instanceof List<?>)
+                        && ++collectionAliases > options.getMaxAliasesForCollections()) {
+                    throw new IOException("Number of YAML aliases for collections exceeds the limit of "
+                            + options.getMaxAliasesForCollections());
+                }
+                return copyValue(anchored);
+            } else {
+                throw new IOException("Unexpected YAML event " + event);
+            }
+
+            String anchor = ((NodeEvent) event).getAnchor();
+            if (anchor != null) anchors.put(anchor, value);
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private @NotNull Map<String, Object> readMapping(@NotNull MappingStartEvent start) throws IOException {
+            Map<String, Object> map = nodes.get();
+            if (start.getAnchor() != null) anchors.put(start.getAnchor(), map);
+            List<Object> merged = new ArrayList<>();
+
+            while (!(peek() instanceof MappingEndEvent)) {
+                Event keyEvent = next();
+                if (keyEvent instanceof ScalarEvent key && tagOf(key).equals(Tag.MERGE)) {
+                    Object source = readValue(next());
+                    if (source instanceof List<?> list) merged.addAll(list);
+                    else merged.add(source);
+                    continue;
+                }
+
+                String key = String.valueOf(readValue(keyEvent));
+                Object value = readValue(next());
+                if (value != null) map.put(key, value);
+            }
+            next();
+
+            for (Object source : merged) {
+                if (!(source instanceof Map<?, ?> entries)) throw new IOException("YAML merge key must refer to mappings");
+                ((Map<String, Object>) entries).forEach(map::putIfAbsent);
+            }
+            return map;
+        }
+
+        private @NotNull List<Object> readSequence(@NotNull SequenceStartEvent start) throws IOException {
+            List<Object> list = new ArrayList<>();
+            if (start.getAnchor() != null) anchors.put(start.getAnchor(), list);
+            while (!(peek() instanceof SequenceEndEvent)) {
+                list.add(readValue(next()));
+            }
+            next();
+            return list;
+        }
+
+        private @Nullable Object construct(@NotNull ScalarEvent scalar) {
+            Object value = constructor.construct(new ScalarNode(tagOf(scalar), scalar.getValue(),
+                    scalar.getStartMark(), scalar.getEndMark(), scalar.getScalarStyle()));
+            return value instanceof Number number ? normalize(number) : value;
+        }
+
+        private @NotNull Tag tagOf(@NotNull ScalarEvent scalar) {
+            String tag = scalar.getTag();
+            if (tag == null || tag.equals("!")) {
+                return resolver.resolve(NodeId.scalar, scalar.getValue(), scalar.getImplicit().canOmitTagInPlainScalar());
+            }
+            return new Tag(tag);
+        }
+
+        private @Nullable Object copyValue(@Nullable Object value) throws IOException {
+            if (++copiedValues > options.getCodePointLimit()) {
+                throw new IOException("YAML aliases expand to more than " + options.getCodePointLimit() + " values");
+            }
+            if (value instanceof Map<?, ?> map) {
+                Map<String, Object> copy = nodes.get();
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    copy.put(String.valueOf(entry.getKey()), copyValue(entry.getValue()));
+                }
+                return copy;
+            }
+            if (value instanceof List<?> list) {
+                List<Object> copy = new ArrayList<>(list.size());
+                for (Object element : list) {
+                    copy.add(copyValue(element));
+                }
+                return copy;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Exposes the scalar construction of {@link SafeConstructor}, which {@link Yaml#load(Reader)} uses
+     * for the standard tags.
+     */
+    private static final class ScalarConstructor extends SafeConstructor {
+        private ScalarConstructor() {
+            super(options);
+        }
+
+        private @Nullable Object construct(@NotNull ScalarNode node) {
+            return constructObject(node);
+        }
+    }
+}
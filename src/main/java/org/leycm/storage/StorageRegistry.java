@@ -1,46 +1,146 @@
 package org.leycm.storage;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.moandjiezana.toml.Toml;
 import com.moandjiezana.toml.TomlWriter;
 import lombok.Getter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.yaml.snakeyaml.Yaml;
 
-import java.io.File;
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * A utility class that manages the registration, loading, reloading, and saving
- * of {@link StorageBase} instances. It supports JSON, YAML, and TOML file formats.
+ * of {@link StorageBase} instances. It supports JSON, YAML, TOML and binary file formats.
  * This class follows a singleton-like pattern for its static methods and maintains
  * a cache of loaded storage instances.
  */
 public final class StorageRegistry {
     private static final String DEFAULT_STORAGE_DIR = ".storage";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
 
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
     private static final Yaml yaml = new Yaml();
-    private static final Toml toml = new Toml();
     private static final TomlWriter tomlWriter = new TomlWriter();
 
     @Getter private static Logger logger;
     @Getter private static String storageDir = "";
     @Getter private static boolean isSetup;
 
+    @Getter private static volatile int backupCount = 0;
+    @Getter private static volatile long journalCompactionSize = 1024 * 1024;
+    @Getter private static volatile int shardCount = 16;
+
+    private static StorageWatcher watcher;
+    private static volatile StorageWriter writer;
+    private static volatile StorageWriter evictionWriter;
+    private static volatile StorageMetrics metrics;
+
+    private static final Map<String, StorageBase> digitalStorages = new ConcurrentHashMap<>();
+    private static final Cache<String, StorageBase> instances = CacheBuilder.newBuilder().weakValues().build();
+    private static final Map<String, CompletableFuture<StorageBase>> loading = new ConcurrentHashMap<>();
+    private static volatile Cache<String, StorageBase> fileStorages = newCache(0, null);
+
     /**
-     * A cache to store loaded {@link StorageBase} instances, keyed by their full file path.
+     * A live view of all loaded {@link StorageBase} instances, keyed by their full file path.
+     * <p>
+     * File storages are held in a cache that can be bounded with {@link #setCacheLimits(long, Duration)};
+     * digital storages are never evicted since their data exists nowhere else.
+     * <p>
+     * {@link Map#put put} registers a storage under the given key, {@link Map#remove remove} and
+     * {@link Map#clear clear} drop storages from the registry without saving them, so their next
+     * registration loads them again. The key, value and entry sets are read-only.
      */
-    public static final Map<String, StorageBase> storageCash = new HashMap<>();
+    public static final Map<String, StorageBase> storageCash = new AbstractMap<>() {
+        @Override
+        public StorageBase get(Object key) {
+            StorageBase storage = digitalStorages.get(key);
+            return storage != null ? storage : fileStorages.asMap().get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public StorageBase put(String key, StorageBase storage) {
+            StorageBase previous = get(key);
+            if (previous == storage) return previous;
+
+            if (previous != null) remove(key);
+            cash(key, storage);
+            if (watcher != null) watcher.track(storage);
+            return previous;
+        }
+
+        @Override
+        public StorageBase remove(Object key) {
+            StorageBase storage = digitalStorages.remove(key);
+            if (storage != null) return storage;
+
+            // an explicit removal is not an eviction, so the storage is not saved
+            storage = fileStorages.asMap().remove(key);
+            if (storage != null) {
+                instances.asMap().remove(key, storage);
+                if (watcher != null) watcher.untrack(storage);
+            }
+            return storage;
+        }
+
+        @Override
+        public void clear() {
+            for (Object key : keySet().toArray()) {
+                remove(key);
+            }
+        }
+
+        @Override
+        public @NotNull Set<Entry<String, StorageBase>> entrySet() {
+            return Sets.union(digitalStorages.entrySet(), fileStorages.asMap().entrySet());
+        }
+    };
 
     /**
      * Ensures that the {@link #setup(String, Logger)} method has been called before
@@ -87,10 +187,14 @@ public final class StorageRegistry {
      * Registers and loads a storage instance of the specified class. If an instance for the given
      * file already exists in the cache, it is retrieved from the cache; otherwise, a new instance
      * is loaded from the file.
+     * <p>
+     * Registration is thread-safe: each file is loaded at most once at a time, and threads that
+     * register a file while it is being loaded wait for that load and receive the same instance.
      *
      * @param file           The name of the storage file (without the extension).
      * @param type           The {@link StorageBase.Type} of the storage file (e.g., JSON, YAML, TOML).
      * @param storageClass   The class of the {@link StorageBase} to be registered and loaded.
+     * @param options        The {@link StorageBase.Option}s to enable if a new instance is loaded.
      * @param <T>            The generic type of the {@link StorageBase}.
      * @return The loaded or cached instance of the specified {@link StorageBase}.
      * @throws IllegalStateException if the registry has not been set up.
@@ -99,30 +203,288 @@ public final class StorageRegistry {
     public static <T extends StorageBase> @NotNull T register(@NotNull String file,
                                                               @NotNull StorageBase.Type type,
                                                               boolean digital,
-                                                              @NotNull Class<T> storageClass) {
+                                                              @NotNull Class<T> storageClass,
+                                                              StorageBase.Option @NotNull ... options) {
+        requireSetup();
+        String fullFile = fullPathOf(file, digital);
+        StorageBase cached = lookup(fullFile, digital);
+        if (cached == null) cached = join(loadOnce(fullFile, type, digital, storageClass, null, options));
+        return fromCache(fullFile, cached, storageClass);
+    }
+
+    /**
+     * Registers a storage like {@link #register(String, StorageBase.Type, boolean, Class, StorageBase.Option...)}
+     * without blocking the calling thread. A storage that is not cached yet is loaded on the
+     * {@link ForkJoinPool#commonPool() common pool}.
+     *
+     * @param file           The name of the storage file (without the extension).
+     * @param type           The {@link StorageBase.Type} of the storage file (e.g., JSON, YAML, TOML).
+     * @param digital        The storage file state digital or not.
+     * @param storageClass   The class of the {@link StorageBase} to be registered and loaded.
+     * @param options        The {@link StorageBase.Option}s to enable if a new instance is loaded.
+     * @param <T>            The generic type of the {@link StorageBase}.
+     * @return A future that completes with the loaded or cached storage, or exceptionally if it cannot be loaded.
+     * @throws IllegalStateException if the registry has not been set up.
+     */
+    public static <T extends StorageBase> @NotNull CompletableFuture<T> registerAsync(@NotNull String file,
+                                                                                      @NotNull StorageBase.Type type,
+                                                                                      boolean digital,
+                                                                                      @NotNull Class<T> storageClass,
+                                                                                      StorageBase.Option @NotNull ... options) {
+        return registerAsync(file, type, digital, storageClass, ForkJoinPool.commonPool(), options);
+    }
+
+    /**
+     * Registers a storage like {@link #register(String, StorageBase.Type, boolean, Class, StorageBase.Option...)}
+     * without blocking the calling thread. A storage that is not cached yet is loaded on the given executor;
+     * if it is already being loaded, the returned future completes with that load.
+     *
+     * @param file           The name of the storage file (without the extension).
+     * @param type           The {@link StorageBase.Type} of the storage file (e.g., JSON, YAML, TOML).
+     * @param digital        The storage file state digital or not.
+     * @param storageClass   The class of the {@link StorageBase} to be registered and loaded.
+     * @param executor       The executor that loads the storage.
+     * @param options        The {@link StorageBase.Option}s to enable if a new instance is loaded.
+     * @param <T>            The generic type of the {@link StorageBase}.
+     * @return A future that completes with the loaded or cached storage, or exceptionally if it cannot be loaded.
+     * @throws IllegalStateException if the registry has not been set up.
+     */
+    public static <T extends StorageBase> @NotNull CompletableFuture<T> registerAsync(@NotNull String file,
+                                                                                      @NotNull StorageBase.Type type,
+                                                                                      boolean digital,
+                                                                                      @NotNull Class<T> storageClass,
+                                                                                      @NotNull Executor executor,
+                                                                                      StorageBase.Option @NotNull ... options) {
+        requireSetup();
+        String fullFile = fullPathOf(file, digital);
+        StorageBase cached = lookup(fullFile, digital);
+        CompletableFuture<StorageBase> future = cached != null
+                ? CompletableFuture.completedFuture(cached)
+                : loadOnce(fullFile, type, digital, storageClass, executor, options);
+        return future.thenApply(storage -> fromCache(fullFile, storage, storageClass));
+    }
+
+    /**
+     * Loads a storage unless a load of the same file is already in flight, in which case the future
+     * of that load is returned. A storage evicted from the cache that is still referenced elsewhere is
+     * taken back into the cache instead of being loaded again, so there is never more than one
+     * instance per file.
+     *
+     * @param file           The full file path of the storage.
+     * @param type           The {@link StorageBase.Type} of the storage file.
+     * @param digital        Whether the storage is digital.
+     * @param storageClass   The class of the {@link StorageBase} to be loaded.
+     * @param executor       The executor that performs the load, or null to load on the calling thread.
+     * @param options        The {@link StorageBase.Option}s to enable.
+     * @return A future that completes with the storage.
+     */
+    private static @NotNull CompletableFuture<StorageBase> loadOnce(@NotNull String file,
+                                                                    @NotNull StorageBase.Type type,
+                                                                    boolean digital,
+                                                                    @NotNull Class<? extends StorageBase> storageClass,
+                                                                    @Nullable Executor executor,
+                                                                    StorageBase.Option @NotNull ... options) {
+        CompletableFuture<StorageBase> created = new CompletableFuture<>();
+        CompletableFuture<StorageBase> inFlight = loading.putIfAbsent(file, created);
+        if (inFlight != null) return inFlight;
+
+        Runnable task = () -> {
+            try {
+                StorageBase storage = storageCash.get(file);
+                if (storage == null && !digital) storage = revive(file);
+                created.complete(storage != null ? storage : load(file, type, digital, storageClass, options));
+            } catch (Throwable e) {
+                created.completeExceptionally(e);
+            } finally {
+                loading.remove(file, created);
+            }
+        };
+
+        if (executor == null) {
+            task.run();
+        } else {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                loading.remove(file, created);
+                created.completeExceptionally(e);
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Waits for a load started by {@link #loadOnce}, rethrowing its failure unwrapped.
+     *
+     * @param future The load
+     * @return The loaded storage
+     */
+    private static @NotNull StorageBase join(@NotNull CompletableFuture<StorageBase> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Loads all file storages found in a directory concurrently on a pool with one thread per
+     * available processor, see {@link #preloadAll(String, Class, Executor, StorageBase.Option...)}.
+     *
+     * @param directory      The directory relative to the storage root, empty for the whole root.
+     * @param storageClass   The class of the {@link StorageBase} to create for every file.
+     * @param options        The {@link StorageBase.Option}s to enable for every storage.
+     * @param <T>            The generic type of the {@link StorageBase}.
+     * @return A future that completes with the loaded storages, keyed by the name used to register them.
+     * @throws IllegalStateException if the registry has not been set up.
+     */
+    public static <T extends StorageBase> @NotNull CompletableFuture<Map<String, T>> preloadAll(@NotNull String directory,
+                                                                                               @NotNull Class<T> storageClass,
+                                                                                               StorageBase.Option @NotNull ... options) {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "the-frame-storage-preloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            return preloadAll(directory, storageClass, executor, options);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Loads all file storages found in a directory concurrently and registers them, so later calls of
+     * {@link StorageBase#of(String, StorageBase.Type, Class, StorageBase.Option...)} are served from the cache.
+     * <p>
+     * The directory is searched recursively for files with the extension of a {@link StorageBase.Type};
+     * the type of each storage is taken from its extension. Journals, backups, temporary files and the
+     * shard files of {@link StorageBase.Option#SHARDED} storages are skipped, as are files whose storage
+     * is already loaded. If a storage exists in several formats, only the first one found is loaded.
+     * Every file is read and parsed in its own task on the given executor; a file that fails to load
+     * is logged and left out of the result.
+     *
+     * @param directory      The directory relative to the storage root, empty for the whole root.
+     * @param storageClass   The class of the {@link StorageBase} to create for every file.
+     * @param executor       The executor that loads the files.
+     * @param options        The {@link StorageBase.Option}s to enable for every storage.
+     * @param <T>            The generic type of the {@link StorageBase}.
+     * @return A future that completes with the loaded storages, keyed by the name used to register them.
+     * @throws IllegalStateException if the registry has not been set up.
+     */
+    public static <T extends StorageBase> @NotNull CompletableFuture<Map<String, T>> preloadAll(@NotNull String directory,
+                                                                                               @NotNull Class<T> storageClass,
+                                                                                               @NotNull Executor executor,
+                                                                                               StorageBase.Option @NotNull ... options) {
         requireSetup();
-        String fullFile = digital ? storageDir + "/" + file : ".digital/" + file;
-        return storageCash.containsKey(fullFile) ? fromCache(fullFile, storageClass) : load(fullFile, type, digital, storageClass);
+        Path root = Path.of(fullPathOf("", false));
+        Path start = root.resolve(directory);
+        if (!Files.isDirectory(start)) return CompletableFuture.completedFuture(Map.of());
+
+        Map<String, StorageBase.Type> found = new LinkedHashMap<>();
+        try (Stream<Path> files = Files.walk(start)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file) || StorageShards.isShardFile(file)) continue;
+
+                String name = root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                int dot = name.lastIndexOf('.');
+                StorageBase.Type type = dot < 0 ? null : typeOf(name.substring(dot + 1));
+                if (type == null) continue;
+
+                String storage = name.substring(0, dot);
+                if (found.putIfAbsent(storage, type) != null) {
+                    logger.warning("Skipping " + file + ", storage " + storage + " exists in several formats");
+                }
+            }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        Map<String, T> loaded = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(found.size());
+        found.forEach((name, type) -> {
+            if (storageCash.containsKey(fullPathOf(name, false))) return;
+            tasks.add(CompletableFuture.runAsync(() -> {
+                try {
+                    loaded.put(name, register(name, type, false, storageClass, options));
+                } catch (RuntimeException e) {
+                    logger.severe("Failed to preload storage " + name + ": " + e.getMessage());
+                }
+            }, executor));
+        });
+
+        return CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).thenApply(done -> loaded);
+    }
+
+    /**
+     * Returns the full file path under which a storage is stored and cached. File storages live in the
+     * {@link #getStorageDir() storage directory}; digital storages exist only in memory and are cached
+     * under a separate {@code .digital/} prefix, so they never collide with a file of the same name.
+     *
+     * @param file    The name of the storage file (without the extension).
+     * @param digital Whether the storage is digital.
+     * @return The full file path without the extension.
+     */
+    private static @NotNull String fullPathOf(@NotNull String file, boolean digital) {
+        return digital ? ".digital/" + file : storageDir + "/" + file;
+    }
+
+    /**
+     * Returns the storage type of a file extension.
+     *
+     * @param extension The file extension without the dot.
+     * @return The type, or null if no type uses the extension.
+     */
+    private static @Nullable StorageBase.Type typeOf(@NotNull String extension) {
+        for (StorageBase.Type type : StorageBase.Type.values()) {
+            if (type.getId().equals(extension)) return type;
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a cached storage.
+     *
+     * @param file    The full file path of the storage
+     * @param digital Whether the storage is digital
+     * @return The cached storage, or null if it is not cached
+     */
+    private static @Nullable StorageBase lookup(@NotNull String file, boolean digital) {
+        return digital ? digitalStorages.get(file) : fileStorages.getIfPresent(file);
     }
 
     /**
-     * Retrieves a {@link StorageBase} instance from the cache.
+     * Takes a file storage that was evicted from the cache back into it, if it is still referenced
+     * elsewhere. Must only be called by the load of the file, see {@link #loadOnce}.
+     *
+     * @param file The full file path of the storage
+     * @return The evicted storage, or null if it was garbage collected
+     */
+    private static @Nullable StorageBase revive(@NotNull String file) {
+        StorageBase storage = instances.getIfPresent(file);
+        if (storage == null) return null;
+
+        fileStorages.put(file, storage);
+        if (watcher != null) watcher.track(storage);
+        return storage;
+    }
+
+    /**
+     * Checks the class of a {@link StorageBase} instance from the cache.
      *
      * @param file           The full file path (including the configuration directory and file name)
      * of the cached storage.
+     * @param cached         The cached storage.
      * @param storageClass   The expected class of the cached {@link StorageBase}.
      * @param <T>            The generic type of the {@link StorageBase}.
      * @return The cached instance of the specified {@link StorageBase}.
-     * @throws IllegalStateException if no cached storage is found for the given file or if the
-     * cached storage is not of the expected type.
+     * @throws IllegalStateException if the cached storage is not of the expected type.
      */
     private static <T extends StorageBase> @NotNull T fromCache(@NotNull String file,
+                                                                @NotNull StorageBase cached,
                                                                 @NotNull Class<T> storageClass) {
-        StorageBase cached = storageCash.get(file);
-        if (cached == null) {
-            throw new IllegalStateException("No cached storage found for file: " + file);
-        }
-
         if (!storageClass.isInstance(cached)) {
             throw new IllegalStateException("Cached storage for '" + file + "' is not of expected type " + storageClass.getName());
         }
@@ -137,6 +499,7 @@ public final class StorageRegistry {
      * of the storage file (without the extension).
      * @param type           The {@link StorageBase.Type} of the storage file.
      * @param storageClass   The class of the {@link StorageBase} to be loaded.
+     * @param options        The {@link StorageBase.Option}s to enable.
      * @param <T>            The generic type of the {@link StorageBase}.
      * @return The newly loaded instance of the specified {@link StorageBase}.
      * @throws RuntimeException if an error occurs during the creation or loading of the storage instance.
@@ -144,7 +507,8 @@ public final class StorageRegistry {
     private static <T extends StorageBase> @NotNull T load(@NotNull String file,
                                                            @NotNull StorageBase.Type type,
                                                            boolean digital,
-                                                           @NotNull Class<T> storageClass) {
+                                                           @NotNull Class<T> storageClass,
+                                                           StorageBase.Option @NotNull ... options) {
         try {
             T storage = storageClass.getDeclaredConstructor().newInstance();
 
@@ -152,86 +516,674 @@ public final class StorageRegistry {
             storage.type = type;
             storage.isDigital = digital;
 
+            Set<StorageBase.Option> enabled = EnumSet.noneOf(StorageBase.Option.class);
+            enabled.addAll(Arrays.asList(options));
+            if (enabled.contains(StorageBase.Option.MAPPED) && type != StorageBase.Type.BINARY) {
+                throw new IllegalArgumentException("Mapped storages require the BINARY type");
+            }
+            if (enabled.contains(StorageBase.Option.JOURNALED) && (digital || enabled.contains(StorageBase.Option.MAPPED))) {
+                throw new IllegalArgumentException("Journaled storages must be writable file storages");
+            }
+            if (enabled.contains(StorageBase.Option.SHARDED) && (digital || enabled.contains(StorageBase.Option.MAPPED)
+                    || enabled.contains(StorageBase.Option.JOURNALED))) {
+                throw new IllegalArgumentException("Sharded storages must be writable file storages without a journal");
+            }
+            storage.configure(enabled);
+            if (enabled.contains(StorageBase.Option.JOURNALED)) {
+                storage.journal = new StorageJournal(storage, journalPathOf(storage));
+            }
+            if (enabled.contains(StorageBase.Option.SHARDED)) {
+                storage.shards = StorageShards.open(Path.of(file).toAbsolutePath(), type.getId(), shardCount);
+            }
+
             if(!digital) reload(storage);
+            storage.callAdapter();
 
             cash(file, storage);
-            storage.callAdapter();
+            if (watcher != null) watcher.track(storage);
 
             return storage;
         } catch (InstantiationException | IllegalAccessException |
                  NoSuchMethodException | InvocationTargetException e) {
             throw new RuntimeException("Failed to create Storage instance", e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
     }
 
     /**
      * Reloads the data from the storage file into the provided {@link StorageBase} instance.
+     * The file is streamed directly into a new tree, which then replaces the current data of
+     * the storage in a single atomic swap.
      *
      * @param storage The {@link StorageBase} instance to be reloaded.
      * @throws IllegalStateException if the registry has not been set up.
      * @throws RuntimeException      if an I/O error occurs while reading the storage file.
      */
-    @SuppressWarnings("unchecked")
     public static void reload(@NotNull StorageBase storage) {
         requireSetup();
+        if (storage.shards != null) {
+            reloadShards(storage);
+            return;
+        }
+
+        try {
+            Path filePath = pathOf(storage);
+            storage.fileStamp = stampOf(filePath);
 
+            if (storage.isReadOnly()) {
+                storage.remap(MappedTree.open(filePath));
+                return;
+            }
+
+            Map<String, Object> tree = readFile(filePath, storage.type, storage::newNode);
+            if (storage.journal != null) storage.journal.replay(tree, storage::newNode);
+            storage.replaceTree(tree);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reloads a storage whose file was changed by another program, see {@link StorageWatcher}.
+     * Unlike {@link #reload(StorageBase)}, unsaved changes are never discarded: the storage is left
+     * unchanged while it has unsaved changes or an open transaction.
+     *
+     * @param storage The storage to reload, which must not be sharded
+     * @return true if the storage was reloaded, false if it was left unchanged
+     * @throws RuntimeException if an I/O error occurs while reading the storage file.
+     */
+    static boolean reloadUnlessModified(@NotNull StorageBase storage) {
         try {
-            Path filePath = Path.of(storage.file + "." + storage.type.getId());
-            String fileContent = Files.exists(filePath) ? Files.readString(filePath) : "{}";
+            Path filePath = pathOf(storage);
+            long stamp = stampOf(filePath);
 
-            switch (storage.type) {
-                case JSON -> storage.init.putAll(gson.fromJson(fileContent, Map.class));
-                case YAML -> storage.init.putAll(yaml.load(fileContent));
-                case TOML -> storage.init.putAll(toml.read(fileContent).toMap());
+            if (storage.isReadOnly()) {
+                storage.fileStamp = stamp;
+                storage.remap(MappedTree.open(filePath));
+                return true;
             }
+            if (storage.dirty) return false;
 
+            Map<String, Object> tree = readFile(filePath, storage.type, storage::newNode);
+            if (storage.journal != null) storage.journal.replay(tree, storage::newNode);
+            if (!storage.replaceTree(tree, false)) return false;
+            storage.fileStamp = stamp;
+            return true;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Reads a storage file like {@link StorageReader#read(Path, StorageBase.Type, Supplier)},
+     * reporting the parse time and file size to the installed {@link StorageMetrics}.
+     *
+     * @param file  The file to read
+     * @param type  The format of the file
+     * @param nodes The factory for the maps of the tree
+     * @return The root map of the tree
+     * @throws IOException if the file cannot be read or parsed
+     */
+    private static @NotNull Map<String, Object> readFile(@NotNull Path file,
+                                                         @NotNull StorageBase.Type type,
+                                                         @NotNull Supplier<Map<String, Object>> nodes) throws IOException {
+        StorageMetrics recorder = metrics;
+        if (recorder == null || !Files.exists(file)) return StorageReader.read(file, type, nodes);
+
+        long start = System.nanoTime();
+        Map<String, Object> tree = StorageReader.read(file, type, nodes);
+        recorder.parsed(type, Files.size(file), System.nanoTime() - start);
+        return tree;
+    }
+
     /**
      * Saves the data from the provided {@link StorageBase} instance to its corresponding file.
+     * <p>
+     * The storage is only marked as saved once its file has been replaced. If writing fails, it
+     * stays dirty, so the next save writes it again.
      *
      * @param storage The {@link StorageBase} instance to be saved.
      * @throws IllegalStateException if the registry has not been set up.
+     * @throws UncheckedIOException  if the file cannot be written.
      */
     public static void save(@NotNull StorageBase storage) {
         requireSetup();
-        File file = new File(storage.file + "." + storage.type.getId()); // e.g., "config.json"
+        if (storage.journal != null) {
+            saveJournaled(storage);
+            return;
+        }
 
-        File parentDir = file.getParentFile();
-        if (parentDir != null && !parentDir.exists()) {
-            if (!parentDir.mkdirs()) {
-                logger.severe("Failed to create directories: " + parentDir.getAbsolutePath());
-                return;
+        synchronized (storage.saveLock) {
+            storage.dirty = false;
+            try {
+                if (storage.shards != null) {
+                    writeShards(storage);
+                } else {
+                    write(storage);
+                }
+            } catch (RuntimeException e) {
+                storage.dirty = true;
+                throw e;
             }
         }
+    }
+
+    /**
+     * Serializes the given storage to its file on the calling thread.
+     * <p>
+     * The data is written to a temporary file in the same directory, forced to disk and then
+     * moved over the target in a single atomic rename, so the target is never truncated or
+     * partially written and other processes always read either the old or the new content.
+     * The storage lock is held while the tree is serialized, since the maps of a storage without
+     * {@link StorageBase.Option#CONCURRENT} are modified in place, so writers wait for the
+     * serialization but not for the file to be forced to disk.
+     *
+     * @param storage The {@link StorageBase} instance to be written.
+     * @throws UncheckedIOException if the file cannot be written.
+     */
+    private static void write(@NotNull StorageBase storage) {
+        Path target = pathOf(storage).toAbsolutePath();
+        try {
+            writeFile(target, storage.init, storage.type, storage.lock);
+            storage.fileStamp = stampOf(target);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save storage " + target + ": " + e.getMessage(), e);
+        }
+    }
 
-        switch (storage.type) {
-            case JSON -> {
-                try (Writer writer = new FileWriter(file)) {
-                    gson.toJson(storage.init, writer);
-                } catch (IOException e) {
-                    logger.severe(e.getMessage());
+    /**
+     * Atomically replaces a file with the serialized form of a storage tree,
+     * see {@link #write(StorageBase)}.
+     *
+     * @param target The file to write.
+     * @param map    The tree to serialize.
+     * @param type   The format to write.
+     * @param lock   The lock to hold while the tree is serialized, or null if the caller keeps the
+     *               tree from being modified.
+     * @throws IOException if the file cannot be written; the target is left untouched in that case.
+     */
+    private static void writeFile(@NotNull Path target,
+                                  @NotNull Map<String, Object> map,
+                                  @NotNull StorageBase.Type type,
+                                  @Nullable ReentrantLock lock) throws IOException {
+        Path parentDir = target.getParent();
+        Files.createDirectories(parentDir);
+
+        Path temp = createTempFile(target);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                StorageMetrics recorder = metrics;
+                if (lock != null) lock.lock();
+                try {
+                    long start = System.nanoTime();
+                    serialize(map, type, channel);
+                    if (recorder != null) recorder.serialized(type, channel.position(), System.nanoTime() - start);
+                } finally {
+                    if (lock != null) lock.unlock();
                 }
+                channel.force(true);
             }
-            case YAML -> {
-                try (Writer writer = new FileWriter(file)) {
-                    yaml.dump(storage.init, writer);
-                } catch (IOException e) {
-                    logger.severe(e.getMessage());
-                }
+
+            rotateBackups(target);
+            moveAtomically(temp, target);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // the temporary file is left behind, the target is untouched
             }
-            case TOML -> {
-                TomlWriter tomlWriter = new TomlWriter();
-                try {
-                    tomlWriter.write(storage.init, file);
-                } catch (IOException e) {
-                    logger.severe(e.getMessage());
-                }
+            throw e;
+        }
+    }
+
+    /**
+     * Serializes a storage tree in the given format into a channel.
+     *
+     * @param map     The tree to serialize.
+     * @param type    The format to write.
+     * @param channel The channel to write to.
+     * @throws IOException if writing fails.
+     */
+    private static void serialize(@NotNull Map<String, Object> map,
+                                  @NotNull StorageBase.Type type,
+                                  @NotNull FileChannel channel) throws IOException {
+        if (type == StorageBase.Type.BINARY) {
+            ByteBuffer buffer = ByteBuffer.wrap(BinaryFormat.encode(map));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return;
+        }
+
+        Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        switch (type) {
+            case JSON -> gson.toJson(map, writer);
+            case YAML -> yaml.dump(map, writer);
+            case TOML -> tomlWriter.write(map, writer);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Shifts the rotating backups of the given file by one and stores the current content
+     * of the file as the newest backup ({@code <file>.bak.1}).
+     * Does nothing if backups are disabled or the file does not exist yet.
+     *
+     * @param target The file that is about to be replaced.
+     * @throws IOException if a backup cannot be created.
+     */
+    private static void rotateBackups(@NotNull Path target) throws IOException {
+        if (backupCount <= 0 || !Files.exists(target)) return;
+
+        String name = target.getFileName().toString();
+        Files.deleteIfExists(target.resolveSibling(name + ".bak." + backupCount));
+        for (int i = backupCount - 1; i >= 1; i--) {
+            Path backup = target.resolveSibling(name + ".bak." + i);
+            if (Files.exists(backup)) {
+                Files.move(backup, target.resolveSibling(name + ".bak." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        Path newest = target.resolveSibling(name + ".bak.1");
+        try {
+            Files.createLink(newest, target);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(target, newest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Creates an empty temporary file next to the target that will later be moved over it.
+     * <p>
+     * Unlike {@link Files#createTempFile}, which restricts the file to its owner, the file is created
+     * with the default permissions of the process. If the target already exists, its POSIX permissions
+     * are copied, so replacing the target does not change its mode.
+     *
+     * @param target The file the temporary file will replace.
+     * @return The temporary file.
+     * @throws IOException if the file cannot be created.
+     */
+    static @NotNull Path createTempFile(@NotNull Path target) throws IOException {
+        String prefix = target.getFileName().toString() + ".";
+        while (true) {
+            Path temp = target.resolveSibling(prefix + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                Files.newByteChannel(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+            } catch (FileAlreadyExistsException e) {
+                continue;
+            }
+
+            try {
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+            } catch (NoSuchFileException | UnsupportedOperationException ignored) {
+                // a new target or a file system without POSIX permissions keeps the defaults
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            return temp;
+        }
+    }
+
+    /**
+     * Moves a file over the target with an atomic rename, falling back to a plain replacing
+     * move on file systems that do not support atomic moves.
+     *
+     * @param source The fully written source file.
+     * @param target The file to replace.
+     * @throws IOException if the file cannot be moved.
+     */
+    static void moveAtomically(@NotNull Path source, @NotNull Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Saves a {@link StorageBase.Option#JOURNALED} storage. If all changes are in the journal, it is
+     * only synced to disk; otherwise, e.g. after a {@link StorageBase#fromString(String)}, a complete
+     * snapshot is written.
+     *
+     * @param storage The storage to save
+     */
+    private static void saveJournaled(@NotNull StorageBase storage) {
+        if (storage.dirty || !Files.exists(pathOf(storage))) {
+            compact(storage);
+            return;
+        }
+
+        storage.lock.lock();
+        try {
+            storage.journal.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync storage journal of " + storage.file + ": " + e.getMessage(), e);
+        } finally {
+            storage.lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a complete snapshot of a {@link StorageBase.Option#JOURNALED} storage and drops the
+     * journal records it contains.
+     * <p>
+     * The storage lock is held for the whole compaction, so writers wait for it while readers
+     * continue. This keeps the snapshot and the journal position consistent without copying the tree.
+     *
+     * @param storage The storage to compact
+     * @throws UncheckedIOException if the snapshot cannot be written; the journal is kept in that case
+     */
+    static void compact(@NotNull StorageBase storage) {
+        Path target = pathOf(storage).toAbsolutePath();
+
+        storage.lock.lock();
+        try {
+            long position = storage.journal.size();
+            storage.dirty = false;
+            writeFile(target, storage.init, storage.type, null);
+            storage.fileStamp = stampOf(target);
+            storage.journal.discard(position);
+        } catch (IOException e) {
+            storage.dirty = true;
+            throw new UncheckedIOException("Failed to compact storage " + target + ": " + e.getMessage(), e);
+        } finally {
+            storage.lock.unlock();
+        }
+    }
+
+    /**
+     * Reads one shard file of a {@link StorageBase.Option#SHARDED} storage.
+     *
+     * @param storage The storage
+     * @param shards  The shards of the storage
+     * @param shard   The index of the shard
+     * @return The top-level entries of the shard
+     * @throws RuntimeException if the shard file cannot be read
+     */
+    static @NotNull Map<String, Object> readShard(@NotNull StorageBase storage, @NotNull StorageShards shards, int shard) {
+        try {
+            return readFile(shards.pathOf(shard), storage.type, storage::newNode);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reloads the shards of a {@link StorageBase.Option#SHARDED} storage that are currently loaded
+     * and publishes them as the new tree. Shards that were never accessed stay unloaded.
+     * <p>
+     * The storage lock is held while the shards are read, so no shard is loaded into the old tree
+     * in the meantime. Listeners and watches are notified after the lock is released.
+     *
+     * @param storage The storage to reload
+     */
+    private static void reloadShards(@NotNull StorageBase storage) {
+        StorageShards shards = storage.shards;
+
+        Map<String, Object> tree = storage.newNode();
+        Map<String, Object> previous;
+        storage.lock.lock();
+        try {
+            for (int shard = 0; shard < shards.count(); shard++) {
+                shards.takeDirty(shard);
+                if (shards.isLoaded(shard)) tree.putAll(readShard(storage, shards, shard));
+            }
+            previous = storage.swapTree(tree, storage.indexOf(tree));
+        } finally {
+            storage.release();
+        }
+        storage.notifyReplaced(previous, tree);
+    }
+
+    /**
+     * Writes the shards of a {@link StorageBase.Option#SHARDED} storage that were modified since their
+     * last save, each atomically like {@link #write(StorageBase)}. A shard that fails to be written
+     * stays dirty and is written again by the next save; the other shards are still written.
+     *
+     * @param storage The storage to write
+     * @throws UncheckedIOException if any shard cannot be written
+     */
+    private static void writeShards(@NotNull StorageBase storage) {
+        StorageShards shards = storage.shards;
+        List<Map<String, Object>> contents = new ArrayList<>(shards.count());
+        boolean modified = false;
+        for (int shard = 0; shard < shards.count(); shard++) {
+            boolean dirty = shards.takeDirty(shard);
+            contents.add(dirty ? new LinkedHashMap<>() : null);
+            modified |= dirty;
+        }
+        if (!modified) return;
+
+        storage.lock.lock();
+        try {
+            for (Map.Entry<String, Object> entry : storage.init.entrySet()) {
+                Map<String, Object> content = contents.get(shards.shardOf(entry.getKey()));
+                if (content != null) content.put(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            storage.lock.unlock();
+        }
+
+        UncheckedIOException failure = null;
+        for (int shard = 0; shard < contents.size(); shard++) {
+            Map<String, Object> content = contents.get(shard);
+            if (content == null) continue;
+            Path target = shards.pathOf(shard);
+            try {
+                writeFile(target, content, storage.type, storage.lock);
+            } catch (IOException e) {
+                shards.markDirty(shard);
+                UncheckedIOException error = new UncheckedIOException("Failed to save storage shard " + target + ": " + e.getMessage(), e);
+                if (failure == null) failure = error;
+                else failure.addSuppressed(error);
             }
         }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Sets the number of files a {@link StorageBase.Option#SHARDED} storage spreads its keys over.
+     * Only applies to storages without existing shard files; existing storages keep the number of
+     * shards they were written with. Defaults to 16.
+     *
+     * @param count The number of shards
+     * @throws IllegalArgumentException if the count is not positive
+     */
+    public static void setShardCount(int count) {
+        if (count <= 0) throw new IllegalArgumentException("Shard count must be positive");
+        shardCount = count;
+    }
+
+    /**
+     * Sets the journal size after which a {@link StorageBase.Option#JOURNALED} storage is compacted
+     * into a new snapshot in the background. Defaults to 1 MiB.
+     *
+     * @param bytes The compaction threshold in bytes
+     * @throws IllegalArgumentException if the size is not positive
+     */
+    public static void setJournalCompactionSize(long bytes) {
+        if (bytes <= 0) throw new IllegalArgumentException("Journal compaction size must be positive");
+        journalCompactionSize = bytes;
+    }
+
+    /**
+     * Sets how many previous versions of a file are kept as rotating backups
+     * ({@code <file>.bak.1} being the newest) whenever a storage is saved.
+     * Backups are disabled by default.
+     *
+     * @param count The number of backups to keep, 0 to disable backups.
+     * @throws IllegalArgumentException if the count is negative.
+     */
+    public static void setBackupCount(int count) {
+        if (count < 0) throw new IllegalArgumentException("Backup count must not be negative");
+        backupCount = count;
+    }
+
+    /**
+     * Enables write-behind: {@link StorageBase#save()} no longer writes on the calling thread
+     * but hands the storage to a single background writer.
+     * <p>
+     * All saves of a storage requested within {@code window} after the first one are merged into
+     * a single write, and storages without changes since their last save are not written at all.
+     * Use {@link StorageBase#flush()} or {@link #flush()} to force pending writes. A shutdown hook
+     * drains all pending writes when the JVM exits.
+     *
+     * @param window The time to collect saves of a storage before it is written.
+     * @throws IllegalStateException if the registry has not been set up or write-behind is already enabled.
+     */
+    public static synchronized void enableWriteBehind(@NotNull Duration window) {
+        requireSetup();
+        if (writer != null) throw new IllegalStateException("Write-behind already enabled!");
+        writer = new StorageWriter(window);
+    }
+
+    /**
+     * Writes all pending saves and disables write-behind again.
+     * Does nothing if write-behind is not enabled.
+     */
+    public static synchronized void disableWriteBehind() {
+        if (writer == null) return;
+        StorageWriter current = writer;
+        writer = null;
+        current.close();
+    }
+
+    /**
+     * Checks if write-behind is enabled.
+     *
+     * @return true if saves are performed by the background writer
+     */
+    public static boolean isWriteBehind() {
+        return writer != null;
+    }
+
+    /**
+     * Writes all storages with pending saves, including evicted storages, as soon as possible.
+     *
+     * @return A future that completes once all pending saves have been written.
+     */
+    public static @NotNull CompletableFuture<Void> flush() {
+        StorageWriter current = writer;
+        StorageWriter evictions = evictionWriter;
+        return CompletableFuture.allOf(
+                current != null ? current.flushAll() : CompletableFuture.completedFuture(null),
+                evictions != null ? evictions.flushAll() : CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Saves the given storage through the background writer if write-behind is enabled,
+     * otherwise on the calling thread.
+     *
+     * @param storage The storage to save.
+     * @return A future that completes once the storage has been written.
+     */
+    static @NotNull CompletableFuture<Void> saveLater(@NotNull StorageBase storage) {
+        StorageWriter current = writer;
+        if (current != null) return current.schedule(storage);
+
+        save(storage);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Writes the given storage as soon as possible.
+     *
+     * @param storage The storage to write.
+     * @return A future that completes once the storage has been written.
+     */
+    static @NotNull CompletableFuture<Void> flush(@NotNull StorageBase storage) {
+        StorageWriter current = writer;
+        if (current != null) return current.flush(storage);
+
+        save(storage);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Starts a background thread that reloads file storages whenever their file is changed
+     * by another program, using a debounce interval of 250 milliseconds.
+     * {@link #watch(Duration)}
+     *
+     * @throws IllegalStateException if the registry has not been set up or is already watching.
+     */
+    public static void watch() {
+        watch(Duration.ofMillis(250));
+    }
+
+    /**
+     * Starts a background thread that reloads file storages whenever their file is changed
+     * by another program.
+     * <p>
+     * A single {@link java.nio.file.WatchService} thread watches the directories of all cached and
+     * future non-digital storages. A storage is reloaded once its file has not changed for the given
+     * debounce interval, and only if the file differs from what was last loaded or saved. Listeners
+     * registered with {@link StorageBase#addChangeListener(String, StorageListener)} are notified of
+     * every key that changed.
+     *
+     * @param debounce The time a file must stay unchanged before it is reloaded.
+     * @throws IllegalStateException if the registry has not been set up or is already watching.
+     * @throws RuntimeException      if the file system does not support watching.
+     */
+    public static synchronized void watch(@NotNull Duration debounce) {
+        requireSetup();
+        if (watcher != null) throw new IllegalStateException("Already watching!");
+
+        try {
+            watcher = new StorageWatcher(debounce);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        storageCash.values().forEach(watcher::track);
+        watcher.start();
+    }
+
+    /**
+     * Stops the background thread started by {@link #watch(Duration)}.
+     * Does nothing if the registry is not watching.
+     */
+    public static synchronized void unwatch() {
+        if (watcher == null) return;
+        watcher.close();
+        watcher = null;
+    }
+
+    /**
+     * Returns the path of the file that backs the given storage.
+     *
+     * @param storage The storage
+     * @return The file path including the extension of the storage's {@link StorageBase.Type}
+     */
+    static @NotNull Path pathOf(@NotNull StorageBase storage) {
+        return Path.of(storage.file + "." + storage.type.getId());
+    }
+
+    /**
+     * Returns the journal file of a {@link StorageBase.Option#JOURNALED} storage.
+     *
+     * @param storage The storage
+     * @return The path of the journal, next to the storage file
+     */
+    static @NotNull Path journalPathOf(@NotNull StorageBase storage) {
+        Path file = pathOf(storage).toAbsolutePath();
+        return file.resolveSibling(file.getFileName() + ".journal");
+    }
+
+    /**
+     * Returns a stamp of the current state of a file, derived from its modification time and size.
+     *
+     * @param file The file
+     * @return The stamp, or -1 if the file does not exist
+     */
+    static long stampOf(@NotNull Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) * 31 + attributes.size();
+        } catch (IOException e) {
+            return -1;
+        }
     }
 
     /**
@@ -243,7 +1195,144 @@ public final class StorageRegistry {
      */
     private static void cash(@NotNull String file,
                              @NotNull StorageBase storage) {
-        storageCash.put(file, storage);
+        if (storage.isDigital()) {
+            digitalStorages.put(file, storage);
+        } else {
+            Cache<String, StorageBase> cache = fileStorages;
+            instances.put(file, storage);
+            cache.put(file, storage);
+            cache.cleanUp();
+        }
+    }
+
+    /**
+     * Limits the number of file storages kept in memory. Storages beyond the limit, or not registered
+     * for longer than the idle timeout, are evicted: unsaved changes are written to their file and the
+     * storage is loaded again by its next registration. Digital storages are never evicted.
+     * <p>
+     * Evicted storages that are still referenced stay usable and are handed out again by the next
+     * registration instead of a fresh instance. Idle storages are evicted during later registry
+     * accesses such as loading another storage, not on a timer. Reconfiguring the cache resets its
+     * statistics. By default the cache is unbounded.
+     * <p>
+     * Evictions happen during the registry access that caused them, but evicted storages are never
+     * written on that thread: they are handed to the background writer if write-behind is enabled,
+     * otherwise to a separate eviction writer. The journals of {@link StorageBase.Option#JOURNALED}
+     * storages are synced and closed once they are written. {@link #flush()} waits for both writers.
+     *
+     * @param maximumSize The maximum number of cached file storages, 0 for no limit
+     * @param idleTimeout The time after its last registration a storage is evicted, or null for none
+     * @throws IllegalArgumentException if the size is negative or the timeout is not positive
+     */
+    public static synchronized void setCacheLimits(long maximumSize, @Nullable Duration idleTimeout) {
+        if (maximumSize < 0) throw new IllegalArgumentException("Maximum cache size must not be negative");
+        if (idleTimeout != null && (idleTimeout.isNegative() || idleTimeout.isZero())) {
+            throw new IllegalArgumentException("Idle timeout must be positive");
+        }
+
+        Cache<String, StorageBase> previous = fileStorages;
+        Cache<String, StorageBase> cache = newCache(maximumSize, idleTimeout);
+        // publish the new cache first, so storages it evicts while being filled are seen as no longer cached
+        fileStorages = cache;
+        cache.putAll(previous.asMap());
+        previous.invalidateAll();
+    }
+
+    /**
+     * Returns the hit, miss and eviction counts of the file storage cache since it was last configured.
+     *
+     * @return A snapshot of the cache statistics
+     */
+    public static @NotNull StorageCacheStats cacheStats() {
+        Cache<String, StorageBase> cache = fileStorages;
+        cache.cleanUp();
+        CacheStats stats = cache.stats();
+        return new StorageCacheStats(stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.size());
+    }
+
+    /**
+     * Installs a recorder that receives parse and serialize times per {@link StorageBase.Type}, file
+     * sizes, lookup hits and misses, adapter calls and cache evictions of all storages. Metrics are
+     * disabled by default; {@link InMemoryStorageMetrics} keeps them in memory and exposes them over JMX.
+     *
+     * @param recorder The recorder, or null to disable metrics
+     */
+    public static void setMetrics(@Nullable StorageMetrics recorder) {
+        metrics = recorder;
+    }
+
+    /**
+     * Returns the installed metrics recorder.
+     *
+     * @return The recorder, or null if metrics are disabled
+     */
+    public static @Nullable StorageMetrics getMetrics() {
+        return metrics;
+    }
+
+    private static @NotNull Cache<String, StorageBase> newCache(long maximumSize, @Nullable Duration idleTimeout) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+        if (maximumSize > 0) builder.maximumSize(maximumSize);
+        if (idleTimeout != null) builder.expireAfterAccess(idleTimeout);
+        return builder.removalListener(StorageRegistry::evicted).build();
+    }
+
+    /**
+     * Writes the unsaved changes of a storage that was evicted from the cache and releases its
+     * watcher entry and journal. The storage stays in the weak {@link #instances} as long as it is
+     * referenced, so a later registration revives it instead of loading a second instance.
+     * <p>
+     * Runs on the thread that caused the eviction, but never writes on it: the save and the closing of
+     * the journal are handed to the background writer, or to the eviction writer if write-behind is
+     * disabled. A revived storage reopens its journal with the next change.
+     *
+     * @param notification The removal from the cache
+     */
+    private static void evicted(@NotNull RemovalNotification<String, StorageBase> notification) {
+        StorageBase storage = notification.getValue();
+        if (!notification.wasEvicted() || storage == null) return;
+
+        StorageMetrics recorder = metrics;
+        if (recorder != null) recorder.evicted(notification.getKey());
+
+        if (watcher != null && fileStorages.asMap().get(notification.getKey()) != storage) watcher.untrack(storage);
+
+        if (!storage.isDirty() && storage.journal == null) return;
+        StorageWriter current = writer;
+        CompletableFuture<Void> saved = (current != null ? current : evictionWriter()).flush(storage);
+        if (storage.journal != null) saved.whenComplete((done, failure) -> closeJournal(storage));
+    }
+
+    /**
+     * Returns the writer that saves evicted storages while write-behind is disabled, creating it on
+     * first use. Its pending writes are drained by {@link #flush()} and on shutdown.
+     *
+     * @return The eviction writer
+     */
+    private static @NotNull StorageWriter evictionWriter() {
+        StorageWriter current = evictionWriter;
+        if (current != null) return current;
+
+        synchronized (StorageRegistry.class) {
+            if (evictionWriter == null) evictionWriter = new StorageWriter(Duration.ZERO);
+            return evictionWriter;
+        }
+    }
+
+    /**
+     * Syncs and closes the journal of an evicted storage.
+     *
+     * @param storage The evicted storage
+     */
+    private static void closeJournal(@NotNull StorageBase storage) {
+        storage.lock.lock();
+        try {
+            storage.journal.close();
+        } catch (IOException e) {
+            logger.warning("Failed to close storage journal of " + storage.file + ": " + e.getMessage());
+        } finally {
+            storage.lock.unlock();
+        }
     }
 
     public static String serialize(Map<String, Object> map, @NotNull StorageBase.Type type) {
@@ -251,16 +1340,40 @@ public final class StorageRegistry {
             case JSON -> gson.toJson(map);
             case YAML -> yaml.dump(map);
             case TOML -> tomlWriter.write(map);
+            case BINARY -> Base64.getEncoder().encodeToString(BinaryFormat.encode(map));
             default -> throw new IllegalArgumentException("Unsupported serialization type");
         };
     }
 
     public static Map<String, Object> deserialize(String content, @NotNull StorageBase.Type type) {
-        return switch (type) {
-            case JSON -> gson.fromJson(content, Map.class);
-            case YAML -> yaml.load(content);
-            case TOML -> toml.read(content).toMap();
-            default -> throw new IllegalArgumentException("Unsupported serialization type");
-        };
+        try {
+            if (type == StorageBase.Type.BINARY) {
+                return BinaryFormat.decode(ByteBuffer.wrap(Base64.getDecoder().decode(content)), LinkedHashMap::new);
+            }
+            return StorageReader.read(new StringReader(content), type, LinkedHashMap::new);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Converts a storage file from one format into another. The source file is kept and the
+     * target file is written atomically next to it, e.g. converting {@code .storage/players}
+     * from JSON to BINARY reads {@code players.json} and writes {@code players.bin}.
+     *
+     * @param file The path of the storage file without extension.
+     * @param from The format of the existing file.
+     * @param to   The format to convert to.
+     * @throws RuntimeException if the source cannot be read or the target cannot be written.
+     */
+    public static void convert(@NotNull String file,
+                               @NotNull StorageBase.Type from,
+                               @NotNull StorageBase.Type to) {
+        try {
+            Map<String, Object> tree = readFile(Path.of(file + "." + from.getId()), from, LinkedHashMap::new);
+            writeFile(Path.of(file + "." + to.getId()).toAbsolutePath(), tree, to, null);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 }
\ No newline at end of file
@@ -3,6 +3,10 @@ package org.leycm.storage;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
 /**
  * Represents a logical section within a parent storage, providing a namespaced view of the storage.
  * All operations on a StorageSection are automatically prefixed with the section's parent path,
@@ -24,9 +28,16 @@ import org.jetbrains.annotations.Nullable;
  * Profile profile = userSection.get("profile", Profile.class);
  * </pre>
  * </p>
+ *
+ * <p>Sections are cached by their parent as long as they are referenced, so requesting the same
+ * section twice returns the same instance while it is in use, and sections nobody holds any more
+ * are garbage collected. Nested sections are views of the same parent storage. Reads go straight to
+ * the nested map backing the section, which is only resolved again after the structure of the parent
+ * tree changed. Writes, listeners, watches and transactions are handled by the parent storage, so its
+ * index, listeners and saves stay consistent, and a section holds nothing but its parent, its path
+ * and the backing map.</p>
  */
 public class StorageSection extends StorageBase {
-
     /**
      * The parent storage instance to which this section delegates all operations.
      */
@@ -38,6 +49,13 @@ public class StorageSection extends StorageBase {
      */
     protected String parentKey;
 
+    /**
+     * The pre-parsed form of {@link #parentKey}.
+     */
+    protected StoragePath parentPath;
+
+    private volatile Node node;
+
     /**
      * Registers all custom type adapters for this storage instance.
      * <p>
@@ -60,7 +78,20 @@ public class StorageSection extends StorageBase {
      */
     @Override
     public <T> void set(@NotNull String key, @Nullable T value) {
-        parentStorage.set(parentKey + "." + key, value);
+        set(StoragePath.of(key), value);
+    }
+
+    /**
+     * Stores a value at a pre-parsed path relative to this section.
+     * {@link StorageBase#set(StoragePath, Object)}
+     *
+     * @param <T>   The type of the value to store
+     * @param path  The path within this section (without the section prefix)
+     * @param value The value to store (null will remove the key)
+     */
+    @Override
+    public <T> void set(@NotNull StoragePath path, @Nullable T value) {
+        parentStorage.set(absolute(path), value);
     }
 
     /**
@@ -75,7 +106,25 @@ public class StorageSection extends StorageBase {
      */
     @Override
     public <T> @Nullable T get(@NotNull String key, @NotNull Class<T> type) {
-        return parentStorage.get(parentKey + "." + key, type);
+        return get(StoragePath.of(key), type);
+    }
+
+    /**
+     * Retrieves a value at a pre-parsed path relative to this section.
+     * {@link StorageBase#get(StoragePath, Class)}
+     *
+     * @param <T>  The expected return type
+     * @param path The path within this section (without the section prefix)
+     * @param type The expected class of the return value
+     * @return The stored value if found and convertible, otherwise null
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> @Nullable T get(@NotNull StoragePath path, @NotNull Class<T> type) {
+        Object value = getPathValue(path);
+        if (value == null) return counted(null);
+        if (type.isInstance(value)) return counted((T) value);
+        return parentStorage.get(absolute(path), type);
     }
 
     /**
@@ -91,6 +140,150 @@ public class StorageSection extends StorageBase {
      */
     @Override
     public <T> T get(@NotNull String key, @NotNull Class<T> type, @Nullable T defaultValue) {
-        return parentStorage.get(parentKey + "." + key, type, defaultValue);
+        return get(StoragePath.of(key), type, defaultValue);
+    }
+
+    /**
+     * Retrieves the raw value at a path relative to this section.
+     * {@link StorageBase#getPathValue(StoragePath)}
+     *
+     * @param path The path within this section (without the section prefix)
+     * @return The value if found, otherwise null
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public @Nullable Object getPathValue(@NotNull StoragePath path) {
+        Map<String, Object> current = node();
+        if (current == null) return parentStorage.getPathValue(absolute(path));
+
+        String[] parts = path.segments();
+        if (parts.length == 0) return null;
+        for (int i = 0; i < parts.length - 1; i++) {
+            Object next = current.get(parts[i]);
+            if (!(next instanceof Map)) return null;
+            current = (Map<String, Object>) next;
+        }
+        return current.get(parts[parts.length - 1]);
+    }
+
+    /**
+     * Removes a value at a path relative to this section.
+     * {@link StorageBase#remove(StoragePath)}
+     *
+     * @param path The path within this section (without the section prefix)
+     */
+    @Override
+    public void remove(@NotNull StoragePath path) {
+        parentStorage.remove(absolute(path));
+    }
+
+    /**
+     * Applies several mutations to keys of this section as one unit.
+     * {@link StorageBase#batch(Consumer)}
+     *
+     * @param mutations The consumer that performs the mutations, with paths relative to this section
+     */
+    @Override
+    public void batch(@NotNull Consumer<StorageBatch> mutations) {
+        parentStorage.batch(batch -> mutations.accept(batch.within(parentPath)));
+    }
+
+    /**
+     * Begins a transaction on the parent storage. Writes through this section while it is open
+     * become part of the transaction; the paths of the transaction itself are absolute.
+     * {@link StorageBase#begin()}
+     *
+     * @return The open transaction
+     */
+    @Override
+    public @NotNull StorageTransaction begin() {
+        return parentStorage.begin();
+    }
+
+    /**
+     * Watches the values at or below a path of this section on the parent storage. The paths of the
+     * reported changes are absolute.
+     * {@link StorageBase#watch(String, StorageListener, Executor)}
+     *
+     * @param prefix   The path within this section, empty to watch the whole section
+     * @param listener The listener to notify
+     * @param executor The executor that runs the listener, or null to run it on the writing thread
+     * @return The watch, which stops the notifications when closed
+     */
+    @Override
+    public @NotNull StorageWatch watch(@NotNull String prefix,
+                                       @NotNull StorageListener listener,
+                                       @Nullable Executor executor) {
+        StoragePath path = prefix.isEmpty() ? parentPath : absolute(StoragePath.of(prefix));
+        return parentStorage.watch(path.toString(), listener, executor);
+    }
+
+    /**
+     * Registers a listener for reloads on a key of this section with the parent storage.
+     * {@link StorageBase#addChangeListener(String, StorageListener)}
+     *
+     * @param key      The key within this section
+     * @param listener The listener to notify
+     */
+    @Override
+    public void addChangeListener(@NotNull String key, @NotNull StorageListener listener) {
+        parentStorage.addChangeListener(absolute(StoragePath.of(key)).toString(), listener);
+    }
+
+    /**
+     * Removes a listener registered with {@link #addChangeListener(String, StorageListener)}.
+     *
+     * @param key      The key within this section
+     * @param listener The listener to remove
+     */
+    @Override
+    public void removeChangeListener(@NotNull String key, @NotNull StorageListener listener) {
+        parentStorage.removeChangeListener(absolute(StoragePath.of(key)).toString(), listener);
+    }
+
+    @Override
+    @NotNull StorageSection section(@NotNull StoragePath path) {
+        return parentStorage.section(absolute(path));
+    }
+
+    @Override
+    @Nullable Map<String, Object> nodeAt(@NotNull StoragePath path) {
+        return parentStorage.nodeAt(absolute(path));
+    }
+
+    @Override
+    protected int structureVersion() {
+        return parentStorage.structureVersion();
+    }
+
+    /**
+     * Returns the map backing this section, resolving it again if the parent tree changed its structure.
+     *
+     * @return The map, or null if the section does not exist (yet) or cannot be accessed directly
+     */
+    private @Nullable Map<String, Object> node() {
+        int version = parentStorage.structureVersion();
+        Node current = node;
+        if (current == null || current.version() != version) {
+            current = new Node(version, parentStorage.nodeAt(parentPath));
+            node = current;
+        }
+        return current.map();
+    }
+
+    /**
+     * Returns the path of a key of this section within the parent storage.
+     *
+     * @param path The path within this section
+     * @return The path within the parent storage
+     */
+    private @NotNull StoragePath absolute(@NotNull StoragePath path) {
+        return parentPath.child(path);
+    }
+
+    /**
+     * The backing map of a section together with the structure version it was resolved at.
+     */
+    private record Node(int version, @Nullable Map<String, Object> map) {
     }
 }
\ No newline at end of file
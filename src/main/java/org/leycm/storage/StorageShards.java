@@ -0,0 +1,125 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * The shard files of a {@link StorageBase.Option#SHARDED} storage.
+ * <p>
+ * Top-level keys are spread over a fixed number of files in the directory {@code <file>/} by the
+ * hash of the key. A shard file is named {@code shard-<i>-of-<n>.<ext>}, so the number of shards a
+ * storage was written with is recognised when it is opened again, even if
+ * {@link StorageRegistry#setShardCount(int)} has changed since. {@link String#hashCode()} is
+ * specified, so a key always maps to the same shard on every JVM.
+ * <p>
+ * Shards are loaded on first access and only shards that were modified since their last save are
+ * written. The load and dirty flags may be read without holding the storage lock.
+ */
+final class StorageShards {
+    private static final Pattern NAME = Pattern.compile("shard-(\\d+)-of-(\\d+)\\.(\\w+)");
+
+    private final Path directory;
+    private final String extension;
+    private final int count;
+    private final AtomicIntegerArray loaded;
+    private final AtomicIntegerArray dirty;
+
+    private StorageShards(@NotNull Path directory, @NotNull String extension, int count) {
+        this.directory = directory;
+        this.extension = extension;
+        this.count = count;
+        this.loaded = new AtomicIntegerArray(count);
+        this.dirty = new AtomicIntegerArray(count);
+    }
+
+    /**
+     * Opens the shards in the given directory. The shard count of existing shard files takes
+     * precedence over the requested count.
+     *
+     * @param directory The directory of the shard files
+     * @param extension The file extension of the storage's {@link StorageBase.Type}
+     * @param count     The number of shards used if the directory holds no shard files yet
+     * @return The shards, none of them loaded
+     * @throws IOException if the directory cannot be listed
+     */
+    static @NotNull StorageShards open(@NotNull Path directory, @NotNull String extension, int count) throws IOException {
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Matcher matcher = NAME.matcher(file.getFileName().toString());
+                    if (matcher.matches() && matcher.group(3).equals(extension)) {
+                        count = Integer.parseInt(matcher.group(2));
+                        break;
+                    }
+                }
+            }
+        }
+        return new StorageShards(directory, extension, count);
+    }
+
+    /**
+     * Checks if a file is the shard file of a sharded storage.
+     *
+     * @param file The file
+     * @return true if the file name is that of a shard
+     */
+    static boolean isShardFile(@NotNull Path file) {
+        return NAME.matcher(file.getFileName().toString()).matches();
+    }
+
+    /**
+     * Returns the number of shards.
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Returns the shard that holds the given top-level key.
+     *
+     * @param key The top-level key
+     * @return The index of the shard
+     */
+    int shardOf(@NotNull String key) {
+        return Math.floorMod(key.hashCode(), count);
+    }
+
+    /**
+     * Returns the file of a shard.
+     *
+     * @param shard The index of the shard
+     * @return The path of the shard file
+     */
+    @NotNull Path pathOf(int shard) {
+        return directory.resolve("shard-" + shard + "-of-" + count + "." + extension);
+    }
+
+    boolean isLoaded(int shard) {
+        return loaded.get(shard) != 0;
+    }
+
+    void markLoaded(int shard) {
+        loaded.set(shard, 1);
+    }
+
+    void markDirty(int shard) {
+        dirty.set(shard, 1);
+    }
+
+    /**
+     * Clears the dirty flag of a shard.
+     *
+     * @param shard The index of the shard
+     * @return true if the shard was dirty
+     */
+    boolean takeDirty(int shard) {
+        return dirty.getAndSet(shard, 0) != 0;
+    }
+}
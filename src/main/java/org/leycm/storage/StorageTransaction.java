@@ -0,0 +1,317 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A group of edits to a storage that becomes visible all at once on {@link #commit()} or not at all,
+ * see {@link StorageBase#begin()}.
+ * <p>
+ * Edits are applied to a working copy of the tree that shares every untouched map with the current
+ * tree: only the maps on the path of an edited key are copied, each at most once per transaction.
+ * Concurrent readers keep seeing the previous tree until the working copy is swapped in by
+ * {@link #commit()}; {@link #rollback()} simply drops it.
+ * <p>
+ * The transaction holds the storage lock from {@link StorageBase#begin()} until it is committed or
+ * rolled back, so other writers wait for it, and it must be finished on the thread that began it.
+ * While it is open, all writes of that thread to the storage, including those through sections and
+ * adapters, become part of the transaction. Use it with try-with-resources to roll back on failure:
+ * <pre>
+ * try (StorageTransaction transaction = storage.begin()) {
+ *     transaction.set("account.a", balanceA - 10);
+ *     transaction.set("account.b", balanceB + 10);
+ *     transaction.commit();
+ * }
+ * </pre>
+ */
+public final class StorageTransaction implements AutoCloseable {
+    private static final Object REPLACED = new Object();
+
+    private final StorageBase storage;
+    private final Map<String, Object> root;
+    private final Set<Map<String, Object>> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<IndexChange> indexChanges = new ArrayList<>();
+    private final List<Edit> edits = new ArrayList<>();
+
+    private boolean changed;
+    private boolean open = true;
+
+    /**
+     * Creates a transaction over the current tree of the storage. The caller must hold the storage lock.
+     *
+     * @param storage The storage to edit
+     */
+    StorageTransaction(@NotNull StorageBase storage) {
+        this.storage = storage;
+        this.root = copy(storage.init);
+    }
+
+    /**
+     * Stores a value at the specified key/path within this transaction.
+     * {@link StorageBase#set(String, Object)}
+     *
+     * @param key   The path/key where to store the value
+     * @param value The value to store (null will remove the key)
+     * @throws IllegalStateException if the transaction is no longer open
+     */
+    public void set(@NotNull String key, @Nullable Object value) {
+        set(StoragePath.of(key), value);
+    }
+
+    /**
+     * Stores a value at the specified pre-parsed path within this transaction.
+     * {@link StorageBase#set(StoragePath, Object)}
+     *
+     * @param path  The path where to store the value
+     * @param value The value to store (null will remove the key)
+     * @throws IllegalStateException if the transaction is no longer open
+     */
+    public void set(@NotNull StoragePath path, @Nullable Object value) {
+        requireOpen();
+        storage.set(path, value);
+    }
+
+    /**
+     * Removes the value at the specified key/path within this transaction.
+     *
+     * @param key The path/key of the value to remove
+     * @throws IllegalStateException if the transaction is no longer open
+     */
+    public void remove(@NotNull String key) {
+        remove(StoragePath.of(key));
+    }
+
+    /**
+     * Removes the value at the specified pre-parsed path within this transaction.
+     *
+     * @param path The path of the value to remove
+     * @throws IllegalStateException if the transaction is no longer open
+     */
+    public void remove(@NotNull StoragePath path) {
+        requireOpen();
+        storage.remove(path);
+    }
+
+    /**
+     * Retrieves a value as seen by this transaction, including its uncommitted edits. Numbers are
+     * coerced and adapters are applied like in {@link StorageBase#get(String, Class)}.
+     *
+     * @param <T>  The expected return type
+     * @param key  The path/key of the value to retrieve
+     * @param type The expected class of the return value
+     * @return The value if found and convertible, otherwise null
+     * @throws IllegalStateException if the transaction is no longer open
+     */
+    public <T> @Nullable T get(@NotNull String key, @NotNull Class<T> type) {
+        requireOpen();
+        return storage.get(StoragePath.of(key), type);
+    }
+
+    /**
+     * Retrieves the raw value at a path as seen by this transaction, including its uncommitted edits.
+     *
+     * @param path The path of the value
+     * @return The value if found, otherwise null
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable Object getPathValue(@NotNull StoragePath path) {
+        String[] parts = path.segments();
+        if (parts.length == 0) return null;
+        storage.loadShard(parts[0]);
+
+        Map<String, Object> current = root;
+        for (int i = 0; i < parts.length - 1; i++) {
+            Object next = current.get(parts[i]);
+            if (!(next instanceof Map)) return null;
+            current = (Map<String, Object>) next;
+        }
+        return current.get(parts[parts.length - 1]);
+    }
+
+    /**
+     * Publishes all edits of this transaction atomically and releases the storage lock. On indexed
+     * storages the edits are applied to a copy of the flat index, which is swapped in together with
+     * the new tree, so lock-free readers see either all edits or none of them. Copying the index
+     * takes time proportional to the number of paths in the storage, so large indexed storages
+     * should group many edits into one transaction rather than commit them one by one.
+     *
+     * @throws IllegalStateException if the transaction is no longer open
+     */
+    public void commit() {
+        requireOpen();
+        open = false;
+        try {
+            if (!changed) return;
+
+            StorageIndex updated = storage.copyIndex();
+            if (updated != null) {
+                for (IndexChange change : indexChanges) {
+                    if (change.previous() == REPLACED) {
+                        updated.replace(change.path(), change.value());
+                    } else if (change.value() == null) {
+                        updated.remove(change.path(), change.previous());
+                    } else {
+                        updated.put(change.path(), change.previous(), change.value());
+                    }
+                }
+            }
+
+            Map<String, Object> previous = storage.init;
+            storage.publish(this, root, updated);
+            for (Edit edit : edits) {
+                storage.changed(edit.path(), edit.value());
+            }
+            storage.record(previous, root);
+        } finally {
+            storage.finish(this);
+        }
+    }
+
+    /**
+     * Discards all edits of this transaction and releases the storage lock.
+     *
+     * @throws IllegalStateException if the transaction is no longer open
+     */
+    public void rollback() {
+        requireOpen();
+        open = false;
+        storage.finish(this);
+    }
+
+    /**
+     * Rolls the transaction back unless it has already been committed or rolled back.
+     */
+    @Override
+    public void close() {
+        if (open) rollback();
+    }
+
+    /**
+     * Returns true until the transaction has been committed or rolled back.
+     *
+     * @return true if the transaction is open
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Applies a write of the storage to the working copy, copying the maps on its path.
+     *
+     * @param path  The path of the value
+     * @param value The value to store
+     */
+    void put(@NotNull StoragePath path, @NotNull Object value) {
+        String[] parts = path.segments();
+        Map<String, Object> current = root;
+
+        for (int i = 0; i < parts.length - 1; i++) {
+            current = child(current, path, i, true);
+        }
+
+        Object previous = current.put(parts[parts.length - 1], value);
+        indexChanges.add(new IndexChange(path.toString(), previous, value));
+        edits.add(new Edit(path, value));
+        changed = true;
+    }
+
+    /**
+     * Applies a removal of the storage to the working copy, copying the maps on its path.
+     *
+     * @param path The path of the value
+     */
+    void delete(@NotNull StoragePath path) {
+        String[] parts = path.segments();
+        Map<String, Object> current = root;
+
+        for (int i = 0; i < parts.length - 1; i++) {
+            current = child(current, path, i, false);
+            if (current == null) return;
+        }
+
+        Object previous = current.remove(parts[parts.length - 1]);
+        if (previous == null) return;
+        indexChanges.add(new IndexChange(path.toString(), previous, null));
+        edits.add(new Edit(path, null));
+        changed = true;
+    }
+
+    /**
+     * Adds the keys of a shard that was loaded while the transaction is open to the working copy.
+     *
+     * @param loaded The top-level entries of the shard
+     */
+    void include(@NotNull Map<String, Object> loaded) {
+        loaded.forEach(root::putIfAbsent);
+    }
+
+    /**
+     * Returns the working copy of the map at the given depth of a path.
+     *
+     * @param parent The working copy of the parent map
+     * @param path   The path being edited
+     * @param depth  The index of the segment of the child
+     * @param create If true, a missing or non-map child is replaced by a new map
+     * @return The working copy of the child, or null if it does not exist and {@code create} is false
+     */
+    @SuppressWarnings("unchecked")
+    private @Nullable Map<String, Object> child(@NotNull Map<String, Object> parent,
+                                                @NotNull StoragePath path,
+                                                int depth,
+                                                boolean create) {
+        String key = path.segment(depth);
+        Object next = parent.get(key);
+
+        if (next instanceof Map) {
+            Map<String, Object> node = (Map<String, Object>) next;
+            if (owned.contains(node)) return node;
+
+            Map<String, Object> copied = copy(node);
+            parent.put(key, copied);
+            indexChanges.add(new IndexChange(path.prefix(depth + 1), REPLACED, copied));
+            return copied;
+        }
+
+        if (!create) return null;
+        Map<String, Object> created = storage.newNode();
+        owned.add(created);
+        parent.put(key, created);
+        indexChanges.add(new IndexChange(path.prefix(depth + 1), next, created));
+        return created;
+    }
+
+    private @NotNull Map<String, Object> copy(@NotNull Map<String, Object> node) {
+        Map<String, Object> copied = storage.newNode();
+        copied.putAll(node);
+        owned.add(copied);
+        return copied;
+    }
+
+    private void requireOpen() {
+        if (!open) throw new IllegalStateException("Transaction is no longer open");
+        if (!storage.lock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Transaction must be used on the thread that began it");
+        }
+    }
+
+    /**
+     * An index update that is replayed on commit. {@code previous} is {@link #REPLACED} if only the
+     * map instance at the path changed, and {@code value} is null for removals.
+     */
+    private record IndexChange(@NotNull String path, @Nullable Object previous, @Nullable Object value) {
+    }
+
+    /**
+     * A committed edit that is handed to {@link StorageBase#changed(StoragePath, Object)}; {@code value}
+     * is null for removals.
+     */
+    private record Edit(@NotNull StoragePath path, @Nullable Object value) {
+    }
+}
@@ -0,0 +1,119 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A subscription to the changes below a path of a storage, see
+ * {@link StorageBase#watch(String, StorageListener)}. Closing it stops the notifications.
+ * <p>
+ * A listener with an executor receives its changes on that executor one at a time and in the order
+ * they were made, even if the executor runs tasks in parallel. Exceptions thrown by a listener are
+ * logged and do not affect the write that caused the change or other listeners.
+ */
+public final class StorageWatch implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(StorageWatch.class.getName());
+
+    private final StorageWatchers owner;
+    private final String prefix;
+    private final StorageListener listener;
+    private final @Nullable Executor executor;
+    private final @Nullable Queue<StorageChange> queue;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean closed;
+
+    StorageWatchers.Node node;
+
+    StorageWatch(@NotNull StorageWatchers owner,
+                 @NotNull String prefix,
+                 @NotNull StorageListener listener,
+                 @Nullable Executor executor) {
+        this.owner = owner;
+        this.prefix = prefix;
+        this.listener = listener;
+        this.executor = executor;
+        this.queue = executor == null ? null : new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Returns the path this watch is registered on.
+     *
+     * @return The dot-separated path, empty if the whole storage is watched
+     */
+    public @NotNull String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Returns true until the watch has been closed.
+     *
+     * @return true if the listener is still notified
+     */
+    public boolean isActive() {
+        return !closed;
+    }
+
+    /**
+     * Stops notifying the listener. Changes already handed to the executor are dropped.
+     * Closing a watch more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        owner.remove(this);
+        if (queue != null) queue.clear();
+    }
+
+    /**
+     * Hands a change to the listener, directly or through the executor.
+     *
+     * @param change The change
+     */
+    void deliver(@NotNull StorageChange change) {
+        if (closed) return;
+        if (queue == null) {
+            notify(change);
+            return;
+        }
+
+        queue.add(change);
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) return;
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            scheduled.set(false);
+            logger.log(Level.WARNING, "Dropped changes of " + prefix + ", the executor rejected them", e);
+            queue.clear();
+        }
+    }
+
+    private void drain() {
+        StorageChange change;
+        while (!closed && (change = queue.poll()) != null) {
+            notify(change);
+        }
+        scheduled.set(false);
+        if (!closed && !queue.isEmpty()) schedule();
+    }
+
+    private void notify(@NotNull StorageChange change) {
+        try {
+            listener.onChange(change);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Listener on " + prefix + " failed for change of " + change.path(), e);
+        }
+    }
+}
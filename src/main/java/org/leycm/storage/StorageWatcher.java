@@ -0,0 +1,195 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the directories of all tracked file storages on a single background thread and
+ * reloads a storage once its file has stopped changing for the configured debounce interval.
+ * <p>
+ * Files whose content stamp (modification time and size) still matches the one recorded by the
+ * last {@link StorageRegistry#reload(StorageBase)} or {@link StorageRegistry#save(StorageBase)}
+ * are skipped, so saves of the application itself never trigger a reload.
+ * <p>
+ * A reload never discards changes of the application: while a transaction is open on the storage
+ * or a write holds its lock, the reload is deferred by another debounce interval, and a storage with
+ * unsaved changes is not reloaded at all. The conflict is logged, and the next save overwrites the
+ * external change.
+ */
+final class StorageWatcher implements Runnable {
+    private final WatchService service;
+    private final long debounceNanos;
+    private final Thread thread;
+
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+    private final Map<Path, StorageBase> files = new ConcurrentHashMap<>();
+    private final Map<Path, Long> pending = new HashMap<>();
+
+    private volatile boolean running = true;
+
+    /**
+     * Creates a new watcher. The background thread is started with {@link #start()}.
+     *
+     * @param debounce The time a file must stay unchanged before it is reloaded
+     * @throws IOException if the file system does not support watching
+     */
+    StorageWatcher(@NotNull Duration debounce) throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+        this.debounceNanos = debounce.toNanos();
+        this.thread = new Thread(this, "the-frame-storage-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the background thread.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops the background thread and releases the underlying watch service.
+     */
+    void close() {
+        running = false;
+        try {
+            service.close();
+        } catch (IOException e) {
+            StorageRegistry.getLogger().warning("Failed to close storage watcher: " + e.getMessage());
+        }
+        thread.interrupt();
+    }
+
+    /**
+     * Starts watching the file of the given storage. Digital storages are ignored.
+     *
+     * @param storage The storage to watch
+     */
+    void track(@NotNull StorageBase storage) {
+        if (storage.isDigital() || storage.shards != null) return;
+
+        Path file = StorageRegistry.pathOf(storage).toAbsolutePath().normalize();
+        files.put(file, storage);
+
+        Path dir = file.getParent();
+        if (dir == null || !directories.add(dir)) return;
+
+        try {
+            Files.createDirectories(dir);
+            dir.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        } catch (IOException e) {
+            directories.remove(dir);
+            StorageRegistry.getLogger().warning("Failed to watch storage directory " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops watching the file of the given storage, used when it is evicted from the registry cache.
+     *
+     * @param storage The storage to forget
+     */
+    void untrack(@NotNull StorageBase storage) {
+        files.remove(StorageRegistry.pathOf(storage).toAbsolutePath().normalize(), storage);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            WatchKey key;
+            try {
+                key = pending.isEmpty() ? service.take() : service.poll(nextTimeout(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+
+            if (key != null) {
+                collect(key);
+            }
+
+            reloadDue();
+        }
+    }
+
+    /**
+     * Records the changed files of a signalled watch key with a fresh debounce deadline.
+     *
+     * @param key The signalled key
+     */
+    private void collect(@NotNull WatchKey key) {
+        Path dir = (Path) key.watchable();
+        long deadline = System.nanoTime() + debounceNanos;
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                files.keySet().stream()
+                        .filter(file -> dir.equals(file.getParent()))
+                        .forEach(file -> pending.put(file, deadline));
+                continue;
+            }
+
+            Path file = dir.resolve((Path) event.context()).normalize();
+            if (files.containsKey(file)) pending.put(file, deadline);
+        }
+
+        key.reset();
+    }
+
+    /**
+     * Returns the time until the earliest pending deadline.
+     *
+     * @return The timeout in nanoseconds
+     */
+    private long nextTimeout() {
+        long now = System.nanoTime();
+        long next = Long.MAX_VALUE;
+        for (long deadline : pending.values()) {
+            next = Math.min(next, deadline - now);
+        }
+        return Math.max(0, next);
+    }
+
+    /**
+     * Reloads all storages whose debounce deadline has passed and whose file actually changed.
+     */
+    private void reloadDue() {
+        long now = System.nanoTime();
+        Map<Path, Long> deferred = new HashMap<>();
+        Iterator<Map.Entry<Path, Long>> iterator = pending.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Long> entry = iterator.next();
+            if (entry.getValue() - now > 0) continue;
+            iterator.remove();
+
+            StorageBase storage = files.get(entry.getKey());
+            if (storage == null || StorageRegistry.stampOf(entry.getKey()) == storage.fileStamp) continue;
+
+            if (storage.lock.isLocked()) {
+                deferred.put(entry.getKey(), now + debounceNanos);
+                continue;
+            }
+
+            try {
+                if (!StorageRegistry.reloadUnlessModified(storage)) {
+                    StorageRegistry.getLogger().warning("Not reloading storage " + entry.getKey()
+                            + " changed by another program: it has unsaved changes, which its next save will write over the file");
+                }
+            } catch (RuntimeException e) {
+                StorageRegistry.getLogger().log(Level.WARNING, "Failed to reload storage " + entry.getKey(), e);
+            }
+        }
+        pending.putAll(deferred);
+    }
+}
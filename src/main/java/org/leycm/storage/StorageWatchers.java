@@ -0,0 +1,130 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * The {@link StorageWatch}es of a storage, kept in a trie keyed by path segment.
+ * <p>
+ * A change is delivered to the watches on every node from the root to the node of its path, so
+ * finding the watches of a change costs one map lookup per segment of the path no matter how many
+ * watches are registered elsewhere. Registering and closing watches is synchronized; lookups are not,
+ * empty nodes are pruned when their last watch is closed.
+ */
+final class StorageWatchers {
+    private final Node root = new Node(null, "");
+    private volatile int size;
+
+    /**
+     * Checks if no watch is registered, which lets writers skip describing their changes.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Registers a listener on a path.
+     *
+     * @param prefix   The watched path, empty for the whole storage
+     * @param listener The listener
+     * @param executor The executor the listener is notified on, or null to notify it on the writing thread
+     * @return The watch
+     */
+    synchronized @NotNull StorageWatch add(@NotNull String prefix,
+                                           @NotNull StorageListener listener,
+                                           @Nullable Executor executor) {
+        StorageWatch watch = new StorageWatch(this, prefix, listener, executor);
+        Node node = root;
+        if (!prefix.isEmpty()) {
+            for (String segment : StoragePath.of(prefix).segments()) {
+                Node parent = node;
+                node = parent.children.computeIfAbsent(segment, key -> new Node(parent, key));
+            }
+        }
+        node.watches.add(watch);
+        watch.node = node;
+        size++;
+        return watch;
+    }
+
+    /**
+     * Unregisters a watch and prunes the nodes left without watches.
+     *
+     * @param watch The closed watch
+     */
+    synchronized void remove(@NotNull StorageWatch watch) {
+        Node node = watch.node;
+        if (node == null || !node.watches.remove(watch)) return;
+        size--;
+
+        while (node.parent != null && node.watches.isEmpty() && node.children.isEmpty()) {
+            node.parent.children.remove(node.key);
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Checks if a change at the first {@code depth} segments of a path can reach any watch, i.e. if a
+     * watch is registered on that path, on one of its ancestors or below it.
+     *
+     * @param segments The segments of the path
+     * @param depth    The number of segments of the changed path
+     * @return true if the change has to be described
+     */
+    boolean covers(String @NotNull [] segments, int depth) {
+        if (size == 0) return false;
+
+        Node node = root;
+        if (!node.watches.isEmpty()) return true;
+        for (int i = 0; i < depth; i++) {
+            node = node.children.get(segments[i]);
+            if (node == null) return false;
+            if (!node.watches.isEmpty()) return true;
+        }
+        return !node.children.isEmpty();
+    }
+
+    /**
+     * Delivers changes to the watches of their paths and of all ancestors of their paths.
+     *
+     * @param changes The changes in the order they were made
+     */
+    void dispatch(@NotNull List<StorageChange> changes) {
+        for (StorageChange change : changes) {
+            Node node = root;
+            node.deliver(change);
+            for (String segment : StoragePath.of(change.path()).segments()) {
+                node = node.children.get(segment);
+                if (node == null) break;
+                node.deliver(change);
+            }
+        }
+    }
+
+    /**
+     * A path segment with the watches registered on it.
+     */
+    static final class Node {
+        private final @Nullable Node parent;
+        private final String key;
+        private final Map<String, Node> children = new ConcurrentHashMap<>();
+        private final List<StorageWatch> watches = new CopyOnWriteArrayList<>();
+
+        private Node(@Nullable Node parent, @NotNull String key) {
+            this.parent = parent;
+            this.key = key;
+        }
+
+        private void deliver(@NotNull StorageChange change) {
+            for (StorageWatch watch : watches) {
+                watch.deliver(change);
+            }
+        }
+    }
+}
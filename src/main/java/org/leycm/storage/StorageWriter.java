@@ -0,0 +1,124 @@
+package org.leycm.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Writes storages to disk on a single background thread, coalescing all saves of a storage
+ * that are requested within the configured window into one write.
+ * <p>
+ * A storage is only written if it was modified since its last save (or its file does not exist yet),
+ * so saves requested for unchanged storages cost nothing. {@link StorageBase.Option#JOURNALED} storages
+ * record their changes in the journal instead of becoming dirty, so they are always handed to
+ * {@link StorageRegistry#save(StorageBase)}, which syncs the journal to the device.
+ */
+final class StorageWriter {
+    private final ScheduledExecutorService executor;
+    private final long windowNanos;
+    private final Map<StorageBase, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+    private final Thread shutdownHook = new Thread(this::drain, "the-frame-storage-drain");
+
+    /**
+     * Creates a new writer and registers a shutdown hook that drains all pending writes.
+     *
+     * @param window The time to wait after the first save request before a storage is written
+     */
+    StorageWriter(@NotNull Duration window) {
+        this.windowNanos = window.toNanos();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "the-frame-storage-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Requests a save of the given storage. If a save is already pending, the request is merged
+     * into it and the same future is returned.
+     *
+     * @param storage The storage to save
+     * @return A future that completes once the storage has been written
+     */
+    @NotNull CompletableFuture<Void> schedule(@NotNull StorageBase storage) {
+        return pending.computeIfAbsent(storage, s -> {
+            executor.schedule(() -> write(s), windowNanos, TimeUnit.NANOSECONDS);
+            return new CompletableFuture<>();
+        });
+    }
+
+    /**
+     * Writes the given storage as soon as possible, skipping the remaining coalescing window.
+     *
+     * @param storage The storage to write
+     * @return A future that completes once the storage has been written
+     */
+    @NotNull CompletableFuture<Void> flush(@NotNull StorageBase storage) {
+        CompletableFuture<Void> future = pending.computeIfAbsent(storage, s -> new CompletableFuture<>());
+        executor.execute(() -> write(storage));
+        return future;
+    }
+
+    /**
+     * Writes all storages with pending saves as soon as possible.
+     *
+     * @return A future that completes once every pending storage has been written
+     */
+    @NotNull CompletableFuture<Void> flushAll() {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (StorageBase storage : pending.keySet()) {
+            futures.add(flush(storage));
+        }
+        // the writer runs one task at a time, so this also waits for a write that is already running
+        futures.add(CompletableFuture.runAsync(() -> { }, executor));
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Drains all pending writes on the calling thread and stops the background thread.
+     */
+    void close() {
+        drain();
+        executor.shutdown();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignored) {
+            // the JVM is already shutting down and runs the hook itself
+        }
+    }
+
+    /**
+     * Writes all storages with pending saves on the calling thread.
+     */
+    private void drain() {
+        for (StorageBase storage : pending.keySet()) {
+            write(storage);
+        }
+    }
+
+    /**
+     * Writes a single storage if a save is still pending for it.
+     *
+     * @param storage The storage to write
+     */
+    private void write(@NotNull StorageBase storage) {
+        CompletableFuture<Void> future = pending.remove(storage);
+        if (future == null) return;
+
+        try {
+            if (storage.isDirty() || storage.journal != null || !Files.exists(StorageRegistry.pathOf(storage))) {
+                StorageRegistry.save(storage);
+            }
+            future.complete(null);
+        } catch (RuntimeException e) {
+            StorageRegistry.getLogger().severe("Failed to write storage " + storage.file + ": " + e.getMessage());
+            future.completeExceptionally(e);
+        }
+    }
+}
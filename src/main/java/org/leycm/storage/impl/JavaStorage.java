@@ -3,6 +3,7 @@ package org.leycm.storage.impl;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.leycm.storage.StorageBase;
+import org.leycm.storage.StoragePath;
 
 import java.io.File;
 import java.math.BigDecimal;
@@ -12,7 +13,9 @@ import java.net.URI;
 import java.net.URL;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A concrete implementation of Storage that provides adapters for common Java types.
@@ -26,8 +29,17 @@ import java.util.UUID;
  *   <li>Big number types (BigInteger, BigDecimal)</li>
  * </ul>
  * All values are stored as strings using standard ISO formats where applicable.
+ * <p>
+ * Decoded values are cached per key together with the string they were decoded from, so repeated
+ * reads of an unchanged key return the same instance without parsing it again. The cache holds at
+ * most {@value #MAX_DECODED} keys and is cleared whenever a map of the tree is added, replaced or
+ * removed, so keys of overwritten or deleted sections do not stay cached.
  */
 public class JavaStorage extends StorageBase {
+    private static final int MAX_DECODED = 1024;
+
+    private final Map<String, Decoded> decoded = new ConcurrentHashMap<>();
+    private volatile int decodedVersion;
 
     /**
      * Registers all type adapters for common Java types.
@@ -81,8 +93,8 @@ public class JavaStorage extends StorageBase {
      * @param key The storage key/path
      * @return The UUID if found and valid, otherwise null
      */
-    private UUID getUuid(String key) {
-        return get(key, UUID.class);
+    private @Nullable UUID getUuid(String key) {
+        return decode(key, UUID.class, UUID::fromString);
     }
 
     /**
@@ -102,8 +114,7 @@ public class JavaStorage extends StorageBase {
      * @return The LocalDate if found and valid, otherwise null
      */
     private @Nullable LocalDate getLocalDate(String key) {
-        String value = get(key, String.class);
-        return value != null ? LocalDate.parse(value, DateTimeFormatter.ISO_LOCAL_DATE) : null;
+        return decode(key, LocalDate.class, value -> LocalDate.parse(value, DateTimeFormatter.ISO_LOCAL_DATE));
     }
 
     /**
@@ -123,8 +134,7 @@ public class JavaStorage extends StorageBase {
      * @return The LocalTime if found and valid, otherwise null
      */
     private @Nullable LocalTime getLocalTime(String key) {
-        String value = get(key, String.class);
-        return value != null ? LocalTime.parse(value, DateTimeFormatter.ISO_LOCAL_TIME) : null;
+        return decode(key, LocalTime.class, value -> LocalTime.parse(value, DateTimeFormatter.ISO_LOCAL_TIME));
     }
 
     /**
@@ -144,8 +154,7 @@ public class JavaStorage extends StorageBase {
      * @return The LocalDateTime if found and valid, otherwise null
      */
     private @Nullable LocalDateTime getLocalDateTime(String key) {
-        String value = get(key, String.class);
-        return value != null ? LocalDateTime.parse(value, DateTimeFormatter.ISO_LOCAL_DATE_TIME) : null;
+        return decode(key, LocalDateTime.class, value -> LocalDateTime.parse(value, DateTimeFormatter.ISO_LOCAL_DATE_TIME));
     }
 
     /**
@@ -165,8 +174,7 @@ public class JavaStorage extends StorageBase {
      * @return The ZonedDateTime if found and valid, otherwise null
      */
     private @Nullable ZonedDateTime getZonedDateTime(String key) {
-        String value = get(key, String.class);
-        return value != null ? ZonedDateTime.parse(value, DateTimeFormatter.ISO_ZONED_DATE_TIME) : null;
+        return decode(key, ZonedDateTime.class, value -> ZonedDateTime.parse(value, DateTimeFormatter.ISO_ZONED_DATE_TIME));
     }
 
     /**
@@ -186,8 +194,7 @@ public class JavaStorage extends StorageBase {
      * @return The Instant if found and valid, otherwise null
      */
     private @Nullable Instant getInstant(String key) {
-        String value = get(key, String.class);
-        return value != null ? Instant.parse(value) : null;
+        return decode(key, Instant.class, Instant::parse);
     }
 
     /**
@@ -207,8 +214,7 @@ public class JavaStorage extends StorageBase {
      * @return The Period if found and valid, otherwise null
      */
     private @Nullable Period getPeriod(String key) {
-        String value = get(key, String.class);
-        return value != null ? Period.parse(value) : null;
+        return decode(key, Period.class, Period::parse);
     }
 
     /**
@@ -228,8 +234,7 @@ public class JavaStorage extends StorageBase {
      * @return The Duration if found and valid, otherwise null
      */
     private @Nullable Duration getDuration(String key) {
-        String value = get(key, String.class);
-        return value != null ? Duration.parse(value) : null;
+        return decode(key, Duration.class, Duration::parse);
     }
 
     /**
@@ -249,8 +254,7 @@ public class JavaStorage extends StorageBase {
      * @return The File if path exists, otherwise null
      */
     private @Nullable File getFile(String key) {
-        String value = get(key, String.class);
-        return value != null ? new File(value) : null;
+        return decode(key, File.class, File::new);
     }
 
     /**
@@ -271,8 +275,7 @@ public class JavaStorage extends StorageBase {
      * @throws MalformedURLException if the stored string is not a valid URL
      */
     private @Nullable URL getUrl(String key) throws MalformedURLException {
-        String value = get(key, String.class);
-        return value != null ? new URL(value) : null;
+        return decode(key, URL.class, URL::new);
     }
 
     /**
@@ -292,8 +295,7 @@ public class JavaStorage extends StorageBase {
      * @return The URI if valid, otherwise null
      */
     private @Nullable URI getUri(String key) {
-        String value = get(key, String.class);
-        return value != null ? URI.create(value) : null;
+        return decode(key, URI.class, URI::create);
     }
 
     /**
@@ -313,8 +315,7 @@ public class JavaStorage extends StorageBase {
      * @return The BigInteger if valid, otherwise null
      */
     private @Nullable BigInteger getBigInteger(String key) {
-        String value = get(key, String.class);
-        return value != null ? new BigInteger(value) : null;
+        return decode(key, BigInteger.class, BigInteger::new);
     }
 
     /**
@@ -334,7 +335,68 @@ public class JavaStorage extends StorageBase {
      * @return The BigDecimal if valid, otherwise null
      */
     private @Nullable BigDecimal getBigDecimal(String key) {
-        String value = get(key, String.class);
-        return value != null ? new BigDecimal(value) : null;
+        return decode(key, BigDecimal.class, BigDecimal::new);
+    }
+
+    @Override
+    public void remove(@NotNull StoragePath path) {
+        super.remove(path);
+        decoded.remove(path.toString());
+    }
+
+    @Override
+    public void reload() {
+        super.reload();
+        decoded.clear();
+    }
+
+    /**
+     * Returns the decoded value of a key, parsing the stored string only if it changed since the
+     * value was last decoded as the given type.
+     *
+     * @param <T>     The decoded type
+     * @param <E>     The checked exception thrown by the decoder
+     * @param key     The storage key/path
+     * @param type    The decoded type
+     * @param decoder The parser for the stored string
+     * @return The decoded value, or null if the key does not exist
+     * @throws E if the decoder rejects the stored string
+     */
+    @SuppressWarnings("unchecked")
+    private <T, E extends Exception> @Nullable T decode(String key,
+                                                        @NotNull Class<T> type,
+                                                        @NotNull Decoder<T, E> decoder) throws E {
+        String raw = get(key, String.class);
+        int version = structureVersion();
+        if (version != decodedVersion) {
+            decoded.clear();
+            decodedVersion = version;
+        }
+        if (raw == null) {
+            decoded.remove(key);
+            return null;
+        }
+
+        Decoded entry = decoded.get(key);
+        if (entry != null && entry.type() == type && entry.raw().equals(raw)) return (T) entry.value();
+
+        T value = decoder.decode(raw);
+        if (decoded.size() >= MAX_DECODED) decoded.clear();
+        decoded.put(key, new Decoded(raw, type, value));
+        return value;
+    }
+
+    /**
+     * Parses the string representation of a value.
+     */
+    @FunctionalInterface
+    private interface Decoder<T, E extends Exception> {
+        @NotNull T decode(@NotNull String raw) throws E;
+    }
+
+    /**
+     * A decoded value together with the string it was decoded from.
+     */
+    private record Decoded(@NotNull String raw, @NotNull Class<?> type, @NotNull Object value) {
     }
-}
\ No newline at end of file
+}
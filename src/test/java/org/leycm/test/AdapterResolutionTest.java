@@ -0,0 +1,138 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageMetrics;
+import org.leycm.storage.StorageRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that adapters are resolved for subclasses and implementations of their registered type.
+ */
+public class AdapterResolutionTest {
+    private final List<Class<?>> adapted = new ArrayList<>();
+    private String name;
+    private PetStorage storage;
+
+    interface Named {
+        String name();
+    }
+
+    public static class Animal {
+        final String name;
+
+        Animal(String name) {
+            this.name = name;
+        }
+    }
+
+    public static class Dog extends Animal implements Named {
+        Dog(String name) {
+            super(name);
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+    }
+
+    record Tag(String name) implements Named {
+    }
+
+    /**
+     * Stores animals as {@code animal:<name>} and everything named as {@code named:<name>}.
+     */
+    public static class PetStorage extends StorageBase {
+        @Override
+        public void registerAdapter() {
+            addAdapter(Animal.class,
+                    (key, value) -> set(key, "animal:" + value.name),
+                    key -> new Animal(get(key, String.class).substring("animal:".length())));
+            addAdapter(Named.class, (key, value) -> set(key, "named:" + value.name()), key -> null);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("adapters");
+        storage = StorageBase.of(name, StorageBase.Type.JSON, true, PetStorage.class);
+        StorageRegistry.setMetrics(new StorageMetrics() {
+            @Override
+            public void adapterCalled(Class<?> type) {
+                adapted.add(type);
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        StorageRegistry.setMetrics(null);
+        TestStorages.delete(name);
+    }
+
+    @Test
+    void exactTypesUseTheirAdapter() {
+        storage.set("pet", new Animal("Rex"));
+
+        assertEquals("animal:Rex", storage.getPathValue("pet"));
+        assertEquals("Rex", storage.get("pet", Animal.class).name);
+    }
+
+    @Test
+    void subclassesUseTheAdapterOfTheirSuperclass() {
+        storage.set("pet", new Dog("Rex"));
+
+        assertEquals("animal:Rex", storage.getPathValue("pet"), "superclasses take precedence over interfaces");
+    }
+
+    @Test
+    void implementationsUseTheAdapterOfTheirInterface() {
+        storage.set("tag", new Tag("red"));
+
+        assertEquals("named:red", storage.getPathValue("tag"));
+    }
+
+    @Test
+    void gettersOnlyMatchTheExactType() {
+        storage.set("pet", new Dog("Rex"));
+
+        assertNull(storage.get("pet", Dog.class), "an animal adapter cannot create a dog");
+        assertEquals("Rex", storage.get("pet", Animal.class).name);
+    }
+
+    @Test
+    void valuesWithoutAdapterAreStoredAsIs() {
+        StringBuilder value = new StringBuilder("plain");
+        storage.set("value", value);
+        storage.set("value", value);
+
+        assertSame(value, storage.getPathValue("value"));
+        assertFalse(adapted.contains(StringBuilder.class));
+    }
+
+    @Test
+    void adaptersAddedLaterReplaceResolvedResults() {
+        storage.set("value", new StringBuilder("plain"));
+        storage.addAdapter(StringBuilder.class, (key, value) -> storage.set(key, "builder:" + value), key -> null);
+
+        storage.set("value", new StringBuilder("adapted"));
+
+        assertEquals("builder:adapted", storage.getPathValue("value"));
+    }
+
+    @Test
+    void adapterCallsAreCounted() {
+        storage.set("pet", new Dog("Rex"));
+        storage.get("pet", Animal.class);
+
+        assertEquals(List.of(Dog.class, Animal.class), adapted);
+    }
+}
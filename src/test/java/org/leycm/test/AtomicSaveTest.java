@@ -0,0 +1,133 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageRegistry;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that saves replace the storage file atomically, keep rotating backups and never lose
+ * changes when the file cannot be written.
+ */
+public class AtomicSaveTest {
+    private String name;
+    private Path file;
+    private StorageBase storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("atomic");
+        file = TestStorages.fileOf(name, StorageBase.Type.JSON);
+        storage = StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        StorageRegistry.disableWriteBehind();
+        StorageRegistry.setBackupCount(0);
+        TestStorages.delete(name);
+    }
+
+    private long readValue(Path path) throws Exception {
+        Map<String, Object> map = StorageRegistry.deserialize(Files.readString(path), StorageBase.Type.JSON);
+        return (Long) map.get("value");
+    }
+
+    @Test
+    void saveLeavesNoTemporaryFiles() throws Exception {
+        storage.set("value", 1);
+        storage.save();
+        storage.set("value", 2);
+        storage.save();
+
+        assertEquals(2, readValue(file));
+        try (Stream<Path> files = Files.list(file.getParent())) {
+            assertEquals(1, files.filter(path -> path.getFileName().toString().startsWith(file.getFileName().toString())).count());
+        }
+    }
+
+    @Test
+    void saveKeepsTheFileMode() throws Exception {
+        storage.set("value", 1);
+        storage.save();
+        Set<PosixFilePermission> mode;
+        try {
+            mode = PosixFilePermissions.fromString("rw-r-----");
+            Files.setPosixFilePermissions(file, mode);
+        } catch (UnsupportedOperationException e) {
+            return;
+        }
+
+        storage.set("value", 2);
+        storage.save();
+
+        assertEquals(2, readValue(file));
+        assertEquals(mode, Files.getPosixFilePermissions(file));
+    }
+
+    @Test
+    void backupsKeepPreviousVersions() throws Exception {
+        StorageRegistry.setBackupCount(2);
+        for (int value = 1; value <= 4; value++) {
+            storage.set("value", value);
+            storage.save();
+        }
+
+        assertEquals(4, readValue(file));
+        assertEquals(3, readValue(file.resolveSibling(file.getFileName() + ".bak.1")));
+        assertEquals(2, readValue(file.resolveSibling(file.getFileName() + ".bak.2")));
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".bak.3")));
+    }
+
+    @Test
+    void failedSaveKeepsChanges() throws Exception {
+        storage.set("value", 1);
+        Files.createDirectories(file.resolve("blocker"));
+
+        assertThrows(UncheckedIOException.class, storage::save);
+        assertTrue(storage.isDirty(), "a failed save must not discard the changes");
+
+        Files.delete(file.resolve("blocker"));
+        Files.delete(file);
+        storage.save();
+
+        assertFalse(storage.isDirty());
+        assertEquals(1, readValue(file));
+    }
+
+    @Test
+    void failedBackgroundSaveFailsItsFuture() throws Exception {
+        StorageRegistry.enableWriteBehind(Duration.ofMillis(1));
+        storage.set("value", 1);
+        Files.createDirectories(file.resolve("blocker"));
+
+        CompletableFuture<Void> save = storage.saveAsync();
+        ExecutionException failure = assertThrows(ExecutionException.class, save::get);
+        assertInstanceOf(UncheckedIOException.class, failure.getCause());
+        assertTrue(storage.isDirty());
+
+        Files.delete(file.resolve("blocker"));
+        Files.delete(file);
+        storage.flush().get();
+
+        assertFalse(storage.isDirty());
+        assertEquals(1, readValue(file));
+    }
+}
@@ -0,0 +1,98 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageRegistry;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the binary storage format decodes exactly what was encoded, with the same number
+ * types as the text formats, and rejects values it cannot represent.
+ */
+public class BinaryFormatTest {
+
+    private static Map<String, Object> roundTrip(Map<String, Object> map) {
+        return StorageRegistry.deserialize(StorageRegistry.serialize(map, StorageBase.Type.BINARY), StorageBase.Type.BINARY);
+    }
+
+    @Test
+    void roundTripsAllValueTypes() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("string", "text with \u00fcmlauts and emoji \ud83d\ude00");
+        map.put("empty", "");
+        map.put("true", true);
+        map.put("false", false);
+        map.put("long", Long.MIN_VALUE);
+        map.put("double", -0.5);
+        map.put("bigInteger", new BigInteger("123456789012345678901234567890"));
+        map.put("bigDecimal", new BigDecimal("-1234567890.0987654321"));
+        map.put("list", List.of(1L, "two", List.of(), Map.of("three", 3L)));
+        map.put("nested", Map.of("a", Map.of("b", Map.of("c", "deep")), "empty", Map.of()));
+
+        assertEquals(map, roundTrip(map));
+    }
+
+    @Test
+    void numbersAreDecodedLikeTheTextFormats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("int", 1);
+        map.put("short", (short) 2);
+        map.put("byte", (byte) 3);
+        map.put("float", 1.5f);
+
+        Map<String, Object> decoded = roundTrip(map);
+
+        assertEquals(1L, decoded.get("int"));
+        assertEquals(2L, decoded.get("short"));
+        assertEquals(3L, decoded.get("byte"));
+        assertEquals(1.5, decoded.get("float"));
+    }
+
+    @Test
+    void keysAreIndependentOfInsertionOrder() {
+        Map<String, Object> forward = new LinkedHashMap<>();
+        Map<String, Object> backward = new LinkedHashMap<>();
+        List<String> keys = new ArrayList<>(List.of("b", "a", "\u00e4", "A", "aa", "z", ""));
+        for (String key : keys) forward.put(key, key);
+        for (int i = keys.size() - 1; i >= 0; i--) backward.put(keys.get(i), keys.get(i));
+
+        assertEquals(StorageRegistry.serialize(forward, StorageBase.Type.BINARY),
+                StorageRegistry.serialize(backward, StorageBase.Type.BINARY));
+        assertEquals(forward, roundTrip(backward));
+    }
+
+    @Test
+    void nullValuesAreDropped() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("present", 1L);
+        map.put("missing", null);
+
+        assertEquals(Map.of("present", 1L), roundTrip(map));
+    }
+
+    @Test
+    void rejectsUnsupportedValues() {
+        assertThrows(IllegalArgumentException.class, () -> roundTrip(Map.of("data", new byte[]{1, 2, 3})));
+        assertThrows(IllegalArgumentException.class, () -> roundTrip(Map.of("when", new Date())));
+        assertThrows(IllegalArgumentException.class, () -> roundTrip(Map.of("list", List.of(new Object()))));
+    }
+
+    @Test
+    void rejectsCorruptInput() {
+        byte[] bytes = Base64.getDecoder().decode(StorageRegistry.serialize(Map.of("a", "b"), StorageBase.Type.BINARY));
+        bytes[0] = 'X';
+        String corrupt = Base64.getEncoder().encodeToString(bytes);
+
+        assertThrows(IllegalArgumentException.class, () -> StorageRegistry.deserialize(corrupt, StorageBase.Type.BINARY));
+    }
+}
@@ -0,0 +1,103 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageMetrics;
+import org.leycm.storage.StorageRegistry;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that concurrent registrations of the same file load it once and share the instance.
+ */
+public class ConcurrentRegistrationTest {
+    private static final int THREADS = 8;
+
+    private final AtomicInteger parses = new AtomicInteger();
+    private String name;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        TestStorages.setUp();
+        StorageRegistry.setMetrics(new StorageMetrics() {
+            @Override
+            public void parsed(StorageBase.Type type, long bytes, long nanos) {
+                parses.incrementAndGet();
+            }
+        });
+        name = TestStorages.uniqueName("registration");
+        file = TestStorages.fileOf(name, StorageBase.Type.JSON);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "{\"value\": 1}");
+    }
+
+    @AfterEach
+    void tearDown() {
+        StorageRegistry.setMetrics(null);
+        TestStorages.delete(name);
+    }
+
+    @Test
+    void concurrentRegistrationsShareOneLoad() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<JavaStorage>> registrations = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                registrations.add(executor.submit(() -> {
+                    start.await();
+                    return StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class);
+                }));
+            }
+            start.countDown();
+
+            JavaStorage first = registrations.get(0).get();
+            for (Future<JavaStorage> registration : registrations) {
+                assertSame(first, registration.get());
+            }
+            assertEquals(1, first.getInt("value", -1));
+            assertEquals(1, parses.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void asyncRegistrationsShareOneLoad() throws Exception {
+        List<CompletableFuture<JavaStorage>> registrations = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            registrations.add(StorageRegistry.registerAsync(name, StorageBase.Type.JSON, false, JavaStorage.class));
+        }
+
+        JavaStorage first = registrations.get(0).get();
+        for (CompletableFuture<JavaStorage> registration : registrations) {
+            assertSame(first, registration.get());
+        }
+        assertSame(first, StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class));
+        assertEquals(1, parses.get());
+    }
+
+    @Test
+    void failedLoadsAreRetried() throws Exception {
+        Files.writeString(file, "{ not json");
+        assertThrows(RuntimeException.class, () -> StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class));
+
+        Files.writeString(file, "{\"value\": 2}");
+        assertEquals(2, StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class).getInt("value", -1));
+    }
+}
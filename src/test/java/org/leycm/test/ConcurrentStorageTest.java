@@ -0,0 +1,126 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that storages created with {@link StorageBase.Option#CONCURRENT} can be read and written
+ * from many threads at once.
+ */
+public class ConcurrentStorageTest {
+    private static final int THREADS = 8;
+    private static final int KEYS = 2_000;
+
+    private String name;
+    private StorageBase storage;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("concurrent");
+        storage = StorageBase.of(name, StorageBase.Type.JSON, true, JavaStorage.class, StorageBase.Option.CONCURRENT);
+        executor = Executors.newFixedThreadPool(THREADS + 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        TestStorages.delete(name);
+    }
+
+    @Test
+    void concurrentWritersCreateSharedSectionsOnce() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int id = thread;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int key = 0; key < KEYS; key++) {
+                    storage.set("shared.s" + key % 10 + ".t" + id + "k" + key, key);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+
+        // "shared", its ten sections and every written key
+        assertEquals(1 + 10 + THREADS * KEYS, storage.getKeys(true).size());
+        for (int thread = 0; thread < THREADS; thread++) {
+            assertEquals(KEYS - 1, storage.getInt("shared.s" + (KEYS - 1) % 10 + ".t" + thread + "k" + (KEYS - 1), -1));
+        }
+    }
+
+    @Test
+    void readersNeverFailDuringWrites() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        Future<?> writer = executor.submit(() -> {
+            for (int round = 0; round < 200; round++) {
+                for (int key = 0; key < 50; key++) {
+                    storage.set("data.k" + key, round);
+                }
+                storage.remove("data");
+            }
+            running.set(false);
+        });
+
+        List<Future<?>> readers = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            readers.add(executor.submit(() -> {
+                while (running.get()) {
+                    int value = storage.getInt("data.k7", -1);
+                    assertTrue(value >= -1 && value < 200);
+                    for (String key : storage.getKeys("data", false)) {
+                        assertTrue(key.startsWith("k"));
+                    }
+                    storage.getKeys(true).size();
+                }
+                return null;
+            }));
+        }
+
+        writer.get();
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+    }
+
+    @Test
+    void sectionsAreConcurrentMaps() {
+        storage.set("a.b.c", 1);
+        storage.fromString("{\"parsed\": {\"nested\": {\"value\": 1, \"missing\": null}}}");
+
+        assertInstanceOf(ConcurrentHashMap.class, storage.getPathValue("a"));
+        assertInstanceOf(ConcurrentHashMap.class, storage.getPathValue("a.b"));
+        assertInstanceOf(ConcurrentHashMap.class, storage.getPathValue("parsed.nested"));
+        assertEquals(1, storage.getInt("parsed.nested.value", -1));
+        assertFalse(storage.getKeys("parsed.nested", false).contains("missing"), "null values cannot be stored");
+    }
+
+    @Test
+    void settingNullRemovesTheKey() {
+        storage.set("value", 1);
+        storage.set("value", null);
+
+        assertNull(storage.getPathValue("value"));
+        assertFalse(storage.getKeys(false).contains("value"));
+    }
+}
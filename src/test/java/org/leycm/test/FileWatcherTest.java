@@ -0,0 +1,135 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageMetrics;
+import org.leycm.storage.StorageRegistry;
+import org.leycm.storage.StorageTransaction;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that watched storages pick up changes made to their file by other programs, but not their
+ * own saves.
+ */
+public class FileWatcherTest {
+    private static final Duration DEBOUNCE = Duration.ofMillis(50);
+
+    private final AtomicInteger parses = new AtomicInteger();
+    private String name;
+    private Path file;
+    private StorageBase storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("watched");
+        file = TestStorages.fileOf(name, StorageBase.Type.JSON);
+        storage = StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class);
+        storage.set("value", 1);
+        storage.save();
+
+        StorageRegistry.setMetrics(new StorageMetrics() {
+            @Override
+            public void parsed(StorageBase.Type type, long bytes, long nanos) {
+                parses.incrementAndGet();
+            }
+        });
+        StorageRegistry.watch(DEBOUNCE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        StorageRegistry.unwatch();
+        StorageRegistry.setMetrics(null);
+        TestStorages.delete(name);
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @Test
+    void externalChangesAreReloaded() throws Exception {
+        Files.writeString(file, "{\"value\": 2, \"added\": true}");
+
+        assertTrue(await(() -> storage.getInt("value", -1) == 2), "the storage must be reloaded");
+        assertEquals(Boolean.TRUE, storage.get("added", Boolean.class));
+    }
+
+    @Test
+    void ownSavesAreNotReloaded() throws Exception {
+        storage.set("value", 3);
+        storage.save();
+        Thread.sleep(DEBOUNCE.toMillis() * 10);
+
+        assertEquals(0, parses.get());
+        assertEquals(3, storage.getInt("value", -1));
+    }
+
+    @Test
+    void unwatchedStoragesAreNotReloaded() throws Exception {
+        StorageRegistry.unwatch();
+        Files.writeString(file, "{\"value\": 2}");
+        Thread.sleep(DEBOUNCE.toMillis() * 10);
+
+        assertEquals(1, storage.getInt("value", -1));
+    }
+
+    @Test
+    void unsavedChangesAreNotDiscarded() throws Exception {
+        storage.set("local", 5);
+        Files.writeString(file, "{\"value\": 2}");
+        Thread.sleep(DEBOUNCE.toMillis() * 10);
+
+        assertEquals(5, storage.getInt("local", -1));
+        assertEquals(1, storage.getInt("value", -1));
+        assertTrue(storage.isDirty());
+
+        storage.save();
+        assertTrue(Files.readString(file).contains("local"));
+    }
+
+    @Test
+    void reloadsWaitForOpenTransactions() throws Exception {
+        StorageTransaction transaction = storage.begin();
+        try {
+            Files.writeString(file, "{\"value\": 2}");
+            Thread.sleep(DEBOUNCE.toMillis() * 10);
+
+            assertEquals(1, storage.getInt("value", -1));
+        } finally {
+            transaction.rollback();
+        }
+
+        assertTrue(await(() -> storage.getInt("value", -1) == 2), "the reload must run once the transaction ended");
+    }
+
+    @Test
+    void committedTransactionsAreNotDiscarded() throws Exception {
+        try (StorageTransaction transaction = storage.begin()) {
+            transaction.set("local", 5);
+            Files.writeString(file, "{\"value\": 2}");
+            Thread.sleep(DEBOUNCE.toMillis() * 10);
+            transaction.commit();
+        }
+        Thread.sleep(DEBOUNCE.toMillis() * 10);
+
+        assertEquals(5, storage.getInt("local", -1));
+        assertTrue(storage.isDirty());
+    }
+}
@@ -0,0 +1,94 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the type adapters of {@link JavaStorage} and the cache of their decoded values.
+ */
+public class JavaStorageTest {
+    private String name;
+    private JavaStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("java");
+        storage = StorageBase.of(name, StorageBase.Type.JSON, true, JavaStorage.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestStorages.delete(name);
+    }
+
+    @Test
+    void adaptersRoundTrip() {
+        UUID id = UUID.randomUUID();
+        Instant now = Instant.ofEpochMilli(1_700_000_000_000L);
+        storage.set("id", id);
+        storage.set("when", now);
+        storage.set("amount", new BigDecimal("12.50"));
+
+        assertEquals(id, storage.get("id", UUID.class));
+        assertEquals(now, storage.get("when", Instant.class));
+        assertEquals(new BigDecimal("12.50"), storage.get("amount", BigDecimal.class));
+        assertEquals(id.toString(), storage.get("id", String.class));
+    }
+
+    @Test
+    void repeatedReadsReturnTheCachedValue() {
+        storage.set("id", UUID.randomUUID());
+
+        assertSame(storage.get("id", UUID.class), storage.get("id", UUID.class));
+    }
+
+    @Test
+    void changedValuesAreDecodedAgain() {
+        storage.set("id", UUID.randomUUID());
+        storage.get("id", UUID.class);
+        UUID changed = UUID.randomUUID();
+        storage.set("id", changed);
+
+        assertEquals(changed, storage.get("id", UUID.class));
+        storage.remove("id");
+        assertNull(storage.get("id", UUID.class));
+    }
+
+    @Test
+    void replacingASectionDropsItsCachedValues() {
+        UUID id = UUID.randomUUID();
+        storage.set("user.id", id);
+        UUID cached = storage.get("user.id", UUID.class);
+
+        storage.set("user", Map.of("id", id.toString()));
+
+        UUID reread = storage.get("user.id", UUID.class);
+        assertEquals(id, reread);
+        assertNotSame(cached, reread, "values of a replaced section must not stay cached");
+    }
+
+    @Test
+    void theCacheIsBounded() {
+        storage.set("first", UUID.randomUUID());
+        UUID first = storage.get("first", UUID.class);
+        for (int i = 0; i < 2_000; i++) {
+            storage.set("key" + i, UUID.randomUUID());
+            storage.get("key" + i, UUID.class);
+        }
+
+        UUID reread = storage.get("first", UUID.class);
+        assertEquals(first, reread);
+        assertNotSame(first, reread, "old entries must be evicted once the cache is full");
+    }
+}
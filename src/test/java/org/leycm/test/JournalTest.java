@@ -0,0 +1,130 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageRegistry;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link StorageBase.Option#JOURNALED} storages persist every change through their
+ * journal, recover from a torn tail and compact the journal into a new snapshot.
+ */
+public class JournalTest {
+    private String name;
+    private Path file;
+    private Path journal;
+    private StorageBase storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("journal");
+        file = TestStorages.fileOf(name, StorageBase.Type.JSON);
+        journal = file.resolveSibling(file.getFileName() + ".journal");
+        storage = StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class, StorageBase.Option.JOURNALED);
+        // the first save writes the snapshot, later changes only go to the journal
+        storage.save();
+    }
+
+    @AfterEach
+    void tearDown() {
+        StorageRegistry.disableWriteBehind();
+        StorageRegistry.setJournalCompactionSize(1024 * 1024);
+        TestStorages.delete(name);
+    }
+
+    private long journalSize() throws Exception {
+        try {
+            return Files.size(journal);
+        } catch (NoSuchFileException e) {
+            return 0; // removed by a compaction
+        }
+    }
+
+    @Test
+    void changesAreRecoveredFromTheJournal() throws Exception {
+        storage.set("player.name", "Steve");
+        storage.set("player.level", 7);
+        storage.set("player.removed", true);
+        storage.remove("player.removed");
+        storage.save();
+
+        assertTrue(Files.size(journal) > 0);
+        assertFalse(Files.readString(file).contains("Steve"), "changes must not rewrite the snapshot");
+        storage.reload();
+
+        assertEquals("Steve", storage.get("player.name", String.class));
+        assertEquals(7, storage.getInt("player.level", -1));
+        assertNull(storage.getPathValue("player.removed"));
+    }
+
+    @Test
+    void valuesTheJournalCannotEncodeAreSavedInTheSnapshot() throws Exception {
+        storage.set("data", new byte[]{1, 2, 3});
+
+        assertTrue(storage.isDirty(), "the change must be left for the next snapshot");
+        storage.save();
+
+        assertFalse(storage.isDirty());
+        assertTrue(Files.readString(file).contains("\"data\""));
+    }
+
+    @Test
+    void tornTailIsDiscarded() throws Exception {
+        storage.set("value", 1);
+        storage.save();
+        long intact = Files.size(journal);
+
+        // a record whose write was interrupted: a length prefix without the payload
+        Files.write(journal, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+        storage.reload();
+
+        assertEquals(1, storage.getInt("value", -1));
+        assertEquals(intact, Files.size(journal));
+
+        storage.set("value", 2);
+        storage.save();
+        storage.reload();
+        assertEquals(2, storage.getInt("value", -1));
+    }
+
+    @Test
+    void writeBehindSavesSyncTheJournal() throws Exception {
+        StorageRegistry.enableWriteBehind(Duration.ofMillis(1));
+        storage.set("value", 1);
+
+        storage.saveAsync().get();
+        storage.reload();
+
+        assertEquals(1, storage.getInt("value", -1));
+    }
+
+    @Test
+    void largeJournalsAreCompacted() throws Exception {
+        StorageRegistry.setJournalCompactionSize(256);
+        for (int i = 0; i < 100; i++) {
+            storage.set("key" + i, i);
+        }
+        storage.save();
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (journalSize() >= 256 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(journalSize() < 256, "compaction must truncate the journal");
+        assertTrue(Files.readString(file).contains("key0"), "compaction must write a new snapshot");
+        storage.reload();
+        assertEquals(99, storage.getInt("key99", -1));
+    }
+}
@@ -0,0 +1,124 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageRegistry;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks lookups in {@link StorageBase.Option#MAPPED} storages, which read the binary file in place,
+ * and that corrupt files fail lookups instead of reading out of bounds.
+ */
+public class MappedStorageTest {
+    /** Magic bytes, version and the tag of the root map in front of its body length. */
+    private static final int ROOT = 3 + 1 + 1;
+    /** The root map's body length and entry count in front of its offset table. */
+    private static final int ROOT_TABLE = ROOT + 2 * Integer.BYTES;
+
+    private static final Map<String, Object> TREE = Map.of(
+            "name", "server",
+            "port", 25565L,
+            "players", Map.of("alex", Map.of("level", 3L), "steve", Map.of("level", 7L)),
+            "tags", List.of("a", "b"));
+
+    private String name;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("mapped");
+        file = TestStorages.fileOf(name, StorageBase.Type.BINARY);
+        Files.createDirectories(file.getParent());
+        Files.write(file, encode(TREE));
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestStorages.delete(name);
+    }
+
+    private static byte[] encode(Map<String, Object> tree) {
+        return Base64.getDecoder().decode(StorageRegistry.serialize(tree, StorageBase.Type.BINARY));
+    }
+
+    private StorageBase open() {
+        return StorageBase.of(name, StorageBase.Type.BINARY, JavaStorage.class, StorageBase.Option.MAPPED);
+    }
+
+    private void corrupt(int position, int value) throws Exception {
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(position, value);
+        Files.write(file, bytes);
+    }
+
+    @Test
+    void looksUpValues() {
+        StorageBase storage = open();
+
+        assertEquals("server", storage.get("name", String.class));
+        assertEquals(25565, storage.getInt("port", -1));
+        assertEquals(7, storage.getInt("players.steve.level", -1));
+        assertEquals(List.of("a", "b"), storage.getPathValue("tags"));
+        assertEquals(Map.of("level", 3L), storage.getPathValue("players.alex"));
+        assertNull(storage.getPathValue("players.notch.level"));
+        assertNull(storage.getPathValue("name.length"));
+    }
+
+    @Test
+    void listsKeys() {
+        StorageBase storage = open();
+
+        assertEquals(Set.of("name", "port", "players", "tags"), storage.getKeys(false));
+        assertEquals(Set.of("alex", "steve"), storage.getKeys("players", false));
+        assertEquals(Set.of("alex", "alex.level", "steve", "steve.level"), storage.getKeys("players", true));
+        assertTrue(storage.getKeys("name", true).isEmpty());
+    }
+
+    @Test
+    void rejectsCorruptEntryCounts() throws Exception {
+        corrupt(ROOT + Integer.BYTES, Integer.MAX_VALUE);
+        StorageBase storage = open();
+
+        assertThrows(IllegalStateException.class, () -> storage.getPathValue("name"));
+        assertThrows(IllegalStateException.class, () -> storage.getKeys(true));
+    }
+
+    @Test
+    void rejectsCorruptBodyLengths() throws Exception {
+        corrupt(ROOT, Integer.MAX_VALUE);
+        StorageBase storage = open();
+
+        assertThrows(IllegalStateException.class, () -> storage.getPathValue("name"));
+    }
+
+    @Test
+    void rejectsCorruptOffsets() throws Exception {
+        corrupt(ROOT_TABLE, -8);
+        StorageBase storage = open();
+
+        assertThrows(IllegalStateException.class, () -> storage.getKeys(false));
+    }
+
+    @Test
+    void rejectsCorruptKeyLengths() throws Exception {
+        int firstEntry = ROOT_TABLE + TREE.size() * Integer.BYTES;
+        corrupt(firstEntry, Integer.MAX_VALUE);
+        StorageBase storage = open();
+
+        assertThrows(IllegalStateException.class, () -> storage.getKeys(false));
+        assertThrows(IllegalStateException.class, () -> storage.getPathValue("name"));
+    }
+}
@@ -0,0 +1,103 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageMetrics;
+import org.leycm.storage.StorageRegistry;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link StorageRegistry#preloadAll} loads the storage files found in the configured storage
+ * directory and serves later registrations of them from the cache.
+ */
+public class PreloadTest {
+    private final AtomicInteger parses = new AtomicInteger();
+    private String directory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        TestStorages.setUp();
+        directory = TestStorages.uniqueName("preload");
+        write("alpha.json", "{\"value\": 1}");
+        write("beta.yml", "value: 2\n");
+        write("nested/gamma.json", "{\"value\": 3}");
+        write("alpha.json.journal", "not a storage");
+        write("beta.yml.1", "value: 0\n");
+        write("notes.txt", "not a storage");
+
+        StorageRegistry.setMetrics(new StorageMetrics() {
+            @Override
+            public void parsed(StorageBase.Type type, long bytes, long nanos) {
+                parses.incrementAndGet();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        StorageRegistry.setMetrics(null);
+        TestStorages.delete(directory);
+    }
+
+    private void write(String file, String content) throws Exception {
+        Path path = Path.of(StorageRegistry.getStorageDir()).resolve(directory).resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content);
+    }
+
+    @Test
+    void loadsTheFilesOnDisk() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Map<String, JavaStorage> loaded;
+        try {
+            loaded = StorageRegistry.preloadAll(directory, JavaStorage.class, executor).get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(Set.of(directory + "/alpha", directory + "/beta", directory + "/nested/gamma"), loaded.keySet());
+        assertEquals(1, loaded.get(directory + "/alpha").getInt("value", -1));
+        assertEquals(2, loaded.get(directory + "/beta").getInt("value", -1));
+        assertEquals(3, loaded.get(directory + "/nested/gamma").getInt("value", -1));
+        assertEquals(3, parses.get());
+    }
+
+    @Test
+    void registrationsAreServedFromTheCache() throws Exception {
+        Map<String, JavaStorage> loaded = StorageRegistry.preloadAll(directory, JavaStorage.class).get();
+
+        assertSame(loaded.get(directory + "/alpha"),
+                StorageBase.of(directory + "/alpha", StorageBase.Type.JSON, JavaStorage.class));
+        assertSame(loaded.get(directory + "/beta"),
+                StorageBase.of(directory + "/beta", StorageBase.Type.YAML, JavaStorage.class));
+        assertEquals(3, parses.get());
+    }
+
+    @Test
+    void loadedStoragesAreSkipped() throws Exception {
+        JavaStorage alpha = StorageBase.of(directory + "/alpha", StorageBase.Type.JSON, JavaStorage.class);
+
+        Map<String, JavaStorage> loaded = StorageRegistry.preloadAll(directory, JavaStorage.class).get();
+
+        assertEquals(Set.of(directory + "/beta", directory + "/nested/gamma"), loaded.keySet());
+        assertSame(alpha, StorageBase.of(directory + "/alpha", StorageBase.Type.JSON, JavaStorage.class));
+        assertEquals(3, parses.get());
+    }
+
+    @Test
+    void missingDirectoriesLoadNothing() throws Exception {
+        assertTrue(StorageRegistry.preloadAll(directory + "/missing", JavaStorage.class).get().isEmpty());
+    }
+}
@@ -0,0 +1,80 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StoragePath;
+import org.leycm.storage.impl.JavaStorage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the primitive accessors and that numbers are stored in one representation no matter how
+ * they were written.
+ */
+public class PrimitiveValuesTest {
+    private String name;
+    private StorageBase storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("primitive");
+        storage = StorageBase.of(name, StorageBase.Type.JSON, true, JavaStorage.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestStorages.delete(name);
+    }
+
+    @Test
+    void integralNumbersAreStoredAsLong() {
+        storage.set("primitive", 1);
+        storage.set("boxed", Integer.valueOf(1));
+        storage.set("short", (short) 1);
+        storage.set("byte", (byte) 1);
+        storage.batch(batch -> batch.set("batched", Integer.valueOf(1)));
+
+        for (String key : new String[]{"primitive", "boxed", "short", "byte", "batched"}) {
+            assertEquals(1L, storage.getPathValue(key), key);
+        }
+    }
+
+    @Test
+    void floatsAreStoredAsDouble() {
+        storage.set("boxed", Float.valueOf(0.5f));
+        storage.set("primitive", 0.5);
+
+        assertEquals(0.5, storage.getPathValue("boxed"));
+        assertEquals(0.5, storage.getPathValue("primitive"));
+    }
+
+    @Test
+    void primitiveGettersReadEveryNumber() {
+        StoragePath path = StoragePath.of("stats.level");
+        storage.set(path, 42L);
+
+        assertEquals(42, storage.getInt(path, -1));
+        assertEquals(42L, storage.getLong("stats.level", -1));
+        assertEquals(42.0, storage.getDouble("stats.level", -1));
+        assertEquals(42, storage.get("stats.level", Integer.class));
+    }
+
+    @Test
+    void mismatchingValuesReturnTheDefault() {
+        storage.set("fraction", 1.5);
+        storage.set("huge", Long.MAX_VALUE);
+        storage.set("text", "12");
+        storage.set("flag", true);
+
+        assertEquals(-1, storage.getInt("fraction", -1));
+        assertEquals(-1, storage.getInt("huge", -1));
+        assertEquals(-1, storage.getInt("text", -1));
+        assertEquals(-1, storage.getInt("missing", -1));
+        assertEquals(Long.MAX_VALUE, storage.getLong("huge", -1));
+        assertTrue(storage.getBoolean("flag", false));
+        assertFalse(storage.getBoolean("text", false));
+    }
+}
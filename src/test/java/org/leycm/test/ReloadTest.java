@@ -0,0 +1,127 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that reloading a storage replaces its whole tree at once.
+ */
+public class ReloadTest {
+    private String name;
+    private Path file;
+    private StorageBase storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("reload");
+        file = TestStorages.fileOf(name, StorageBase.Type.JSON);
+        storage = StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class, StorageBase.Option.INDEXED);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestStorages.delete(name);
+    }
+
+    private static String content(int version) {
+        StringBuilder json = new StringBuilder("{\"version\": ").append(version).append(", \"values\": {");
+        for (int key = 0; key < 100; key++) {
+            if (key > 0) json.append(", ");
+            json.append("\"k").append(key).append("\": ").append(version);
+        }
+        return json.append("}}").toString();
+    }
+
+    @Test
+    void keysDeletedOnDiskDisappear() throws Exception {
+        storage.set("kept", 1);
+        storage.set("deleted.nested", 2);
+        storage.save();
+
+        Files.writeString(file, "{\"kept\": 3}");
+        storage.reload();
+
+        assertEquals(3, storage.getInt("kept", -1));
+        assertNull(storage.getPathValue("deleted"));
+        assertNull(storage.getPathValue("deleted.nested"), "the index must not keep deleted keys");
+        assertFalse(storage.isDirty());
+    }
+
+    @Test
+    void readersSeeEitherTheOldOrTheNewTree() throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content(0));
+        storage.reload();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicBoolean running = new AtomicBoolean(true);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                readers.add(executor.submit(() -> {
+                    while (running.get()) {
+                        Object values = storage.getPathValue("values");
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> tree = (Map<String, Object>) values;
+                        long first = (Long) tree.get("k0");
+                        for (Object value : tree.values()) {
+                            assertEquals(first, value, "a reader must never see a half reloaded tree");
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            for (int version = 1; version <= 50; version++) {
+                Files.writeString(file, content(version));
+                storage.reload();
+            }
+            running.set(false);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(50, storage.getInt("values.k99", -1));
+    }
+
+    @Test
+    void listenersRunAfterTheLockWasReleased() throws Exception {
+        storage.set("value", 1);
+        storage.save();
+        List<Throwable> failures = new ArrayList<>();
+        storage.addChangeListener("value", change -> {
+            try {
+                CompletableFuture.runAsync(() -> storage.set("other", 1)).get(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                failures.add(e);
+            }
+        });
+
+        Files.writeString(file, "{\"value\": 2}");
+        storage.reload();
+
+        assertEquals(List.of(), failures, "writers on other threads must not wait for the listener");
+        assertEquals(2, storage.getInt("value", -1));
+    }
+}
@@ -0,0 +1,138 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageMetrics;
+import org.leycm.storage.StorageRegistry;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link StorageBase.Option#SHARDED} storages spread their top-level keys over several
+ * files and only rewrite the files of modified keys.
+ */
+public class ShardedStorageTest {
+    private static final int SHARDS = 4;
+
+    private final AtomicInteger writes = new AtomicInteger();
+    private String name;
+    private StorageBase storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        StorageRegistry.setShardCount(SHARDS);
+        StorageRegistry.setMetrics(new StorageMetrics() {
+            @Override
+            public void serialized(StorageBase.Type type, long bytes, long nanos) {
+                writes.incrementAndGet();
+            }
+        });
+        name = TestStorages.uniqueName("sharded");
+        storage = StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class, StorageBase.Option.SHARDED);
+    }
+
+    @AfterEach
+    void tearDown() {
+        StorageRegistry.setMetrics(null);
+        StorageRegistry.setShardCount(16);
+        TestStorages.delete(name);
+    }
+
+    private Path shardFile(String key) {
+        int shard = Math.floorMod(key.hashCode(), SHARDS);
+        return TestStorages.FILES.resolve(name).resolve("shard-" + shard + "-of-" + SHARDS + ".json");
+    }
+
+    @Test
+    void keysAreSpreadOverShardFiles() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            storage.set("player" + i + ".level", i);
+        }
+        storage.save();
+
+        for (int i = 0; i < 20; i++) {
+            String key = "player" + i;
+            Map<String, Object> shard = StorageRegistry.deserialize(Files.readString(shardFile(key)), StorageBase.Type.JSON);
+            assertEquals(Map.of("level", (long) i), shard.get(key));
+        }
+    }
+
+    @Test
+    void onlyModifiedShardsAreWritten() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            storage.set("player" + i + ".level", i);
+        }
+        storage.save();
+        Path untouched = null;
+        for (int i = 0; i < 20 && untouched == null; i++) {
+            if (!shardFile("player" + i).equals(shardFile("player3"))) untouched = shardFile("player" + i);
+        }
+        String before = Files.readString(untouched);
+
+        writes.set(0);
+        storage.set("player3.level", 42);
+        storage.save();
+
+        assertEquals(1, writes.get());
+        assertEquals(before, Files.readString(untouched));
+        assertTrue(Files.readString(shardFile("player3")).contains("42"));
+    }
+
+    @Test
+    void reloadKeepsSavedValues() {
+        storage.set("player1.level", 1);
+        storage.set("player2.level", 2);
+        storage.save();
+        storage.set("player1.level", 100);
+
+        storage.reload();
+
+        assertEquals(1, storage.getInt("player1.level", -1));
+        assertEquals(2, storage.getInt("player2.level", -1));
+    }
+
+    @Test
+    void reloadNotifiesOutsideTheLock() {
+        storage.set("player1.level", 1);
+        storage.save();
+        storage.set("player1.level", 100);
+
+        List<String> notified = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        Runnable writeFromAnotherThread = () -> {
+            try {
+                CompletableFuture.runAsync(() -> storage.set("other", 1)).get(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                failures.add(e);
+            }
+        };
+        storage.watch("player1", change -> {
+            notified.add("watch");
+            writeFromAnotherThread.run();
+        });
+        storage.addChangeListener("player1.level", change -> {
+            notified.add("listener");
+            writeFromAnotherThread.run();
+        });
+
+        storage.reload();
+
+        assertEquals(List.of(), failures, "listeners must not run while the reload holds the lock");
+        assertEquals(2, notified.size());
+        assertEquals(1, storage.getInt("player1.level", -1));
+        assertTrue(storage.isDirty(), "writes of listeners must not be marked as saved");
+    }
+}
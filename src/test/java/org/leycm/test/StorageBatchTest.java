@@ -0,0 +1,172 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageChange;
+import org.leycm.storage.StorageMetrics;
+import org.leycm.storage.StorageRegistry;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that batches apply all of their mutations as one unit and save the storage at most once.
+ */
+public class StorageBatchTest {
+    private final AtomicInteger saves = new AtomicInteger();
+    private String name;
+    private StorageBase storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("batch");
+        storage = StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class, StorageBase.Option.INDEXED);
+        StorageRegistry.setMetrics(new StorageMetrics() {
+            @Override
+            public void serialized(StorageBase.Type type, long bytes, long nanos) {
+                saves.incrementAndGet();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        StorageRegistry.setMetrics(null);
+        TestStorages.delete(name);
+    }
+
+    @Test
+    void mutationsAreApplied() {
+        storage.set("user.legacy", true);
+
+        storage.batch(batch -> batch
+                .set("user.name", "Steve")
+                .set("user.age", 42)
+                .set("user.address.city", "Springfield")
+                .set("settings.theme", "dark")
+                .set("user.address.zip", 12345)
+                .remove("user.legacy")
+                .remove("missing.key"));
+
+        assertEquals("Steve", storage.get("user.name", String.class));
+        assertEquals(42, storage.getInt("user.age", -1));
+        assertEquals("Springfield", storage.get("user.address.city", String.class));
+        assertEquals(12345, storage.getInt("user.address.zip", -1));
+        assertEquals("dark", storage.get("settings.theme", String.class));
+        assertNull(storage.getPathValue("user.legacy"));
+        assertEquals(Set.of("name", "age", "address", "address.city", "address.zip"), storage.getKeys("user", true));
+        assertTrue(storage.isDirty());
+    }
+
+    @Test
+    void valuesAndSectionsReplaceEachOther() {
+        storage.batch(batch -> batch
+                .set("a", 1)
+                .set("a.b", 2)
+                .set("c.d", 3)
+                .set("c", "flat")
+                .set("c.e", 4));
+
+        assertEquals(Map.of("b", 2L), storage.getPathValue("a"));
+        assertEquals(Map.of("e", 4L), storage.getPathValue("c"));
+        assertEquals(Set.of("a", "a.b", "c", "c.e"), storage.getKeys(true));
+    }
+
+    @Test
+    void mutationsOutsideTheBatchAreSeen() {
+        storage.batch(batch -> {
+            batch.set("a.b", 1);
+            storage.set("a", new LinkedHashMap<>(Map.of("c", 2)));
+            batch.set("a.d", 3);
+        });
+
+        assertNull(storage.getPathValue("a.b"));
+        assertEquals(2, storage.getInt("a.c", -1));
+        assertEquals(3, storage.getInt("a.d", -1));
+    }
+
+    @Test
+    void adaptersAreApplied() {
+        UUID id = UUID.randomUUID();
+        storage.batch(batch -> batch.set("user.id", id).set("user.name", "Steve"));
+
+        assertEquals(id.toString(), storage.getPathValue("user.id"));
+        assertEquals(id, storage.get("user.id", UUID.class));
+    }
+
+    @Test
+    void theStorageIsSavedOnce() {
+        storage.batch(batch -> {
+            for (int i = 0; i < 100; i++) {
+                batch.set("values.k" + i, i).save();
+            }
+        });
+
+        assertEquals(1, saves.get());
+        assertFalse(storage.isDirty());
+    }
+
+    @Test
+    void theStorageIsOnlySavedOnRequest() {
+        storage.batch(batch -> batch.set("value", 1));
+
+        assertEquals(0, saves.get());
+        assertTrue(storage.isDirty());
+    }
+
+    @Test
+    void failedBatchesKeepTheirMutationsButAreNotSaved() {
+        assertThrows(IllegalStateException.class, () -> storage.batch(batch -> {
+            batch.set("value", 1).save();
+            throw new IllegalStateException("failed");
+        }));
+
+        assertEquals(1, storage.getInt("value", -1));
+        assertEquals(0, saves.get());
+    }
+
+    @Test
+    void otherWritersWaitForTheBatch() throws Exception {
+        CompletableFuture<?>[] writer = new CompletableFuture<?>[1];
+        storage.batch(batch -> {
+            batch.set("value", 1);
+            writer[0] = CompletableFuture.runAsync(() -> storage.set("value", 2));
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            assertFalse(writer[0].isDone(), "the writer must wait for the lock of the batch");
+            batch.set("other", 1);
+        });
+        writer[0].get();
+
+        assertEquals(2, storage.getInt("value", -1));
+    }
+
+    @Test
+    void watchersReceiveTheChangesAfterTheBatch() {
+        List<StorageChange> changes = new CopyOnWriteArrayList<>();
+        storage.watch("user", change -> {
+            assertEquals("Steve", storage.get("user.name", String.class), "watchers run after the whole batch");
+            changes.add(change);
+        });
+
+        storage.batch(batch -> batch.set("user.age", 42).set("user.name", "Steve").set("other", 1));
+
+        assertEquals(List.of(new StorageChange("user.age", null, 42L), new StorageChange("user.name", null, "Steve")),
+                changes);
+    }
+}
@@ -0,0 +1,126 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageMetrics;
+import org.leycm.storage.StorageRegistry;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that storages evicted from the registry cache keep their changes and are revived by their
+ * next registration, and that {@link StorageRegistry#storageCash} can still be modified.
+ */
+public class StorageCacheTest {
+    private final List<String> names = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+    }
+
+    @AfterEach
+    void tearDown() {
+        StorageRegistry.setCacheLimits(0, null);
+        StorageRegistry.disableWriteBehind();
+        StorageRegistry.flush().join();
+        StorageRegistry.setMetrics(null);
+        TestStorages.deleteAll();
+    }
+
+    private StorageBase register() {
+        String name = TestStorages.uniqueName("cache");
+        names.add(name);
+        return StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class);
+    }
+
+    @Test
+    void shrinkingTheCacheSavesEvictedStorages() throws Exception {
+        StorageBase first = register();
+        first.set("value", 1);
+        StorageBase second = register();
+        second.set("value", 2);
+
+        StorageRegistry.setCacheLimits(1, null);
+        StorageRegistry.flush().get();
+
+        assertEquals(1, StorageRegistry.cacheStats().size());
+        assertTrue(!first.isDirty() || !second.isDirty(), "the evicted storage must have been saved");
+        assertSame(first, StorageBase.of(names.get(0), StorageBase.Type.JSON, JavaStorage.class));
+        assertSame(second, StorageBase.of(names.get(1), StorageBase.Type.JSON, JavaStorage.class));
+    }
+
+    private Map<String, Thread> recordWriters() {
+        Map<String, Thread> writers = new ConcurrentHashMap<>();
+        StorageRegistry.setMetrics(new StorageMetrics() {
+            @Override
+            public void serialized(StorageBase.Type type, long bytes, long nanos) {
+                writers.put(Thread.currentThread().getName(), Thread.currentThread());
+            }
+        });
+        return writers;
+    }
+
+    @Test
+    void evictionsAreWrittenByTheBackgroundWriter() throws Exception {
+        Map<String, Thread> writers = recordWriters();
+        StorageRegistry.enableWriteBehind(Duration.ofMinutes(1));
+        StorageRegistry.setCacheLimits(1, null);
+
+        StorageBase evicted = register();
+        evicted.set("value", 1);
+        register();
+        StorageRegistry.flush().get();
+
+        assertFalse(evicted.isDirty());
+        assertTrue(Files.readString(TestStorages.fileOf(names.get(0), StorageBase.Type.JSON)).contains("\"value\""));
+        assertFalse(writers.containsValue(Thread.currentThread()), "evictions must not write on the registering thread");
+    }
+
+    @Test
+    void evictionsAreNotWrittenOnTheRegisteringThreadWithoutWriteBehind() throws Exception {
+        StorageRegistry.setCacheLimits(1, null);
+        StorageBase evicted = register();
+        evicted.set("value", 1);
+        Map<String, Thread> writers = recordWriters();
+        register();
+        StorageRegistry.flush().get();
+
+        assertFalse(evicted.isDirty());
+        assertTrue(Files.readString(TestStorages.fileOf(names.get(0), StorageBase.Type.JSON)).contains("\"value\""));
+        assertFalse(writers.containsValue(Thread.currentThread()), "evictions must not write on the registering thread");
+    }
+
+    @Test
+    void storagesCanBeRemovedFromTheCache() {
+        StorageBase storage = register();
+        String key = StorageRegistry.getStorageDir() + "/" + names.get(0);
+        assertSame(storage, StorageRegistry.storageCash.get(key));
+
+        assertSame(storage, StorageRegistry.storageCash.remove(key));
+
+        assertFalse(StorageRegistry.storageCash.containsKey(key));
+        assertNotSame(storage, StorageBase.of(names.get(0), StorageBase.Type.JSON, JavaStorage.class));
+    }
+
+    @Test
+    void storagesCanBePutIntoTheCache() {
+        StorageBase storage = register();
+        String key = StorageRegistry.getStorageDir() + "/" + names.get(0);
+        StorageRegistry.storageCash.remove(key);
+
+        assertNull(StorageRegistry.storageCash.put(key, storage));
+
+        assertSame(storage, StorageBase.of(names.get(0), StorageBase.Type.JSON, JavaStorage.class));
+    }
+}
@@ -0,0 +1,112 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageTransaction;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that indexed storages answer lookups and key listings exactly like unindexed ones, also
+ * after the tree was modified.
+ */
+public class StorageIndexTest {
+    private String name;
+    private List<StorageBase> storages;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("index");
+        storages = List.of(
+                StorageBase.of(name + "-plain", StorageBase.Type.JSON, true, JavaStorage.class),
+                StorageBase.of(name + "-indexed", StorageBase.Type.JSON, true, JavaStorage.class,
+                        StorageBase.Option.INDEXED),
+                StorageBase.of(name + "-concurrent", StorageBase.Type.JSON, true, JavaStorage.class,
+                        StorageBase.Option.INDEXED, StorageBase.Option.CONCURRENT));
+        for (StorageBase storage : storages) {
+            storage.set("server.host", "localhost");
+            storage.set("server.port", 25565);
+            storage.set("server.limits.players", 20);
+            storage.set("serverName", "lobby");
+            storage.set("server-old.host", "old");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestStorages.delete(name + "-plain");
+        TestStorages.delete(name + "-indexed");
+        TestStorages.delete(name + "-concurrent");
+    }
+
+    private void assertKeys(Set<String> expected, String baseKey, boolean deep) {
+        for (StorageBase storage : storages) {
+            assertEquals(expected, storage.getKeys(baseKey, deep), String.valueOf(storages.indexOf(storage)));
+        }
+    }
+
+    @Test
+    void deepListingsOfASectionAreRelative() {
+        assertKeys(Set.of("host", "port", "limits", "limits.players"), "server", true);
+        assertKeys(Set.of("players"), "server.limits", true);
+    }
+
+    @Test
+    void shallowListingsOnlyContainChildren() {
+        assertKeys(Set.of("host", "port", "limits"), "server", false);
+        assertKeys(Set.of("server", "serverName", "server-old"), "", false);
+    }
+
+    @Test
+    void listingsOfValuesAndMissingKeysAreEmpty() {
+        assertKeys(Set.of(), "server.host", true);
+        assertKeys(Set.of(), "missing", true);
+    }
+
+    @Test
+    void listingsFollowChanges() {
+        for (StorageBase storage : storages) {
+            storage.set("server.limits", Map.of("worlds", 3, "nested", Map.of("depth", 1)));
+            storage.remove("server.port");
+        }
+
+        assertKeys(Set.of("host", "limits", "limits.worlds", "limits.nested", "limits.nested.depth"), "server", true);
+        for (StorageBase storage : storages) {
+            assertEquals(1, storage.getInt("server.limits.nested.depth", -1), String.valueOf(storages.indexOf(storage)));
+            assertNull(storage.getPathValue("server.limits.players"), String.valueOf(storages.indexOf(storage)));
+        }
+    }
+
+    @Test
+    void listingsFollowCommittedTransactions() {
+        for (StorageBase storage : storages) {
+            try (StorageTransaction transaction = storage.begin()) {
+                transaction.set("server.motd", "hello");
+                transaction.remove("server.limits");
+                transaction.commit();
+            }
+        }
+
+        assertKeys(Set.of("host", "port", "motd"), "server", true);
+    }
+
+    @Test
+    void listingsFollowReloadedContent() {
+        for (StorageBase storage : storages) {
+            storage.fromString("{\"server\": {\"host\": \"remote\", \"tags\": {\"a\": 1}}}");
+        }
+
+        assertKeys(Set.of("host", "tags", "tags.a"), "server", true);
+        for (StorageBase storage : storages) {
+            assertEquals("remote", storage.get("server.host", String.class), String.valueOf(storages.indexOf(storage)));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link StorageBase#bind(Class)} and {@link StorageBase#write(Object)} map records and
+ * plain classes to the expected storage layout and back.
+ */
+public class StorageMapperTest {
+    private String name;
+    private StorageBase storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("mapper");
+        storage = StorageBase.of(name, StorageBase.Type.JSON, true, JavaStorage.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestStorages.delete(name);
+    }
+
+    enum Role {
+        USER, ADMIN
+    }
+
+    record Address(String street, int zip) {
+    }
+
+    record Account(UUID id, String name, int age, double balance, boolean active, Role role, Address address) {
+    }
+
+    static class Settings {
+        private String theme = "dark";
+        private int volume = 50;
+        private boolean muted;
+        private Role role = Role.USER;
+        private Limits limits = new Limits();
+        private transient String session = "none";
+
+        public String getTheme() {
+            return theme;
+        }
+
+        public void setTheme(String theme) {
+            this.theme = theme;
+        }
+
+        public boolean isMuted() {
+            return muted;
+        }
+
+        public void setMuted(boolean muted) {
+            this.muted = muted;
+        }
+    }
+
+    static class Limits {
+        private long maxBytes = 1024;
+        private long maxFiles;
+    }
+
+    static class ExtendedSettings extends Settings {
+        private String language = "en";
+    }
+
+    static class NoDefaultConstructor {
+        private final String value;
+
+        NoDefaultConstructor(String value) {
+            this.value = value;
+        }
+    }
+
+    @Test
+    void recordsRoundTrip() {
+        Account account = new Account(UUID.randomUUID(), "Steve", 42, 12.5, true, Role.ADMIN,
+                new Address("Main Street 1", 12345));
+        storage.write("account", account);
+
+        assertEquals(account, storage.bind("account", Account.class));
+    }
+
+    @Test
+    void recordsAreStoredAsPlainValues() {
+        UUID id = UUID.randomUUID();
+        storage.write(new Account(id, "Steve", 42, 12.5, true, Role.ADMIN, new Address("Main Street 1", 12345)));
+
+        assertEquals("Steve", storage.getPathValue("name"));
+        assertEquals(42L, storage.getPathValue("age"));
+        assertEquals(12.5, storage.getPathValue("balance"));
+        assertEquals(true, storage.getPathValue("active"));
+        assertEquals("ADMIN", storage.getPathValue("role"));
+        assertEquals(id, storage.get("id", UUID.class));
+        assertInstanceOf(Map.class, storage.getPathValue("address"));
+        assertEquals("Main Street 1", storage.getPathValue("address.street"));
+        assertEquals(12345L, storage.getPathValue("address.zip"));
+    }
+
+    @Test
+    void missingRecordComponentsAreZero() {
+        storage.set("account.name", "Alex");
+
+        Account account = storage.bind("account", Account.class);
+
+        assertEquals("Alex", account.name());
+        assertNull(account.id());
+        assertEquals(0, account.age());
+        assertEquals(0.0, account.balance());
+        assertFalse(account.active());
+        assertNull(account.role());
+        assertNull(account.address());
+    }
+
+    @Test
+    void plainClassesRoundTrip() {
+        Settings settings = new Settings();
+        settings.setTheme("light");
+        settings.setMuted(true);
+        settings.volume = 80;
+        settings.role = Role.ADMIN;
+        settings.limits.maxFiles = 7;
+        storage.write("settings", settings);
+
+        Settings bound = storage.bind("settings", Settings.class);
+
+        assertEquals("light", bound.getTheme());
+        assertTrue(bound.isMuted());
+        assertEquals(80, bound.volume);
+        assertEquals(Role.ADMIN, bound.role);
+        assertEquals(1024, bound.limits.maxBytes);
+        assertEquals(7, bound.limits.maxFiles);
+    }
+
+    @Test
+    void plainClassesAreStoredAsNestedSections() {
+        storage.write("settings", new Settings());
+
+        assertEquals("dark", storage.getPathValue("settings.theme"));
+        assertEquals(50L, storage.getPathValue("settings.volume"));
+        assertEquals("USER", storage.getPathValue("settings.role"));
+        assertEquals(1024L, storage.getPathValue("settings.limits.maxBytes"));
+        assertNull(storage.getPathValue("settings.session"), "transient fields must not be stored");
+    }
+
+    @Test
+    void missingValuesKeepTheDefaultsOfTheClass() {
+        storage.set("settings.volume", 10);
+
+        Settings settings = storage.bind("settings", Settings.class);
+
+        assertEquals(10, settings.volume);
+        assertEquals("dark", settings.getTheme());
+        assertEquals(Role.USER, settings.role);
+        assertEquals(1024, settings.limits.maxBytes);
+        assertEquals("none", settings.session);
+    }
+
+    @Test
+    void superclassFieldsAreMapped() {
+        ExtendedSettings settings = new ExtendedSettings();
+        settings.language = "de";
+        settings.setTheme("light");
+        storage.write(settings);
+
+        ExtendedSettings bound = storage.bind(ExtendedSettings.class);
+
+        assertEquals("de", bound.language);
+        assertEquals("light", bound.getTheme());
+    }
+
+    @Test
+    void nullPropertiesAreRemoved() {
+        storage.write("settings", new Settings());
+        Settings settings = new Settings();
+        settings.setTheme(null);
+        storage.write("settings", settings);
+
+        assertNull(storage.getPathValue("settings.theme"));
+        assertEquals("dark", storage.bind("settings", Settings.class).getTheme());
+    }
+
+    @Test
+    void unmappableClassesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> storage.bind(NoDefaultConstructor.class));
+        assertThrows(IllegalArgumentException.class, () -> storage.write(new NoDefaultConstructor("x")));
+    }
+}
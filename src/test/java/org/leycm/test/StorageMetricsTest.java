@@ -0,0 +1,140 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.InMemoryStorageMetrics;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageMetricsSnapshot;
+import org.leycm.storage.StorageRegistry;
+import org.leycm.storage.impl.JavaStorage;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link InMemoryStorageMetrics} records the operations of the storages and exposes them
+ * as snapshots and over JMX.
+ */
+public class StorageMetricsTest {
+    private final InMemoryStorageMetrics metrics = new InMemoryStorageMetrics();
+    private String name;
+    private StorageBase storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("metrics");
+        storage = StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class);
+        StorageRegistry.setMetrics(metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        StorageRegistry.setMetrics(null);
+        TestStorages.delete(name);
+    }
+
+    private static void assertAccurate(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.03, actual + " is not within 3% of " + expected);
+    }
+
+    @Test
+    void savesAndReloadsAreTimed() throws Exception {
+        storage.set("value", 1);
+        storage.save();
+        long size = Files.size(TestStorages.fileOf(name, StorageBase.Type.JSON));
+        storage.reload();
+
+        StorageMetricsSnapshot.Format json = metrics.snapshot().formats().get(StorageBase.Type.JSON);
+        assertEquals(1, json.serialize().count());
+        assertEquals(1, json.parse().count());
+        assertEquals(size, json.bytesWritten());
+        assertEquals(size, json.bytesRead());
+        assertTrue(json.parse().maxNanos() > 0);
+        assertEquals(0, metrics.snapshot().formats().get(StorageBase.Type.YAML).parse().count());
+    }
+
+    @Test
+    void lookupsAreCounted() {
+        storage.set("value", 1);
+        storage.set("flag", true);
+
+        storage.get("value", Integer.class);
+        storage.get("missing", String.class);
+        storage.getInt("value", -1);
+        storage.getInt("flag", -1);
+        storage.getBoolean("flag", false);
+        storage.getDouble("missing", 0);
+
+        StorageMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(3, snapshot.hits());
+        assertEquals(3, snapshot.misses());
+        assertEquals(0.5, snapshot.hitRate());
+    }
+
+    @Test
+    void adapterCallsAreCounted() {
+        storage.set("id", UUID.randomUUID());
+        storage.get("id", UUID.class);
+
+        assertEquals(2, metrics.snapshot().adapterCalls());
+    }
+
+    @Test
+    void percentilesAreAccurate() {
+        for (int i = 1; i <= 1000; i++) {
+            metrics.parsed(StorageBase.Type.BINARY, 10, i * 1_000_000L);
+        }
+
+        StorageMetricsSnapshot.Timing parse = metrics.snapshot().formats().get(StorageBase.Type.BINARY).parse();
+        assertEquals(1000, parse.count());
+        assertEquals(500_500_000L, parse.meanNanos());
+        assertAccurate(500_000_000L, parse.p50Nanos());
+        assertAccurate(990_000_000L, parse.p99Nanos());
+        assertAccurate(1_000_000_000L, parse.maxNanos());
+    }
+
+    @Test
+    void resetClearsAllMeasurements() {
+        metrics.parsed(StorageBase.Type.JSON, 10, 1_000);
+        metrics.lookup(true);
+        metrics.adapterCalled(UUID.class);
+        metrics.evicted("file");
+
+        metrics.reset();
+
+        StorageMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.formats().get(StorageBase.Type.JSON).parse().count());
+        assertEquals(0, snapshot.hits());
+        assertEquals(0, snapshot.adapterCalls());
+        assertEquals(0, snapshot.evictions());
+    }
+
+    @Test
+    void measurementsAreExposedOverJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        metrics.registerMBeans();
+        try {
+            metrics.lookup(true);
+            metrics.evicted("file");
+            metrics.parsed(StorageBase.Type.JSON, 42, 1_000_000);
+
+            ObjectName counters = new ObjectName(InMemoryStorageMetrics.OBJECT_NAME);
+            ObjectName json = new ObjectName(InMemoryStorageMetrics.OBJECT_NAME + ",format=json");
+            assertEquals(1L, server.getAttribute(counters, "LookupHits"));
+            assertEquals(1L, server.getAttribute(counters, "CacheEvictions"));
+            assertEquals(1L, server.getAttribute(json, "ParseCount"));
+            assertEquals(42L, server.getAttribute(json, "BytesRead"));
+        } finally {
+            metrics.unregisterMBeans();
+        }
+
+        assertFalse(server.isRegistered(new ObjectName(InMemoryStorageMetrics.OBJECT_NAME)));
+    }
+}
@@ -0,0 +1,63 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StoragePatch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the wire format of {@link StoragePatch}, in particular that corrupt input is rejected
+ * instead of exhausting memory.
+ */
+public class StoragePatchTest {
+    /** Magic, version, list tag and list body length in front of the operation count. */
+    private static final int COUNT_OFFSET = 3 + 1 + 1 + Integer.BYTES;
+    /** Operation list tag, body length, count and path string tag in front of the path length. */
+    private static final int PATH_LENGTH_OFFSET = COUNT_OFFSET + Integer.BYTES + 1 + 2 * Integer.BYTES + 1;
+
+    private static byte[] encoded() {
+        return StoragePatch.diff(Map.of("a", 1L), Map.of("a", 2L, "b", "text")).toBytes();
+    }
+
+    @Test
+    void roundTrips() {
+        StoragePatch patch = StoragePatch.diff(Map.of("a", 1L, "gone", true), Map.of("a", 2L, "b", "text"));
+        assertEquals(patch.operations(), StoragePatch.fromBytes(patch.toBytes()).operations());
+    }
+
+    @Test
+    void rejectsUnsupportedValues() {
+        StoragePatch patch = StoragePatch.diff(Map.of(), Map.of("data", new byte[]{1, 2, 3}));
+        assertThrows(IllegalArgumentException.class, patch::toBytes);
+    }
+
+    @Test
+    void rejectsHugeCounts() {
+        byte[] bytes = encoded();
+        ByteBuffer.wrap(bytes).putInt(COUNT_OFFSET, Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> StoragePatch.fromBytes(bytes));
+    }
+
+    @Test
+    void rejectsNegativeLengths() {
+        byte[] bytes = encoded();
+        ByteBuffer.wrap(bytes).putInt(PATH_LENGTH_OFFSET, -1);
+        assertThrows(IllegalArgumentException.class, () -> StoragePatch.fromBytes(bytes));
+
+        ByteBuffer.wrap(bytes).putInt(PATH_LENGTH_OFFSET, Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> StoragePatch.fromBytes(bytes));
+    }
+
+    @Test
+    void rejectsTruncatedInput() {
+        byte[] bytes = encoded();
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(IllegalArgumentException.class, () -> StoragePatch.fromBytes(truncated), "length " + length);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StoragePath;
+import org.leycm.storage.impl.JavaStorage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks parsing and caching of {@link StoragePath} and that pre-parsed paths address the same values
+ * as their strings.
+ */
+public class StoragePathTest {
+
+    @Test
+    void parsesSegments() {
+        StoragePath path = StoragePath.of("user.profile.name");
+
+        assertEquals(3, path.length());
+        assertEquals("user", path.segment(0));
+        assertEquals("name", path.last());
+        assertEquals("user.profile.name", path.toString());
+        assertEquals(path, StoragePath.of("user.profile").child("name"));
+        assertEquals(path.hashCode(), StoragePath.of("user").child("profile.name").hashCode());
+    }
+
+    @Test
+    void equalStringsShareOneInstance() {
+        String raw = "cached." + System.nanoTime();
+
+        assertSame(StoragePath.of(raw), StoragePath.of(new String(raw)));
+    }
+
+    @Test
+    void theCacheIsBounded() {
+        String raw = "evicted." + System.nanoTime();
+        StoragePath first = StoragePath.of(raw);
+        for (int i = 0; i < 10_000; i++) {
+            StoragePath.of("filler." + i);
+        }
+
+        StoragePath reparsed = StoragePath.of(raw);
+        assertEquals(first, reparsed);
+        assertNotSame(first, reparsed, "the cache must not keep every path ever parsed");
+    }
+
+    @Test
+    void pathsAndStringsAddressTheSameValues() {
+        TestStorages.setUp();
+        StorageBase storage = StorageBase.of(TestStorages.uniqueName("path"), StorageBase.Type.JSON, true, JavaStorage.class);
+        StoragePath path = StoragePath.of("a.b.c");
+
+        storage.set(path, "value");
+        assertEquals("value", storage.get("a.b.c", String.class));
+
+        storage.set("a.b.c", "changed");
+        assertEquals("changed", storage.get(path, String.class));
+
+        storage.remove(path);
+        assertNull(storage.getPathValue("a.b.c"));
+    }
+}
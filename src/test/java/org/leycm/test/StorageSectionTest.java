@@ -0,0 +1,98 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageChange;
+import org.leycm.storage.StorageSection;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that sections are views of their parent storage: they read and write the parent's tree and
+ * leave listeners and nested sections to the parent.
+ */
+public class StorageSectionTest {
+    private String name;
+    private StorageBase storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("section");
+        storage = StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class, StorageBase.Option.INDEXED);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestStorages.delete(name);
+    }
+
+    private StorageSection section(StorageBase parent, String key) {
+        return parent.get(key, StorageSection.class);
+    }
+
+    @Test
+    void readsAndWritesTheParentTree() {
+        storage.set("user.name", "Alex");
+        StorageSection user = section(storage, "user");
+
+        assertEquals("Alex", user.get("name", String.class));
+        user.set("level", 3);
+        user.set("stats.kills", 10L);
+
+        assertEquals(3, storage.getInt("user.level", -1));
+        assertEquals(10, user.get("stats.kills", Integer.class));
+        assertEquals(10L, storage.getPathValue("user.stats.kills"));
+
+        user.remove("name");
+        assertNull(storage.getPathValue("user.name"));
+    }
+
+    @Test
+    void seesStructuralChangesOfTheParent() {
+        storage.set("user.name", "Alex");
+        StorageSection user = section(storage, "user");
+        assertEquals("Alex", user.get("name", String.class));
+
+        storage.set("user", Map.of("name", "Steve"));
+        assertEquals("Steve", user.get("name", String.class));
+
+        storage.remove("user");
+        assertNull(user.get("name", String.class));
+        user.set("name", "Notch");
+        assertEquals("Notch", storage.get("user.name", String.class));
+    }
+
+    @Test
+    void sectionsAreSharedViews() {
+        storage.set("user.stats.kills", 1);
+        StorageSection user = section(storage, "user");
+
+        assertSame(user, section(storage, "user"));
+        assertSame(section(storage, "user.stats"), section(user, "stats"));
+    }
+
+    @Test
+    void listenersAreRegisteredWithTheParent() throws Exception {
+        storage.set("user.level", 1);
+        storage.save();
+        List<StorageChange> changes = new ArrayList<>();
+        section(storage, "user").addChangeListener("level", changes::add);
+
+        Path file = TestStorages.fileOf(name, StorageBase.Type.JSON);
+        Files.writeString(file, "{\"user\": {\"level\": 2}}");
+        storage.reload();
+
+        assertEquals(1, changes.size());
+        assertEquals("user.level", changes.get(0).path());
+    }
+}
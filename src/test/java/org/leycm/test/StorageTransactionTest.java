@@ -0,0 +1,140 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageTransaction;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that transactions become visible all at once on commit and not at all on rollback.
+ */
+public class StorageTransactionTest {
+    private static final int KEYS = 64;
+
+    private String name;
+    private StorageBase storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("transaction");
+        storage = StorageBase.of(name, StorageBase.Type.JSON, true, JavaStorage.class,
+                StorageBase.Option.INDEXED, StorageBase.Option.CONCURRENT);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestStorages.delete(name);
+    }
+
+    @Test
+    void commitPublishesAllEdits() throws Exception {
+        storage.set("account.a", 100);
+        storage.set("account.b", 0);
+
+        try (StorageTransaction transaction = storage.begin()) {
+            transaction.set("account.a", 90);
+            transaction.set("account.b", 10);
+            transaction.remove("account.a");
+            transaction.set("account.a", 90);
+
+            assertEquals(90, transaction.get("account.a", Integer.class));
+            assertEquals(100, CompletableFuture.supplyAsync(() -> storage.getInt("account.a", -1)).get(),
+                    "other threads must not see uncommitted edits");
+            transaction.commit();
+        }
+
+        assertEquals(90, storage.getInt("account.a", -1));
+        assertEquals(10, storage.getInt("account.b", -1));
+        assertTrue(storage.isDirty());
+    }
+
+    @Test
+    void getConvertsLikeTheStorage() {
+        UUID id = UUID.randomUUID();
+        storage.set("count", 7L);
+
+        try (StorageTransaction transaction = storage.begin()) {
+            transaction.set("id", id);
+            transaction.set("ratio", 0.5);
+
+            assertEquals(7, transaction.get("count", Integer.class));
+            assertEquals(7.0, transaction.get("count", Double.class));
+            assertEquals(id, transaction.get("id", UUID.class));
+            assertEquals(id, storage.get("id", UUID.class), "the owning thread must read its own edits");
+            assertNull(transaction.get("ratio", Integer.class));
+        }
+
+        assertNull(storage.get("id", UUID.class));
+    }
+
+    @Test
+    void rollbackDiscardsAllEdits() {
+        storage.set("account.a", 100);
+
+        try (StorageTransaction transaction = storage.begin()) {
+            transaction.set("account.a", 0);
+            transaction.set("account.c", 1);
+        }
+
+        assertEquals(100, storage.getInt("account.a", -1));
+        assertNull(storage.getPathValue("account.c"));
+    }
+
+    @Test
+    void finishedTransactionsRejectUse() {
+        StorageTransaction transaction = storage.begin();
+        transaction.commit();
+
+        assertFalse(transaction.isOpen());
+        assertThrows(IllegalStateException.class, () -> transaction.set("a", 1));
+        assertThrows(IllegalStateException.class, transaction::commit);
+        assertDoesNotThrow(transaction::close);
+    }
+
+    @Test
+    void lockFreeReadersNeverSeePartialCommits() throws Exception {
+        for (int key = 0; key < KEYS; key++) {
+            storage.set("counter.k" + key, 0);
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> violation = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (running.get() && violation.get() == null) {
+                // commits write the keys in order, so a reader that already sees the first key of a
+                // commit must also see its last one
+                int first = storage.getInt("counter.k0", -1);
+                int last = storage.getInt("counter.k" + (KEYS - 1), -1);
+                if (last < first) violation.set("saw k0=" + first + " but k" + (KEYS - 1) + "=" + last);
+            }
+        });
+        reader.start();
+
+        try {
+            for (int version = 1; version <= 2_000 && violation.get() == null; version++) {
+                try (StorageTransaction transaction = storage.begin()) {
+                    for (int key = 0; key < KEYS; key++) {
+                        transaction.set("counter.k" + key, version);
+                    }
+                    transaction.commit();
+                }
+            }
+        } finally {
+            running.set(false);
+            reader.join();
+        }
+
+        assertNull(violation.get());
+        assertEquals(2_000, storage.getInt("counter.k" + (KEYS - 1), -1));
+    }
+}
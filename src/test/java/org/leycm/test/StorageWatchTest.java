@@ -0,0 +1,204 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageChange;
+import org.leycm.storage.StorageTransaction;
+import org.leycm.storage.StorageWatch;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that watches, change listeners and change publishers are notified of exactly the changes
+ * below their path.
+ */
+public class StorageWatchTest {
+    private final List<StorageChange> changes = new CopyOnWriteArrayList<>();
+    private String name;
+    private StorageBase storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("watch");
+        storage = StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TestStorages.delete(name);
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @Test
+    void watchesSeeChangesBelowTheirPath() {
+        storage.watch("db.pool", changes::add);
+
+        storage.set("db.pool.size", 10);
+        storage.set("db.poolSize", 5);
+        storage.set("db.host", "localhost");
+        storage.set("db.pool", 3);
+
+        assertEquals(List.of(
+                new StorageChange("db.pool.size", null, 10L),
+                new StorageChange("db.pool.size", 10L, null),
+                new StorageChange("db.pool", null, 3L)), changes);
+    }
+
+    @Test
+    void removingAnAncestorIsReportedPerLeaf() {
+        storage.set("db.pool.size", 10);
+        storage.set("db.pool.idle", 2);
+        storage.watch("db.pool.size", changes::add);
+
+        storage.remove("db");
+
+        assertEquals(List.of(new StorageChange("db.pool.size", 10L, null)), changes);
+    }
+
+    @Test
+    void unchangedValuesAreNotReported() {
+        storage.set("value", 1);
+        storage.watch("", changes::add);
+
+        storage.set("value", 1);
+        storage.remove("missing");
+
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    void closedWatchesAreNotNotified() {
+        StorageWatch watch = storage.watch("", changes::add);
+        storage.set("value", 1);
+        watch.close();
+        storage.set("value", 2);
+
+        assertFalse(watch.isActive());
+        assertEquals(List.of(new StorageChange("value", null, 1L)), changes);
+    }
+
+    @Test
+    void failingListenersDoNotAffectTheWrite() {
+        storage.watch("", change -> {
+            throw new IllegalStateException("listener failed");
+        });
+        storage.watch("", changes::add);
+
+        storage.set("value", 1);
+
+        assertEquals(1, storage.getInt("value", -1));
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    void transactionsAreReportedOnCommitOnly() {
+        storage.watch("", changes::add);
+
+        try (StorageTransaction transaction = storage.begin()) {
+            transaction.set("rolled", 1);
+            transaction.rollback();
+        }
+        try (StorageTransaction transaction = storage.begin()) {
+            transaction.set("committed", 1);
+            assertTrue(changes.isEmpty(), "changes of an open transaction must not be delivered");
+            transaction.commit();
+        }
+
+        assertEquals(List.of(new StorageChange("committed", null, 1L)), changes);
+    }
+
+    @Test
+    void reloadsAreReported() throws Exception {
+        storage.set("value", 1);
+        storage.save();
+        storage.watch("", changes::add);
+        List<StorageChange> keyChanges = new ArrayList<>();
+        storage.addChangeListener("value", keyChanges::add);
+
+        Files.writeString(TestStorages.fileOf(name, StorageBase.Type.JSON), "{\"value\": 2}");
+        storage.reload();
+
+        assertEquals(List.of(new StorageChange("value", 1L, 2L)), changes);
+        assertEquals(List.of(new StorageChange("value", 1L, 2L)), keyChanges);
+    }
+
+    @Test
+    void asyncWatchesKeepTheOrderOfTheChanges() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            storage.watch("", changes::add, executor);
+            for (int i = 0; i < 200; i++) {
+                storage.set("value", i);
+            }
+
+            assertTrue(await(() -> changes.size() == 200));
+            for (int i = 0; i < 200; i++) {
+                assertEquals((long) i, changes.get(i).newValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void publishersDeliverRequestedChanges() throws Exception {
+        List<Flow.Subscription> subscription = new CopyOnWriteArrayList<>();
+        storage.changes("user", Runnable::run).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription.add(s);
+                s.request(2);
+            }
+
+            @Override
+            public void onNext(StorageChange item) {
+                changes.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail(String.valueOf(throwable));
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        storage.set("user.a", 1);
+        storage.set("other", 1);
+        storage.set("user.b", 2);
+        storage.set("user.c", 3);
+        assertEquals(List.of("user.a", "user.b"), changes.stream().map(StorageChange::path).toList());
+
+        subscription.get(0).request(5);
+        assertEquals(List.of("user.a", "user.b", "user.c"), changes.stream().map(StorageChange::path).toList());
+
+        subscription.get(0).cancel();
+        storage.set("user.d", 4);
+        subscription.get(0).request(5);
+        assertEquals(3, changes.size());
+    }
+}
@@ -0,0 +1,98 @@
+package org.leycm.test;
+
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Shared set-up of the storage registry for tests. The registry can only be set up once per JVM, so
+ * every test uses the same configuration and gives its storages unique names.
+ */
+final class TestStorages {
+    /**
+     * The directory the registry keeps file storages in, relative to the working directory. This is
+     * the default directory, since {@link #setUp()} does not configure one.
+     */
+    static final Path FILES = Path.of(".storage");
+
+    private static final String DIRECTORY = "test-storages";
+
+    private TestStorages() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Sets the registry up unless a previous test already did.
+     */
+    static synchronized void setUp() {
+        if (!StorageRegistry.isSetup()) StorageRegistry.setup(null, null);
+    }
+
+    /**
+     * Returns a storage name that no other test uses.
+     *
+     * @param prefix A readable prefix for the name
+     * @return The name
+     */
+    static String uniqueName(String prefix) {
+        return DIRECTORY + "/" + prefix + "-" + UUID.randomUUID();
+    }
+
+    /**
+     * Returns the file of a file storage.
+     *
+     * @param name The name of the storage
+     * @param type The format of the storage
+     * @return The file
+     */
+    static Path fileOf(String name, StorageBase.Type type) {
+        return FILES.resolve(name + "." + type.getId());
+    }
+
+    /**
+     * Deletes every file and directory of the given storage, including journals, shards and backups.
+     *
+     * @param name The name of the storage
+     */
+    static void delete(String name) {
+        Path directory = FILES.resolve(DIRECTORY);
+        if (!Files.isDirectory(directory)) return;
+
+        String prefix = Path.of(name).getFileName().toString();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(file -> file.getFileName().toString().startsWith(prefix)).toList()) {
+                deleteRecursively(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Deletes the files of all test storages. Storages of earlier tests that are still cached may be
+     * written again when they are evicted, so tests that shrink the cache clean up after all of them.
+     */
+    static void deleteAll() {
+        try {
+            Path directory = FILES.resolve(DIRECTORY);
+            if (Files.isDirectory(directory)) deleteRecursively(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
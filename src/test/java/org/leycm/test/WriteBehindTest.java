@@ -0,0 +1,129 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageMetrics;
+import org.leycm.storage.StorageRegistry;
+import org.leycm.storage.impl.JavaStorage;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that write-behind saves are coalesced and always write a consistent snapshot of the storage,
+ * even while other threads keep modifying it.
+ */
+public class WriteBehindTest {
+    private String name;
+    private StorageBase storage;
+
+    @BeforeEach
+    void setUp() {
+        TestStorages.setUp();
+        name = TestStorages.uniqueName("write-behind");
+        storage = StorageBase.of(name, StorageBase.Type.JSON, JavaStorage.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        StorageRegistry.disableWriteBehind();
+        StorageRegistry.setMetrics(null);
+        TestStorages.delete(name);
+    }
+
+    private Map<String, Object> readFile() throws Exception {
+        return StorageRegistry.deserialize(Files.readString(TestStorages.fileOf(name, StorageBase.Type.JSON)),
+                StorageBase.Type.JSON);
+    }
+
+    @Test
+    void savesWithinTheWindowAreCoalesced() throws Exception {
+        AtomicInteger writes = new AtomicInteger();
+        StorageRegistry.setMetrics(new StorageMetrics() {
+            @Override
+            public void serialized(StorageBase.Type type, long bytes, long nanos) {
+                writes.incrementAndGet();
+            }
+        });
+        StorageRegistry.enableWriteBehind(Duration.ofMillis(200));
+
+        CompletableFuture<Void> first = null;
+        for (int i = 0; i < 10; i++) {
+            storage.set("value", i);
+            CompletableFuture<Void> future = storage.saveAsync();
+            if (first == null) first = future;
+            assertSame(first, future);
+        }
+        first.get();
+
+        assertEquals(1, writes.get());
+        assertEquals(9L, readFile().get("value"));
+        assertFalse(storage.isDirty());
+    }
+
+    @Test
+    void flushSkipsTheWindow() throws Exception {
+        StorageRegistry.enableWriteBehind(Duration.ofHours(1));
+        storage.set("value", 1);
+        storage.save();
+
+        storage.flush().get();
+
+        assertEquals(1L, readFile().get("value"));
+    }
+
+    @Test
+    void savesDuringConcurrentWritesAreConsistent() throws Exception {
+        StorageRegistry.enableWriteBehind(Duration.ofMillis(1));
+        int threads = 4;
+        int keys = 5_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<Void>> saves = new ArrayList<>();
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                String prefix = "t" + thread;
+                writers.add(executor.submit(() -> {
+                    for (int key = 0; key < keys; key++) {
+                        storage.set(prefix + ".k" + key, key);
+                        if (key % 100 == 0) {
+                            CompletableFuture<Void> save = storage.saveAsync();
+                            synchronized (saves) {
+                                saves.add(save);
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        storage.flush().get();
+        for (CompletableFuture<Void> save : saves) {
+            assertDoesNotThrow(() -> save.get());
+        }
+
+        Map<String, Object> written = readFile();
+        assertEquals(threads, written.size());
+        for (Object section : written.values()) {
+            assertEquals(keys, ((Map<?, ?>) section).size());
+        }
+    }
+}
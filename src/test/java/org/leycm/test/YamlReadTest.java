@@ -0,0 +1,103 @@
+package org.leycm.test;
+
+import org.junit.jupiter.api.Test;
+import org.leycm.storage.StorageBase;
+import org.leycm.storage.StorageRegistry;
+import org.yaml.snakeyaml.Yaml;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that YAML storages are read with the same semantics as SnakeYAML's {@link Yaml#load(String)},
+ * which is what {@link StorageRegistry#serialize(Map, StorageBase.Type)} dumps with.
+ */
+public class YamlReadTest {
+
+    private static Map<String, Object> read(String document) {
+        return StorageRegistry.deserialize(document, StorageBase.Type.YAML);
+    }
+
+    @Test
+    void resolvesAnchorsAndMergeKeys() {
+        Map<String, Object> map = read(String.join("\n",
+                "base: &base",
+                "  host: localhost",
+                "  port: 8080",
+                "dev:",
+                "  <<: *base",
+                "  port: 9090",
+                "copy: *base",
+                "multi:",
+                "  <<: [*base, {extra: 1}]",
+                "  host: remote"));
+
+        assertEquals(Map.of("host", "localhost", "port", 9090L), map.get("dev"));
+        assertEquals(map.get("base"), map.get("copy"));
+        assertNotSame(map.get("base"), map.get("copy"), "aliases must not share mutable nodes");
+        assertEquals(Map.of("host", "remote", "port", 8080L, "extra", 1L), map.get("multi"));
+    }
+
+    @Test
+    void rejectsBillionLaughs() {
+        StringBuilder document = new StringBuilder("l0: &l0 [lol, lol, lol, lol, lol, lol, lol, lol, lol, lol]\n");
+        for (int level = 1; level < 10; level++) {
+            document.append('l').append(level).append(": &l").append(level).append(" [");
+            for (int i = 0; i < 10; i++) {
+                document.append(i == 0 ? "" : ", ").append("*l").append(level - 1);
+            }
+            document.append("]\n");
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> read(document.toString()));
+    }
+
+    @Test
+    void rejectsExponentialExpansionWithFewAliases() {
+        StringBuilder document = new StringBuilder("l0: &l0 [lol]\n");
+        for (int level = 1; level <= 25; level++) {
+            document.append('l').append(level).append(": &l").append(level)
+                    .append(" [*l").append(level - 1).append(", *l").append(level - 1).append("]\n");
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> read(document.toString()));
+    }
+
+    @Test
+    void resolvesYaml11Scalars() {
+        Map<String, Object> map = read(String.join("\n",
+                "flags: {a: yes, b: on, c: off, d: no, e: 'yes'}",
+                "when: 2001-12-14t21:59:43.10-05:00",
+                "numbers: [0x1F, 1_000, 3.5]",
+                "text: !!str 123"));
+
+        assertEquals(Map.of("a", true, "b", true, "c", false, "d", false, "e", "yes"), map.get("flags"));
+        assertInstanceOf(Date.class, map.get("when"));
+        assertEquals(List.of(31L, 1000L, 3.5), map.get("numbers"));
+        assertEquals("123", map.get("text"));
+    }
+
+    @Test
+    void matchesSnakeYamlRoundTrip() {
+        Map<String, Object> original = read("a: {b: [1, two, yes], c: 2002-12-14}\nd: 4.5\n");
+        String dumped = StorageRegistry.serialize(original, StorageBase.Type.YAML);
+
+        assertEquals(original, read(dumped));
+        assertEquals(new Yaml().load(dumped).toString(), read(dumped).toString());
+    }
+
+    @Test
+    void readsEmptyDocumentsAsEmptyStorages() {
+        assertTrue(read("").isEmpty());
+        assertTrue(read("~").isEmpty());
+    }
+
+    @Test
+    void rejectsNonMappingRoots() {
+        assertThrows(IllegalArgumentException.class, () -> read("- a\n- b"));
+        assertThrows(IllegalArgumentException.class, () -> read("a: ["));
+    }
+}